@@ -0,0 +1,89 @@
+package benchmarks;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import people.Student;
+import people.Teacher;
+import utilities.DataModel;
+import utilities.DatabaseService;
+import utilities.UniversityService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Shared dataset setup for the benchmarks. A dataset of N students has N/5
+ * courses, N/20 teachers and three enrollments per student, which keeps every
+ * course below the 30-seat cap.
+ */
+final class BenchData {
+
+    static final int COURSES_PER_STUDENT = 3;
+
+    private BenchData() {
+    }
+
+    static String studentId(int i) { return "S" + i; }
+    static String courseId(int i) { return "C" + i; }
+    static int courseCount(int students) { return Math.max(COURSES_PER_STUDENT, students / 5); }
+
+    /** Imports a full dataset through the service, so it is persisted in whatever mode the service uses. */
+    static void populate(UniversityService service, int students) {
+        int courses = courseCount(students);
+        int teachers = Math.max(1, students / 20);
+        Department[] departments = Department.values();
+        service.setImportChunkSize(10_000);
+        service.importTeachers(IntStream.range(0, teachers)
+                .mapToObj(i -> new Teacher("T" + i, "Teacher " + i, departments[i % departments.length], "Subject " + i)));
+        service.importCourses(IntStream.range(0, courses).mapToObj(i -> {
+            Course c = new Course(courseId(i), "Course " + i, departments[i % departments.length]);
+            c.assignTeacher("T" + (i % teachers));
+            return c;
+        }));
+        service.importStudents(IntStream.range(0, students)
+                .mapToObj(i -> new Student(studentId(i), "Student " + i, "Major " + (i % 40))));
+        service.importEnrollments(IntStream.range(0, students).boxed()
+                .flatMap(i -> IntStream.range(0, COURSES_PER_STUDENT)
+                        .mapToObj(k -> new Enrollment(studentId(i), courseId((i + k * (courses / COURSES_PER_STUDENT)) % courses)))));
+    }
+
+    /** An in-memory service with persistence disabled, populated with {@code students} students. */
+    static UniversityService inMemory(DataModel model, int students) {
+        UniversityService service = new UniversityService(model,
+                new DatabaseService(null, null, DatabaseService.PersistenceMode.NONE));
+        populate(service, students);
+        return service;
+    }
+
+    /** The service classes report progress on stdout; benchmarks keep it out of the measurements. */
+    static PrintStream silence() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return original;
+    }
+
+    static Path tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package benchmarks;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import people.Student;
+import utilities.DataModel;
+import utilities.UniversityService;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** In-memory lookups, enrollment and listing against a model of {@code students} students. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private static final int KEYS = 4096; // power of two, so the cursor can wrap with a mask
+
+    private DataModel model;
+    private UniversityService service;
+    private PrintStream stdout;
+
+    // Pre-drawn random keys so the benchmarks measure lookups, not string building
+    private String[] studentKeys;
+    private String[] courseKeys;
+    private String[] missingKeys;
+    private Course[] emptyCourses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stdout = BenchData.silence();
+        model = new DataModel();
+        service = BenchData.inMemory(model, students);
+
+        // Enrollment targets: empty courses outside the dataset, so a seat is always free
+        emptyCourses = new Course[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            service.addCourse("BENCH" + i, "Benchmark " + i, Department.COMPUTER_SCIENCE);
+            emptyCourses[i] = model.findCourse("BENCH" + i).get();
+        }
+
+        Random random = new Random(42);
+        int courses = BenchData.courseCount(students);
+        studentKeys = new String[KEYS];
+        courseKeys = new String[KEYS];
+        missingKeys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            String id = BenchData.studentId(random.nextInt(students));
+            // Mix the case: IDs are matched case-insensitively
+            studentKeys[i] = (i & 1) == 0 ? id : id.toLowerCase(Locale.ROOT);
+            courseKeys[i] = BenchData.courseId(random.nextInt(courses));
+            missingKeys[i] = "X" + random.nextInt();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    private int next() {
+        return cursor++ & (KEYS - 1);
+    }
+
+    @Benchmark
+    public Optional<Student> findStudent() {
+        return model.findStudent(studentKeys[next()]);
+    }
+
+    @Benchmark
+    public Optional<Student> findStudentMissing() {
+        return model.findStudent(missingKeys[next()]);
+    }
+
+    @Benchmark
+    public Optional<Course> findCourse() {
+        return model.findCourse(courseKeys[next()]);
+    }
+
+    @Benchmark
+    public boolean isEnrolledIn() {
+        int i = next();
+        return model.findStudent(studentKeys[i]).get().isEnrolledIn(courseKeys[i]);
+    }
+
+    /**
+     * Full enrollStudent path (lookups, seat reservation, both sides updated).
+     * The enrollment is undone in the same call so the model stays the same size,
+     * and the removal is published so the version does not keep growing; the
+     * undo is part of the measured time.
+     */
+    @Benchmark
+    public boolean enrollStudent() {
+        int i = next();
+        Course course = emptyCourses[i];
+        boolean enrolled = service.enrollStudent(studentKeys[i], course.getCourseId());
+        if (enrolled) {
+            Student student = model.findStudent(studentKeys[i]).get();
+            student.unenroll(course.getCourseId());
+            course.removeStudent(student.getId());
+            model.enrollmentsRemoved(List.of(new Enrollment(student.getId(), course.getCourseId())));
+        }
+        return enrolled;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listStudents() {
+        service.listStudents();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listCourses() {
+        service.listCourses();
+    }
+}
@@ -0,0 +1,125 @@
+package benchmarks;
+
+import courses.Enrollment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import people.Student;
+import utilities.DataModel;
+import utilities.DatabaseService;
+import utilities.DatabaseService.PersistenceMode;
+import utilities.UniversityService;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL vs FILE persistence. Each trial works on a fresh store in a temporary
+ * directory, pre-populated with {@code students} students.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"SQL", "FILE"})
+    public PersistenceMode mode;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int students;
+
+    private static final int BATCH = 1000;
+
+    private Path dir;
+    private DatabaseService db;
+    private PrintStream stdout;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stdout = BenchData.silence();
+        dir = BenchData.tempDir("ums-bench");
+        db = open();
+        BenchData.populate(new UniversityService(new DataModel(), db), students);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        BenchData.delete(dir);
+        System.setOut(stdout);
+    }
+
+    private DatabaseService open() {
+        return new DatabaseService(dir.resolve("ums.db"), dir.resolve("data"), mode);
+    }
+
+    @Benchmark
+    public void insertStudent() {
+        long id = nextId++;
+        db.insertStudent(new Student("W" + id, "Written " + id, "Bench"));
+    }
+
+    @Benchmark
+    public void insertEnrollment() {
+        // Course C0 always exists; a fresh student ID keeps the key unique
+        db.insertEnrollment("W" + nextId++, BenchData.courseId(0));
+    }
+
+    /** One chunk as written by the bulk import path. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Integer, String> insertStudentsBatch() {
+        List<Student> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            long id = nextId++;
+            batch.add(new Student("W" + id, "Written " + id, "Bench"));
+        }
+        return db.insertStudents(batch);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Integer, String> insertEnrollmentsBatch() {
+        List<Enrollment> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new Enrollment("W" + nextId++, BenchData.courseId(0)));
+        }
+        return db.insertEnrollments(batch);
+    }
+
+    /**
+     * Cold load of the whole store into a new model, as at startup (without
+     * the snapshot). Includes opening the store.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DataModel loadData() {
+        DatabaseService loader = open();
+        try {
+            loader.initDatabase();
+            DataModel model = new DataModel();
+            loader.loadData(model);
+            return model;
+        } finally {
+            loader.close();
+        }
+    }
+}
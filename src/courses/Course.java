@@ -1,8 +1,11 @@
 package courses;
 
 import interfaces.Printable;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import utilities.IdDictionary;
+import utilities.IntSet;
 
 
 public class Course implements Printable {
@@ -11,16 +14,17 @@ public class Course implements Printable {
     private String courseName;
     private Department department;
     private String teacherId;
-    private List<String> enrolledStudentIds;
+    // Student IDs are dictionary-encoded; getEnrolledStudentIds() is a read-only view
+    private final IntSet enrolledStudents = new IntSet();
+    private final List<String> enrolledStudentIds = IdDictionary.STUDENTS.view(enrolledStudents);
+    // Enrolled students plus seats reserved by in-flight enrollments
+    private final AtomicInteger seatsTaken = new AtomicInteger();
 
     public Course(String courseId, String courseName, Department department) {
         this.courseId = courseId;
         this.courseName = courseName;
         this.department = department;
         this.teacherId = "TBD"; // To Be Determined
-        
-        // Collections Framework
-        this.enrolledStudentIds = new ArrayList<>();
     }
 
     // --- Getters ---
@@ -29,6 +33,7 @@ public class Course implements Printable {
     public Department getDepartment() { return department; } // Needed for DB
     public String getTeacherId() { return teacherId; }
     public List<String> getEnrolledStudentIds() { return enrolledStudentIds; }
+    public int getSeatsTaken() { return seatsTaken.get(); }
     
     // --- Business Logic Methods ---
     public void assignTeacher(String teacherId) {
@@ -36,22 +41,65 @@ public class Course implements Printable {
     }
 
     public void addStudent(String studentId) {
-        if (!enrolledStudentIds.contains(studentId)) {
-            enrolledStudentIds.add(studentId);
+        if (enrolledStudents.add(IdDictionary.STUDENTS.intern(studentId))) {
+            seatsTaken.incrementAndGet();
         }
     }
 
+    /** Sizes the roster for {@code count} students up front, e.g. when loading. */
+    public void ensureRosterCapacity(int count) {
+        enrolledStudents.ensureCapacity(count);
+    }
+
     public void removeStudent(String studentId) {
-        enrolledStudentIds.remove(studentId);
+        int code = IdDictionary.STUDENTS.code(studentId);
+        if (code >= 0 && enrolledStudents.remove(code)) {
+            seatsTaken.decrementAndGet();
+        }
+    }
+
+    // --- Seat Reservation ---
+    // Concurrent enrollments first reserve a seat atomically, then fill it (or
+    // release it on failure), so the course can never go over capacity.
+
+    /** Atomically takes a seat if fewer than {@code capacity} are taken. */
+    public boolean tryReserveSeat(int capacity) {
+        return tryReserveSeats(1, capacity);
+    }
+
+    /** Atomically takes {@code count} seats, or none if that would exceed {@code capacity}. */
+    public boolean tryReserveSeats(int count, int capacity) {
+        while (true) {
+            int taken = seatsTaken.get();
+            if (taken + count > capacity) return false;
+            if (seatsTaken.compareAndSet(taken, taken + count)) return true;
+        }
+    }
+
+    public void releaseSeat() {
+        seatsTaken.decrementAndGet();
+    }
+
+    /**
+     * Puts the student into a seat reserved with {@link #tryReserveSeat}. Returns false,
+     * keeping the reservation, if the student was already enrolled.
+     */
+    public boolean fillReservedSeat(String studentId) {
+        return enrolledStudents.add(IdDictionary.STUDENTS.intern(studentId));
+    }
+
+    public boolean hasStudent(String studentId) {
+        int code = IdDictionary.STUDENTS.code(studentId);
+        return code >= 0 && enrolledStudents.contains(code);
     }
     
 
 
     @Override
-    public void printDetails() {
-        System.out.println("Course ID: " + courseId + " [" + department.name() + "]");
-        System.out.println("  Name: " + courseName);
-        System.out.println("  Teacher ID: " + teacherId);
-        System.out.println("  Enrollment: " + enrolledStudentIds.size() + " student(s)");
+    public void appendDetails(Appendable out) throws IOException {
+        out.append("Course ID: ").append(courseId).append(" [").append(department.name()).append(']').append(NEWLINE);
+        out.append("  Name: ").append(courseName).append(NEWLINE);
+        out.append("  Teacher ID: ").append(teacherId).append(NEWLINE);
+        out.append("  Enrollment: ").append(Integer.toString(enrolledStudentIds.size())).append(" student(s)").append(NEWLINE);
     }
 }
\ No newline at end of file
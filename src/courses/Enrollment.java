@@ -0,0 +1,36 @@
+package courses;
+
+import java.util.Objects;
+
+/** A single student-in-course edge, used where enrollments travel as data. */
+public class Enrollment {
+
+    private final String studentId;
+    private final String courseId;
+
+    public Enrollment(String studentId, String courseId) {
+        this.studentId = studentId;
+        this.courseId = courseId;
+    }
+
+    public String getStudentId() { return studentId; }
+    public String getCourseId() { return courseId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Enrollment that = (Enrollment) o;
+        return Objects.equals(studentId, that.studentId) && Objects.equals(courseId, that.courseId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(studentId, courseId);
+    }
+
+    @Override
+    public String toString() {
+        return studentId + "->" + courseId;
+    }
+}
@@ -1,6 +1,22 @@
 package interfaces;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 public interface Printable {
 
-    void printDetails();
+    String NEWLINE = System.lineSeparator();
+
+    /** Writes the details, one line per field, straight to {@code out} without building them as strings first. */
+    void appendDetails(Appendable out) throws IOException;
+
+    default void printDetails() {
+        StringBuilder sb = new StringBuilder(128);
+        try {
+            appendDetails(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        System.out.print(sb);
+    }
 }
\ No newline at end of file
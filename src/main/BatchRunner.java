@@ -0,0 +1,305 @@
+package main;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import people.Student;
+import people.Teacher;
+import utilities.CsvReader;
+import utilities.ImportReport;
+import utilities.UniversityService;
+
+/**
+ * Headless mode ({@code --batch <file>}, or {@code -} for stdin): runs a
+ * script of commands, one CSV record each, so names may be quoted and contain
+ * commas. Blank lines and lines starting with '#' are skipped.
+ *
+ * <pre>
+ * add-student,S1001,"Doe, Jane",Mathematics
+ * add-teacher,T300,Ada Lovelace,COMPUTER_SCIENCE[,subject]
+ * add-course,CS300,Compilers,COMPUTER_SCIENCE
+ * enroll,S1001,CS300
+ * assign,T300,CS300
+ * list,students|teachers|courses[,major or department[,teacher]]
+ * search,name words
+ * stats
+ * </pre>
+ *
+ * The script is read as it runs. A run of consecutive commands of the same
+ * write kind goes through the service's bulk import, so it is validated row by
+ * row and written in chunk-sized transactions; a read, or a command of another
+ * kind, ends the run, so every command sees the effect of the ones before it.
+ * A failed command is reported and the script carries on. At the end one
+ * summary line gives the counts per command and the rate, followed by the
+ * first failures with their line numbers.
+ */
+class BatchRunner {
+
+    private static final int MAX_FAILURES_SHOWN = 20;
+    private static final int LIST_PAGE_SIZE = 500;
+    private static final int SEARCH_LIMIT = 10;
+
+    private enum Command {
+        ADD_STUDENT("add-student", 4, 4, true),
+        ADD_TEACHER("add-teacher", 4, 5, true),
+        ADD_COURSE("add-course", 4, 4, true),
+        ENROLL("enroll", 3, 3, true),
+        ASSIGN("assign", 3, 3, true),
+        LIST("list", 2, 4, false),
+        SEARCH("search", 2, 3, false),
+        STATS("stats", 1, 1, false);
+
+        final String word;
+        final int minFields;
+        final int maxFields;
+        final boolean write;
+
+        Command(String word, int minFields, int maxFields, boolean write) {
+            this.word = word;
+            this.minFields = minFields;
+            this.maxFields = maxFields;
+            this.write = write;
+        }
+
+        static Command of(String word) {
+            for (Command c : values()) {
+                if (c.word.equalsIgnoreCase(word)) return c;
+            }
+            return null;
+        }
+    }
+
+    private final UniversityService service;
+    private final CsvReader in;
+
+    // The next command, read but not yet run
+    private Command pending;
+    private String[] pendingFields;
+    private long pendingLine;
+
+    private final Map<Command, long[]> counts = new EnumMap<>(Command.class); // {ok, failed}
+    private final List<String> failures = new ArrayList<>();
+    private long failed;
+
+    BatchRunner(UniversityService service, InputStream script) {
+        this.service = service;
+        this.in = new CsvReader(script);
+    }
+
+    /** Runs the whole script and prints the summary; returns the number of failed commands. */
+    long run() throws IOException {
+        long start = System.nanoTime();
+        while (peek()) {
+            Command c = pending;
+            switch (c) {
+                case ADD_STUDENT:
+                    runImport(c, f -> new Student(f[1], f[2], f[3]), service::importStudents);
+                    break;
+                case ADD_TEACHER:
+                    runImport(c, f -> f.length > 4
+                            ? new Teacher(f[1], f[2], department(f[3]), f[4])
+                            : new Teacher(f[1], f[2], department(f[3])), service::importTeachers);
+                    break;
+                case ADD_COURSE:
+                    runImport(c, f -> new Course(f[1], f[2], department(f[3])), service::importCourses);
+                    break;
+                case ENROLL:
+                    runImport(c, f -> new Enrollment(f[1], f[2]), service::importEnrollments);
+                    break;
+                case ASSIGN:
+                    runImport(c, f -> new String[] {f[1], f[2]}, service::importAssignments);
+                    break;
+                default:
+                    runRead();
+            }
+        }
+        printSummary(System.nanoTime() - start);
+        return failed;
+    }
+
+    // Reads ahead to the next runnable command; malformed lines are counted as failures on the way
+    private boolean peek() throws IOException {
+        while (pending == null) {
+            if (!in.next()) return false;
+            if (in.isBlank() || in.startsWith('#')) continue;
+            String[] fields = in.toArray();
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+            Command c = Command.of(fields[0]);
+            if (c == null) {
+                fail(in.getLineNumber(), null, fields[0], "Unknown command");
+            } else if (fields.length < c.minFields || fields.length > c.maxFields) {
+                fail(in.getLineNumber(), c, String.join(",", Arrays.copyOfRange(fields, 1, fields.length)),
+                        "Expected " + (c.minFields == c.maxFields ? "" : c.minFields - 1 + " to ")
+                                + (c.maxFields - 1) + " arguments");
+            } else {
+                pending = c;
+                pendingFields = fields;
+                pendingLine = in.getLineNumber();
+            }
+        }
+        return true;
+    }
+
+    private String[] take() {
+        String[] fields = pendingFields;
+        pending = null;
+        pendingFields = null;
+        return fields;
+    }
+
+    /**
+     * Feeds the run of {@code kind} commands starting here to {@code importer},
+     * parsing each line only when the import asks for the next row.
+     */
+    private <T> void runImport(Command kind, Function<String[], T> parse, Function<Iterable<T>, ImportReport> importer) {
+        LineNumbers lines = new LineNumbers();
+        Iterable<T> rows = () -> new Iterator<T>() {
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && peek() && pending == kind) {
+                        long line = pendingLine;
+                        String[] fields = take();
+                        try {
+                            next = parse.apply(fields);
+                            lines.add(line);
+                        } catch (IllegalArgumentException e) {
+                            fail(line, kind, fields[1], e.getMessage());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("[Batch] Failed to read the script: " + e.getMessage(), e);
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                T row = next;
+                next = null;
+                return row;
+            }
+        };
+        ImportReport report = importer.apply(rows);
+        counts.computeIfAbsent(kind, k -> new long[2])[0] += report.getAccepted();
+        for (ImportReport.Reject r : report.getRejects()) {
+            fail(lines.get(r.getRow()), kind, r.getKey(), r.getReason());
+        }
+    }
+
+    private void runRead() {
+        Command c = pending;
+        long line = pendingLine;
+        String[] f = take();
+        try {
+            switch (c) {
+                case LIST:
+                    list(f);
+                    break;
+                case SEARCH:
+                    service.printSearch(f[1], f.length > 2 ? Integer.parseInt(f[2]) : SEARCH_LIMIT);
+                    break;
+                default:
+                    service.printStatistics();
+            }
+            counts.computeIfAbsent(c, k -> new long[2])[0]++;
+        } catch (RuntimeException e) {
+            fail(line, c, String.join(",", Arrays.copyOfRange(f, 1, f.length)), e.getMessage());
+        }
+    }
+
+    // Prints every page; the second argument filters students by major, teachers and courses by department
+    private void list(String[] f) {
+        String filter = f.length > 2 && !f[2].isEmpty() ? f[2] : null;
+        String cursor = null;
+        switch (f[1].toLowerCase(Locale.ROOT)) {
+            case "students":
+                do {
+                    cursor = service.listStudents(filter, cursor, LIST_PAGE_SIZE);
+                } while (cursor != null);
+                break;
+            case "teachers":
+                Department teacherDept = filter == null ? null : department(filter);
+                do {
+                    cursor = service.listTeachers(teacherDept, cursor, LIST_PAGE_SIZE);
+                } while (cursor != null);
+                break;
+            case "courses":
+                Department courseDept = filter == null ? null : department(filter);
+                String teacherId = f.length > 3 ? f[3] : null;
+                do {
+                    cursor = service.listCourses(courseDept, teacherId, cursor, LIST_PAGE_SIZE);
+                } while (cursor != null);
+                break;
+            default:
+                throw new IllegalArgumentException("Nothing to list called '" + f[1] + "'");
+        }
+    }
+
+    private static Department department(String code) {
+        try {
+            return Department.valueOf(code.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown department " + code);
+        }
+    }
+
+    private void fail(long line, Command c, String what, String reason) {
+        if (c != null) counts.computeIfAbsent(c, k -> new long[2])[1]++;
+        failed++;
+        if (failures.size() < MAX_FAILURES_SHOWN) {
+            failures.add("line " + line + ": " + (c == null ? "" : c.word + " ") + what + ": " + reason);
+        }
+    }
+
+    private void printSummary(long nanos) {
+        long ok = 0;
+        StringBuilder perCommand = new StringBuilder();
+        for (Map.Entry<Command, long[]> e : counts.entrySet()) {
+            long[] n = e.getValue();
+            ok += n[0];
+            if (perCommand.length() > 0) perCommand.append(", ");
+            perCommand.append(e.getKey().word).append(' ').append(String.format(Locale.ROOT, "%,d", n[0]));
+            if (n[1] > 0) perCommand.append(String.format(Locale.ROOT, " (%,d failed)", n[1]));
+        }
+        long total = ok + failed;
+        System.out.println(String.format(Locale.ROOT, "[Batch] %,d commands in %,d ms (%,.0f/s), %,d failed%s%s",
+                total, nanos / 1_000_000, nanos == 0 ? 0.0 : total * 1e9 / nanos, failed,
+                perCommand.length() == 0 ? "" : ": ", perCommand));
+        for (String f : failures) {
+            System.out.println("[Batch]   " + f);
+        }
+        if (failed > failures.size()) {
+            System.out.println(String.format(Locale.ROOT, "[Batch]   ... and %,d more", failed - failures.size()));
+        }
+    }
+
+    // Script line of each row handed to an import, by position, to place its rejects
+    private static final class LineNumbers {
+        private long[] lines = new long[64];
+        private int size;
+
+        void add(long line) {
+            if (size == lines.length) lines = Arrays.copyOf(lines, size * 2);
+            lines[size++] = line;
+        }
+
+        long get(long row) {
+            return lines[(int) row];
+        }
+    }
+}
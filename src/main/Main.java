@@ -1,10 +1,26 @@
 package main;
 
 import courses.Department;
+import utilities.DataExporter;
 import utilities.DataModel;
 import utilities.DatabaseService;
+import utilities.EnrollmentBatchResult;
+import utilities.LazyDataModel;
+import utilities.Metrics;
+import utilities.ShardedDatabaseService;
+import utilities.UniversityModel;
 import utilities.UniversityService;
+import utilities.WriteBehindQueue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.UnaryOperator;
 import people.Person;
 
 public class Main {
@@ -12,14 +28,41 @@ public class Main {
     private static UniversityService service;
     private static DatabaseService dbService;
     private static Scanner scanner;
+    private static final int PAGE_SIZE = 20;
+    private static final int SEARCH_LIMIT = 10;
 
     public static void main(String[] args) {
         try {
-            dbService = new DatabaseService();
-            DataModel model = new DataModel();
+            // -Dums.shards=department|hash[:N] spreads courses and enrollments over several database files
+            String shards = System.getProperty("ums.shards");
+            if (shards != null) {
+                dbService = new ShardedDatabaseService(ShardedDatabaseService.Config.parse(shards));
+            } else {
+                dbService = new DatabaseService();
+            }
+            // -Dums.model=lazy reads entities from the database on first use instead of loading them all
+            UniversityModel model = "lazy".equalsIgnoreCase(System.getProperty("ums.model"))
+                    ? new LazyDataModel(dbService, new LazyDataModel.Config())
+                    : new DataModel();
             service = new UniversityService(model, dbService);
             scanner = new Scanner(System.in);
 
+            // -Dums.writeBehind=periodic|ack queues database writes behind the in-memory model
+            String writeBehind = System.getProperty("ums.writeBehind");
+            if (writeBehind != null) {
+                WriteBehindQueue.Config config = new WriteBehindQueue.Config();
+                config.durability = writeBehind.equalsIgnoreCase("ack")
+                        ? WriteBehindQueue.Durability.FLUSH_ON_ACK
+                        : WriteBehindQueue.Durability.PERIODIC;
+                service.enableWriteBehind(config);
+            }
+
+            // -Dums.snapshot=<file> moves the binary snapshot; -Dums.snapshot=off disables it
+            String snapshot = System.getProperty("ums.snapshot", "ums.snapshot");
+            if (!snapshot.equalsIgnoreCase("off")) {
+                service.setSnapshotPath(Paths.get(snapshot));
+            }
+
             service.loadDataFromDatabase();
         } catch (Exception e) {
             System.err.println("Failed to initialize the system: " + e.getMessage());
@@ -27,12 +70,32 @@ public class Main {
             System.exit(1);
         }
 
+        // --batch <file|-> runs a command script headless instead of the menu; see BatchRunner
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args.length > 1 ? args[1] : "-"));
+        }
+
         System.out.println("--- " + Person.UNIVERSITY_NAME + " (UMS) v1.3 [SQL Edition] ---");
         System.out.println("Type 'help' for a list of commands. Data saves automatically.");
 
         runCli();
     }
 
+    // Exit status: 0 when every command succeeded, 1 when some failed, 2 when the script could not be read
+    private static int runBatch(String script) {
+        try (InputStream in = script.equals("-") ? System.in : Files.newInputStream(Paths.get(script))) {
+            return new BatchRunner(service, in).run() == 0 ? 0 : 1;
+        } catch (NoSuchFileException e) {
+            System.err.println("[Batch] Script not found: " + script);
+            return 2;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Batch] Failed to run " + script + ": " + e.getMessage());
+            return 2;
+        } finally {
+            service.shutdown();
+        }
+    }
+
     private static void runCli() {
         boolean running = true;
         while (running) {
@@ -42,8 +105,10 @@ public class Main {
             System.out.println("3. Teacher Operations");
             System.out.println("4. Course Operations");
             System.out.println("5. View Lists");
+            System.out.println("6. System Tools");
+            System.out.println("7. Search by Name");
             System.out.println("0. Exit");
-            System.out.print("\nEnter your choice (0-5): ");
+            System.out.print("\nEnter your choice (0-7): ");
 
             try {
                 int choice = Integer.parseInt(scanner.nextLine().trim());
@@ -66,8 +131,15 @@ public class Main {
                     case 5:
                         showListMenu();
                         break;
+                    case 6:
+                        showToolsMenu();
+                        break;
+                    case 7:
+                        String query = prompt("Name or part of it (typos are fine): ");
+                        if (!query.isEmpty()) service.printSearch(query, SEARCH_LIMIT);
+                        break;
                     default:
-                        System.err.println("Invalid choice. Please enter a number between 0 and 5.");
+                        System.err.println("Invalid choice. Please enter a number between 0 and 7.");
                 }
             } catch (NumberFormatException e) {
                 System.err.println("Please enter a valid number.");
@@ -81,6 +153,7 @@ public class Main {
             }
         }
         scanner.close();
+        service.shutdown();
         System.out.println("System shut down.");
     }
 
@@ -89,8 +162,9 @@ public class Main {
             System.out.println("\n=== Student Operations ===");
             System.out.println("1. Add New Student");
             System.out.println("2. Enroll Student in Course");
+            System.out.println("3. Enroll Student in Several Courses");
             System.out.println("0. Return to Main Menu");
-            System.out.print("\nEnter your choice (0-2): ");
+            System.out.print("\nEnter your choice (0-3): ");
 
             try {
                 int choice = Integer.parseInt(scanner.nextLine().trim());
@@ -121,6 +195,11 @@ public class Main {
                             if (ok) System.out.println("Student enrolled successfully!");
                         }
                         break;
+                    case 3:
+                        String student = prompt("Enter Student ID: ");
+                        List<String> courseIds = promptIdList("Enter Course IDs, separated by commas: ");
+                        printBatchResult(service.enrollMany(student, courseIds, promptBatchMode()));
+                        break;
                     default:
                         System.err.println("Invalid choice.");
                 }
@@ -141,7 +220,7 @@ public class Main {
             System.out.println("\nAvailable Departments:");
             System.out.println("COMPUTER_SCIENCE, BUSINESS_ADMINISTRATION, ELECTRICAL_ENGINEERING,");
             System.out.println("ARTS_AND_HUMANITIES, PHYSICS");
-            System.out.print("\nEnter your choice (0-2): ");
+            System.out.print("\nEnter your choice (0-3): ");
 
             try {
                 int choice = Integer.parseInt(scanner.nextLine().trim());
@@ -192,6 +271,7 @@ public class Main {
             System.out.println("\n=== Course Operations ===");
             System.out.println("1. Add New Course");
             System.out.println("2. View All Courses");
+            System.out.println("3. Enroll Cohort in Course");
             System.out.println("0. Return to Main Menu");
             System.out.println("\nAvailable Departments:");
             System.out.println("COMPUTER_SCIENCE, BUSINESS_ADMINISTRATION, ELECTRICAL_ENGINEERING,");
@@ -218,6 +298,11 @@ public class Main {
                     case 2:
                         service.listCourses();
                         break;
+                    case 3:
+                        String courseId = prompt("Enter Course ID: ");
+                        List<String> studentIds = promptIdList("Enter Student IDs, separated by commas: ");
+                        printBatchResult(service.enrollCohort(studentIds, courseId, promptBatchMode()));
+                        break;
                     default:
                         System.err.println("Invalid choice.");
                 }
@@ -237,8 +322,10 @@ public class Main {
             System.out.println("1. List all Students");
             System.out.println("2. List all Teachers");
             System.out.println("3. List all Courses");
+            System.out.println("4. Department Summary");
+            System.out.println("5. Enrollment Statistics");
             System.out.println("0. Return to Main Menu");
-            System.out.print("\nEnter your choice (0-3): ");
+            System.out.print("\nEnter your choice (0-5): ");
 
             try {
                 int choice = Integer.parseInt(scanner.nextLine().trim());
@@ -248,13 +335,126 @@ public class Main {
 
                 switch (choice) {
                     case 1:
-                        service.listStudents();
+                        String major = prompt("Filter by major (Enter for all): ");
+                        pageThrough(cursor -> service.listStudents(major, cursor, PAGE_SIZE));
                         break;
                     case 2:
-                        service.listTeachers();
+                        Department teacherDept = promptDepartment();
+                        pageThrough(cursor -> service.listTeachers(teacherDept, cursor, PAGE_SIZE));
                         break;
                     case 3:
-                        service.listCourses();
+                        Department courseDept = promptDepartment();
+                        String teacherId = prompt("Filter by teacher ID (Enter for all): ");
+                        pageThrough(cursor -> service.listCourses(courseDept, teacherId, cursor, PAGE_SIZE));
+                        break;
+                    case 4:
+                        service.printDepartmentSummary();
+                        break;
+                    case 5:
+                        service.printStatistics();
+                        break;
+                    default:
+                        System.err.println("Invalid choice.");
+                }
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+            System.out.println("\nPress Enter to continue...");
+            scanner.nextLine();
+        }
+    }
+
+    // Shows pages until the listing ends or the user stops; lister prints one page and returns the next cursor
+    private static void pageThrough(UnaryOperator<String> lister) {
+        String cursor = lister.apply(null);
+        while (cursor != null) {
+            System.out.print("Enter for the next page, q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            cursor = lister.apply(cursor);
+        }
+    }
+
+    private static String prompt(String message) {
+        System.out.print(message);
+        return scanner.nextLine().trim();
+    }
+
+    private static List<String> promptIdList(String message) {
+        List<String> ids = new ArrayList<>();
+        for (String id : prompt(message).split(",")) {
+            if (!id.trim().isEmpty()) ids.add(id.trim());
+        }
+        return ids;
+    }
+
+    private static UniversityService.BatchMode promptBatchMode() {
+        String answer = prompt("Enroll all or nothing? (y/n): ");
+        return answer.equalsIgnoreCase("y")
+                ? UniversityService.BatchMode.ALL_OR_NOTHING
+                : UniversityService.BatchMode.BEST_EFFORT;
+    }
+
+    private static void printBatchResult(EnrollmentBatchResult result) {
+        System.out.println(result);
+        for (EnrollmentBatchResult.Item failure : result.getFailures()) {
+            System.out.println("  " + failure);
+        }
+    }
+
+    private static Department promptDepartment() {
+        String dept = prompt("Filter by department code (Enter for all): ");
+        return dept.isEmpty() ? null : Department.valueOf(dept.toUpperCase());
+    }
+
+    private static void showToolsMenu() {
+        while (true) {
+            System.out.println("\n=== System Tools ===");
+            System.out.println("1. Save Snapshot Now");
+            System.out.println("2. Show Metrics");
+            System.out.println("3. Export List to File");
+            System.out.println("4. Export Full Dataset");
+            System.out.println("0. Return to Main Menu");
+            System.out.print("\nEnter your choice (0-4): ");
+
+            try {
+                int choice = Integer.parseInt(scanner.nextLine().trim());
+                if (choice == 0) {
+                    return;
+                }
+
+                switch (choice) {
+                    case 1:
+                        if (!service.saveSnapshot()) {
+                            System.err.println("Snapshot not saved (disabled with -Dums.snapshot=off, or no persistence).");
+                        }
+                        break;
+                    case 2:
+                        Metrics.dump(System.out);
+                        break;
+                    case 3:
+                        String what = prompt("Export (s)tudents, (t)eachers or (c)ourses? ").toLowerCase();
+                        if (what.startsWith("s")) {
+                            String major = prompt("Filter by major (Enter for all): ");
+                            service.exportStudents(Paths.get(prompt("File name: ")), major);
+                        } else if (what.startsWith("t")) {
+                            Department dept = promptDepartment();
+                            service.exportTeachers(Paths.get(prompt("File name: ")), dept);
+                        } else if (what.startsWith("c")) {
+                            Department dept = promptDepartment();
+                            String teacherId = prompt("Filter by teacher ID (Enter for all): ");
+                            service.exportCourses(Paths.get(prompt("File name: ")), dept, teacherId);
+                        } else {
+                            System.err.println("Invalid choice.");
+                        }
+                        break;
+                    case 4:
+                        Path dir = Paths.get(prompt("Directory: "));
+                        String format = prompt("Format, csv or jsonl (Enter for csv): ");
+                        boolean gzip = prompt("Gzip the files? (y/N): ").toLowerCase().startsWith("y");
+                        service.exportDataset(dir, format.isEmpty() ? DataExporter.Format.CSV
+                                : DataExporter.Format.valueOf(format.toUpperCase()), gzip);
                         break;
                     default:
                         System.err.println("Invalid choice.");
@@ -267,4 +467,4 @@ public class Main {
         }
     }
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package people;
 
 import interfaces.Printable;
+import java.io.IOException;
 import java.util.Objects;
 
 public abstract class Person implements Printable {
@@ -20,8 +21,9 @@ public abstract class Person implements Printable {
 
     public abstract String role();
     @Override
-    public void printDetails() {
-        System.out.println("ID: " + id + ", Name: " + name + ", Role: " + role());
+    public void appendDetails(Appendable out) throws IOException {
+        out.append("ID: ").append(id).append(", Name: ").append(name)
+                .append(", Role: ").append(role()).append(NEWLINE);
     }
 
     @Override
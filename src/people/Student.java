@@ -1,24 +1,26 @@
 package people;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
+import utilities.IdDictionary;
+import utilities.IntSet;
 
 
 public class Student extends Person {
 
     private String major;
-    private List<String> enrolledCourseIds;
+    // Course IDs are dictionary-encoded; getEnrolledCourseIds() is a read-only view
+    private final IntSet enrolledCourses = new IntSet();
+    private final List<String> enrolledCourseIds = IdDictionary.COURSES.view(enrolledCourses);
 
     public Student(String id, String name, String major) {
         super(id, name);
         this.major = major;
-        this.enrolledCourseIds = new ArrayList<>();
     }
 
     public Student(String id, String name) {
         super(id, name);
         this.major = "Undeclared";
-        this.enrolledCourseIds = new ArrayList<>();
     }
 
     @Override // Annotation
@@ -30,31 +32,37 @@ public class Student extends Person {
     public List<String> getEnrolledCourseIds() { return enrolledCourseIds; }
 
     public boolean isEnrolledIn(String courseId) {
-        return enrolledCourseIds.contains(courseId);
+        int code = IdDictionary.COURSES.code(courseId);
+        return code >= 0 && enrolledCourses.contains(code);
     }
 
     public void unenroll(String courseId) {
-        enrolledCourseIds.remove(courseId);
+        int code = IdDictionary.COURSES.code(courseId);
+        if (code >= 0) enrolledCourses.remove(code);
     }
 
     public void setMajor(String major) {
         this.major = major;
     }
 
-    public void enroll(String courseId) {
-        if (!enrolledCourseIds.contains(courseId)) {
-            enrolledCourseIds.add(courseId);
-        }
+    /** Returns false if the student was already enrolled in the course. */
+    public boolean enroll(String courseId) {
+        return enrolledCourses.add(IdDictionary.COURSES.intern(courseId));
+    }
+
+    /** Sizes the enrollment set for {@code count} courses up front, e.g. when loading. */
+    public void ensureEnrollmentCapacity(int count) {
+        enrolledCourses.ensureCapacity(count);
     }
 
     public void drop(String courseId) {
-        enrolledCourseIds.remove(courseId);
+        unenroll(courseId);
     }
 
     @Override
-    public void printDetails() {
-        super.printDetails();
-        System.out.println("  Major: " + major);
-        System.out.println("  Enrolled Courses: " + enrolledCourseIds.size());
+    public void appendDetails(Appendable out) throws IOException {
+        super.appendDetails(out);
+        out.append("  Major: ").append(major).append(NEWLINE);
+        out.append("  Enrolled Courses: ").append(Integer.toString(enrolledCourseIds.size())).append(NEWLINE);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package people;
 
 import courses.Department;
+import java.io.IOException;
 
 
 public class Teacher extends Person {
@@ -33,9 +34,9 @@ public class Teacher extends Person {
     
 
     @Override
-    public void printDetails() {
-        super.printDetails();
-        System.out.println("  Department: " + department.name());
-        System.out.println("  Specialty: " + subject);
+    public void appendDetails(Appendable out) throws IOException {
+        super.appendDetails(out);
+        out.append("  Department: ").append(department.name()).append(NEWLINE);
+        out.append("  Specialty: ").append(subject).append(NEWLINE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import people.Student;
+import utilities.DatabaseService.PersistenceMode;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Many threads race for the seats of one course through every enrollment
+ * path; the course must end up exactly full, in memory and in storage.
+ */
+class EnrollmentCapacityTest {
+
+    private static final int THREADS = 16;
+    private static final int STUDENTS = 4 * UniversityService.MAX_COURSE_CAPACITY;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(value = PersistenceMode.class, names = {"SQL", "FILE"})
+    void concurrentEnrollmentsNeverOverbook(PersistenceMode mode) throws Exception {
+        DataModel model = new DataModel();
+        UniversityService service = open(model, mode);
+        service.addCourse("C1", "Hot Course", Department.PHYSICS);
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(new Student("S" + i, "Student " + i, "Physics"));
+        }
+        assertEquals((long) STUDENTS, service.importStudents(students).getAccepted());
+
+        // Every third student uses each path, all released at once
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            String id = "S" + i;
+            int path = i % 3;
+            tasks.add(() -> {
+                start.await();
+                if (path == 0) {
+                    service.enrollStudent(id, "C1");
+                } else if (path == 1) {
+                    service.enrollMany(id, List.of("C1"), UniversityService.BatchMode.BEST_EFFORT);
+                } else {
+                    service.importEnrollments(List.of(new Enrollment(id, "C1")));
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Callable<Void> task : tasks) results.add(pool.submit(task));
+            start.countDown();
+            for (Future<Void> result : results) result.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        Set<String> roster = assertFull(model);
+        service.shutdown();
+
+        DataModel reloaded = new DataModel();
+        UniversityService again = open(reloaded, mode);
+        again.loadDataFromDatabase();
+        assertEquals(roster, assertFull(reloaded));
+        again.shutdown();
+    }
+
+    private UniversityService open(DataModel model, PersistenceMode mode) {
+        DatabaseService db = new DatabaseService(dir.resolve("ums.db"), dir.resolve("data"), mode);
+        UniversityService service = new UniversityService(model, db);
+        assertEquals(mode, db.getPersistenceMode());
+        return service;
+    }
+
+    // Seats, roster and the students' side must agree, with the course exactly full
+    private static Set<String> assertFull(DataModel model) {
+        Course course = model.findCourse("C1").orElseThrow();
+        Set<String> roster = new HashSet<>(course.getEnrolledStudentIds());
+        assertEquals(course.getEnrolledStudentIds().size(), roster.size(), "duplicate roster entries");
+        assertEquals(roster.size(), course.getSeatsTaken());
+        assertTrue(roster.size() <= UniversityService.MAX_COURSE_CAPACITY, "overbooked: " + roster.size());
+        // More students than seats asked, so every seat must have been taken
+        assertEquals(UniversityService.MAX_COURSE_CAPACITY, roster.size());
+        int enrolled = 0;
+        for (Student s : model.getStudents()) {
+            if (s.isEnrolledIn("C1")) enrolled++;
+        }
+        assertEquals(roster.size(), enrolled);
+        assertEquals(roster.size(), model.snapshot().findCourse("C1").orElseThrow().getEnrolledStudentIds().size());
+        return roster;
+    }
+}
@@ -0,0 +1,91 @@
+package utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import courses.Course;
+import courses.Department;
+import people.Student;
+import utilities.DatabaseService.PersistenceMode;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * A cache of three entities keeps evicting the hot course while 16 threads
+ * enroll 400 students into it. Every enrollment must see the seats taken by
+ * the ones before it, so exactly a full course reaches the database.
+ */
+class LazyDataModelTest {
+
+    private static final int THREADS = 16;
+    private static final int STUDENTS = 400;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void evictionNeverOverbooksACourse(boolean batches) throws Exception {
+        Path dbFile = dir.resolve("ums.db");
+        DatabaseService db = new DatabaseService(dbFile, dir.resolve("data"), PersistenceMode.SQL);
+        LazyDataModel.Config config = new LazyDataModel.Config();
+        config.maxWeight = 3;
+        LazyDataModel model = new LazyDataModel(db, config);
+        UniversityService service = new UniversityService(model, db);
+        assertTrue(model.currentVersion().isEmpty());
+
+        service.addCourse("C1", "Hot Course", Department.PHYSICS);
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(new Student("S" + i, "Student " + i, "Physics"));
+        }
+        service.importStudents(students);
+
+        // With batches, every other student goes through enrollMany instead
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < STUDENTS; i++) {
+                String id = "S" + i;
+                boolean batch = batches && i % 2 == 0;
+                results.add(pool.submit(() -> {
+                    if (batch) {
+                        service.enrollMany(id, List.of("C1"), UniversityService.BatchMode.BEST_EFFORT);
+                    } else {
+                        service.enrollStudent(id, "C1");
+                    }
+                }));
+            }
+            for (Future<?> result : results) result.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        Course course = model.findCourse("C1").orElseThrow();
+        assertEquals(UniversityService.MAX_COURSE_CAPACITY, course.getSeatsTaken());
+        assertEquals(UniversityService.MAX_COURSE_CAPACITY, course.getEnrolledStudentIds().size());
+        assertEquals(UniversityService.MAX_COURSE_CAPACITY, service.getStatistics().getEnrollmentCount());
+        assertFalse(service.saveSnapshot());
+        service.shutdown();
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM ENROLLMENTS WHERE course_id = 'C1'")) {
+            assertTrue(rs.next());
+            assertEquals(UniversityService.MAX_COURSE_CAPACITY, rs.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * UTF-8 text writer straight onto a {@link FileChannel}. Characters are
+ * encoded into a large direct buffer that is written to the channel whenever
+ * it fills, so the encoded bytes never pass through a heap array. With gzip, the buffer
+ * is deflated into a second direct buffer first and the file gets the gzip
+ * header and trailer, so standard tools read it. Memory use is the two
+ * buffers, however much is written.
+ */
+class ChannelWriter extends Writer {
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE / 16);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Gzip only
+    private final Deflater deflater;
+    private final ByteBuffer deflated;
+    private final CRC32 crc;
+
+    private long textBytes;
+    private boolean closed;
+
+    ChannelWriter(FileChannel channel, boolean gzip) throws IOException {
+        this.channel = channel;
+        if (gzip) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflated = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            crc = new CRC32();
+            writeFully(ByteBuffer.wrap(GZIP_HEADER));
+        } else {
+            deflater = null;
+            deflated = null;
+            crc = null;
+        }
+    }
+
+    /** Bytes of text written so far, before compression. */
+    long getTextBytes() {
+        return textBytes;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (!chars.hasRemaining()) encodeChars(false);
+        chars.put((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) encodeChars(false);
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) encodeChars(false);
+            int n = Math.min(len, chars.remaining());
+            chars.put(str, off, off + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        String s = String.valueOf(csq);
+        write(s, 0, s.length());
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        String s = String.valueOf(csq == null ? "null" : csq);
+        write(s, start, end - start);
+        return this;
+    }
+
+    // Moves the pending characters into the byte buffer, draining it whenever it fills
+    private void encodeChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drainBytes();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        // A surrogate pair split across two writes stays for the next round
+        chars.compact();
+    }
+
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        textBytes += bytes.remaining();
+        if (deflater == null) {
+            writeFully(bytes);
+        } else {
+            crc.update(bytes.duplicate());
+            // A slice, because the deflater keeps its input buffer and would see it again once cleared
+            deflater.setInput(bytes.slice());
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+        bytes.clear();
+    }
+
+    private void deflate() throws IOException {
+        deflater.deflate(deflated);
+        if (!deflated.hasRemaining()) drainDeflated();
+    }
+
+    private void drainDeflated() throws IOException {
+        deflated.flip();
+        writeFully(deflated);
+        deflated.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** Writes out everything buffered so far; compressed output may still hold some back until close. */
+    @Override
+    public void flush() throws IOException {
+        encodeChars(false);
+        drainBytes();
+    }
+
+    /** Finishes the text (and the gzip stream) and closes the channel. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            encodeChars(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drainBytes();
+            }
+            drainBytes();
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                drainDeflated();
+                ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putInt((int) crc.getValue()).putInt((int) textBytes).flip();
+                writeFully(trailer);
+            }
+        } finally {
+            if (deflater != null) deflater.end();
+            channel.close();
+        }
+    }
+}
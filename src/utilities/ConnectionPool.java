@@ -0,0 +1,281 @@
+package utilities;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded pool of JDBC connections. Each pooled connection keeps its own
+ * cache of prepared statements so repeated single-row writes skip both connection
+ * setup and SQL parsing.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Pool settings; defaults can be overridden with {@code -Dums.db.pool.*} system properties. */
+    public static class Config {
+        public int maxSize = Integer.getInteger("ums.db.pool.size", 4);
+        public boolean validateOnBorrow = Boolean.parseBoolean(System.getProperty("ums.db.pool.validate", "true"));
+        public long idleTimeoutMillis = Long.getLong("ums.db.pool.idleTimeoutMs", 60_000L);
+        public int statementCacheSize = Integer.getInteger("ums.db.pool.statementCache", 32);
+        public long borrowTimeoutMillis = Long.getLong("ums.db.pool.borrowTimeoutMs", 30_000L);
+        // How long SQLite waits on a lock held by another connection before failing
+        public int busyTimeoutMillis = Integer.getInteger("ums.db.pool.busyTimeoutMs", 5_000);
+
+        // SQLite tuning applied to every new connection. -Dums.db.profile picks the
+        // defaults: "safe" (fsync every commit), "balanced" or "fast" (no fsync, bigger cache);
+        // each setting can still be overridden on its own.
+        public String profile = System.getProperty("ums.db.profile", "balanced").toLowerCase(Locale.ROOT);
+        public String journalMode = System.getProperty("ums.db.journalMode", "WAL");
+        public String synchronous = System.getProperty("ums.db.synchronous",
+                profile.equals("safe") ? "FULL" : profile.equals("fast") ? "OFF" : "NORMAL");
+        public int cacheSizeKb = Integer.getInteger("ums.db.cacheSizeKb", profile.equals("fast") ? 65_536 : 16_384);
+        public long mmapSizeBytes = Long.getLong("ums.db.mmapSize", 256L << 20);
+    }
+
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_LEVELS = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+
+    private final String url;
+    private final Config config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+
+    public ConnectionPool(String url, Config config) {
+        if (config.maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        if (!JOURNAL_MODES.contains(config.journalMode.toUpperCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Unknown SQLite journal mode: " + config.journalMode);
+        }
+        if (!SYNCHRONOUS_LEVELS.contains(config.synchronous.toUpperCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Unknown SQLite synchronous level: " + config.synchronous);
+        }
+        this.url = url;
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize, true);
+    }
+
+    /**
+     * Borrows a connection, blocking while all {@code maxSize} connections are in use.
+     * Closing the returned handle gives it back to the pool.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(config.borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        try {
+            PooledConnection pc;
+            while ((pc = pollIdle()) != null) {
+                if (isUsable(pc)) {
+                    connectionsReused.incrementAndGet();
+                    pc.borrowed = true;
+                    return pc;
+                }
+                pc.closeQuietly();
+            }
+            pc = new PooledConnection(open());
+            connectionsCreated.incrementAndGet();
+            pc.borrowed = true;
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            // PRAGMAs take no bind parameters; the values were validated or are numbers
+            stmt.execute("PRAGMA busy_timeout = " + config.busyTimeoutMillis);
+            stmt.execute("PRAGMA journal_mode = " + config.journalMode);
+            stmt.execute("PRAGMA synchronous = " + config.synchronous);
+            stmt.execute("PRAGMA cache_size = " + (-config.cacheSizeKb)); // negative means KiB
+            stmt.execute("PRAGMA mmap_size = " + config.mmapSizeBytes);
+            stmt.execute("PRAGMA temp_store = MEMORY");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private synchronized PooledConnection pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturned > config.idleTimeoutMillis) {
+            return false;
+        }
+        if (!config.validateOnBorrow) return true;
+        try {
+            return pc.connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pc) {
+        if (!pc.borrowed) return; // already returned
+        pc.borrowed = false;
+        try {
+            if (pc.broken || closed) {
+                pc.closeQuietly();
+                return;
+            }
+            try {
+                // Never hand out a connection with a half-finished transaction
+                if (!pc.connection.getAutoCommit()) {
+                    pc.connection.rollback();
+                    pc.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                pc.closeQuietly();
+                return;
+            }
+            pc.lastReturned = System.currentTimeMillis();
+            synchronized (this) {
+                // Most recently used first, so idle connections at the tail time out
+                idle.addFirst(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public long getStatementCacheHits() { return statementHits.get(); }
+    public long getStatementCacheMisses() { return statementMisses.get(); }
+    public long getConnectionsCreated() { return connectionsCreated.get(); }
+    public long getConnectionsReused() { return connectionsReused.get(); }
+    public int getMaxSize() { return config.maxSize; }
+
+    public synchronized int getIdleCount() { return idle.size(); }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            for (PooledConnection pc : idle) {
+                pc.closeQuietly();
+            }
+            idle.clear();
+        }
+    }
+
+    /**
+     * A borrowed connection. Statements obtained through {@link #prepare(String)} are
+     * owned by the cache and must not be closed by the caller.
+     */
+    public class PooledConnection implements AutoCloseable {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private long lastReturned = System.currentTimeMillis();
+        private boolean broken;
+        private boolean borrowed;
+        private int pinDepth;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= config.statementCacheSize) return false;
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException ignored) {
+                        // evicted statement is discarded either way
+                    }
+                    return true;
+                }
+            };
+        }
+
+        public Connection getConnection() { return connection; }
+
+        /** Returns a cached prepared statement for {@code sql}, with parameters cleared. */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps != null && !ps.isClosed()) {
+                statementHits.incrementAndGet();
+                ps.clearParameters();
+                return ps;
+            }
+            statementMisses.incrementAndGet();
+            try {
+                ps = connection.prepareStatement(sql);
+            } catch (SQLException e) {
+                markBroken(e);
+                throw e;
+            }
+            statements.put(sql, ps);
+            return ps;
+        }
+
+        /** Flags the connection so it is discarded instead of returned to the pool. */
+        public void markBroken(SQLException cause) {
+            try {
+                if (connection.isClosed() || !connection.isValid(1)) {
+                    broken = true;
+                }
+            } catch (SQLException e) {
+                broken = true;
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                    // closing anyway
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // closing anyway
+            }
+        }
+
+        /** While pinned, {@link #close()} keeps the connection instead of returning it. */
+        void pin() {
+            pinDepth++;
+        }
+
+        void unpin() {
+            pinDepth--;
+        }
+
+        @Override
+        public void close() {
+            if (pinDepth > 0) return;
+            giveBack(this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming RFC 4180 reader for UTF-8 CSV. Fields may be quoted, with doubled
+ * quotes inside and embedded commas and line breaks; records end with LF or
+ * CRLF. Parsing is lenient: a quote only opens a quoted field at the start of
+ * the field, and text after a closing quote is kept as is.
+ *
+ * <p>The reader holds one record at a time in reusable buffers. No array is
+ * allocated per row, and a field only becomes a String when {@link #field(int)}
+ * asks for it.
+ */
+public final class CsvReader {
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final InputStream in; // null when reading a fixed byte range
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private long consumed; // bytes dropped from the front of buf so far
+
+    // Current record: unescaped field bytes back to back, and where each field ends
+    private byte[] record = new byte[256];
+    private int[] ends = new int[16];
+    private int fieldCount;
+    private long recordNumber;
+    private long lineNumber;
+    private long lineBreaks; // LFs consumed so far, quoted ones included
+    // Raw extent of the current record in buf, line break excluded
+    private int recordStart;
+    private int contentEnd;
+    private boolean terminated;
+
+    public CsvReader(InputStream in) {
+        this.in = in;
+        this.buf = new byte[64 * 1024];
+    }
+
+    /** Reads the records in {@code bytes[from, to)}; the range should start at a record boundary. */
+    public CsvReader(byte[] bytes, int from, int to) {
+        this.in = null;
+        this.buf = bytes;
+        this.pos = from;
+        this.limit = to;
+        this.eof = true;
+    }
+
+    /** Advances to the next record. Returns false at end of input. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) {
+                return false;
+            }
+            int end = parse(pos);
+            if (end >= 0) {
+                lineNumber = lineBreaks + 1;
+                for (int p = pos; p < end; p++) {
+                    if (buf[p] == LF) lineBreaks++;
+                }
+                pos = end;
+                recordNumber++;
+                return true;
+            }
+            // The record runs past the buffered bytes: read more and parse it again
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    public int fieldCount() { return fieldCount; }
+
+    /** 1-based number of the current record. */
+    public long getRecordNumber() { return recordNumber; }
+
+    /**
+     * 1-based line on which the current record starts. Differs from the record
+     * number once a quoted field earlier in the input spans several lines.
+     */
+    public long getLineNumber() { return lineNumber; }
+
+    /** Field {@code i} of the current record, or "" when the record is shorter. */
+    public String field(int i) {
+        if (i >= fieldCount) return "";
+        int start = i == 0 ? 0 : ends[i - 1];
+        return new String(record, start, ends[i] - start, StandardCharsets.UTF_8);
+    }
+
+    /** Length of field {@code i} in bytes. */
+    public int fieldLength(int i) {
+        if (i >= fieldCount) return 0;
+        return ends[i] - (i == 0 ? 0 : ends[i - 1]);
+    }
+
+    /** Compares field {@code i} with an ASCII {@code value} without creating a String. */
+    public boolean fieldEquals(int i, String value) {
+        if (i >= fieldCount) return value.isEmpty();
+        int start = i == 0 ? 0 : ends[i - 1];
+        if (ends[i] - start != value.length()) return false;
+        for (int k = 0; k < value.length(); k++) {
+            if (record[start + k] != value.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    /** True for a record whose first byte is {@code c}, e.g. a '#' comment line. */
+    public boolean startsWith(char c) {
+        return fieldCount > 0 && ends[0] > 0 && record[0] == c;
+    }
+
+    /** True for an empty line. */
+    public boolean isBlank() {
+        return fieldCount == 1 && ends[0] == 0;
+    }
+
+    /** The current record as an array; for callers that keep the fields. */
+    public String[] toArray() {
+        return toArray(0);
+    }
+
+    /** Fields {@code from} onward as an array. */
+    public String[] toArray(int from) {
+        String[] fields = new String[Math.max(0, fieldCount - from)];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = field(from + i);
+        }
+        return fields;
+    }
+
+    /** Byte offset in the input just past the current record. */
+    public long getOffset() {
+        return consumed + pos;
+    }
+
+    /** False when the current record was cut off by the end of input instead of a line break. */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /** Feeds the raw bytes of the current record, minus the first {@code skip} and the line break, to {@code checksum}. */
+    void updateChecksum(Checksum checksum, int skip) {
+        int from = Math.min(recordStart + skip, contentEnd);
+        checksum.update(buf, from, contentEnd - from);
+    }
+
+    // --- Parsing ---
+
+    /** Parses one record starting at {@code p}; returns the offset after its line break, or -1 if incomplete. */
+    private int parse(int p) {
+        fieldCount = 0;
+        recordStart = p;
+        int length = 0;
+        while (true) {
+            boolean quoted = p < limit && buf[p] == QUOTE;
+            if (quoted) {
+                p++;
+                while (true) {
+                    if (p >= limit) {
+                        if (!eof) return -1;
+                        break; // unterminated quote at end of input: keep what is there
+                    }
+                    byte b = buf[p];
+                    if (b == QUOTE) {
+                        if (p + 1 >= limit) {
+                            if (!eof) return -1;
+                            p++;
+                            break;
+                        }
+                        if (buf[p + 1] != QUOTE) {
+                            p++;
+                            break;
+                        }
+                        p++; // doubled quote
+                    }
+                    length = put(length, buf[p]);
+                    p++;
+                }
+            }
+            while (true) {
+                if (p >= limit) {
+                    if (!eof) return -1;
+                    endField(length);
+                    return endRecord(p, p, false);
+                }
+                byte b = buf[p];
+                if (b == COMMA) {
+                    endField(length);
+                    p++;
+                    break;
+                }
+                if (b == LF) {
+                    endField(length);
+                    return endRecord(p, p + 1, true);
+                }
+                if (b == CR && (p + 1 < limit ? buf[p + 1] == LF : !eof)) {
+                    if (p + 1 >= limit) return -1;
+                    endField(length);
+                    return endRecord(p, p + 2, true);
+                }
+                length = put(length, b);
+                p++;
+            }
+        }
+    }
+
+    private int endRecord(int end, int next, boolean lineBreak) {
+        contentEnd = end;
+        terminated = lineBreak;
+        return next;
+    }
+
+    private int put(int length, byte b) {
+        if (length == record.length) {
+            record = Arrays.copyOf(record, length * 2);
+        }
+        record[length] = b;
+        return length + 1;
+    }
+
+    private void endField(int length) {
+        if (fieldCount == ends.length) {
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        ends[fieldCount++] = length;
+    }
+
+    /** Reads more input, keeping the unparsed tail. Returns false when nothing more can be read. */
+    private boolean fill() throws IOException {
+        if (in == null || eof) return false;
+        int remaining = limit - pos;
+        consumed += pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        } else if (remaining == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2); // one record larger than the buffer
+        }
+        pos = 0;
+        limit = remaining;
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return remaining > 0;
+        }
+        limit += n;
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package utilities;
+
+import java.io.IOException;
+
+/**
+ * RFC 4180 writer. A field is quoted only when it contains a comma, quote or
+ * line break, and quotes inside it are doubled; every other field is written
+ * verbatim, so plain data stays readable. Records end with CRLF. A null field
+ * is written as an empty one.
+ */
+public final class CsvWriter {
+
+    private static final String RECORD_END = "\r\n";
+
+    private final Appendable out;
+
+    public CsvWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public CsvWriter writeRecord(String... fields) throws IOException {
+        appendRecord(out, fields);
+        return this;
+    }
+
+    /** Appends one record, line break included. */
+    public static void appendRecord(Appendable out, String... fields) throws IOException {
+        appendFields(out, fields);
+        out.append(RECORD_END);
+    }
+
+    /** Appends the fields of one record without the line break. */
+    public static void appendFields(Appendable out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.append(',');
+            appendField(out, fields[i]);
+        }
+    }
+
+    /** Appends one record to a StringBuilder, which cannot fail. */
+    public static void appendRecord(StringBuilder sb, String... fields) {
+        try {
+            appendRecord((Appendable) sb, fields);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static void appendField(Appendable out, String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+        if (!needsQuotes(value)) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        int from = 0;
+        for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', from)) {
+            out.append(value, from, i + 1).append('"');
+            from = i + 1;
+        }
+        out.append(value, from, value.length()).append('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,283 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import utilities.ModelVersion.CourseState;
+import utilities.ModelVersion.StudentState;
+import utilities.ModelVersion.TeacherState;
+
+/**
+ * Full-dataset extract for downstream systems: one file per table, as CSV
+ * (RFC 4180, with a header row) or JSON Lines, optionally gzipped. Rows stream
+ * from the source straight into a {@link ChannelWriter}, one at a time, so
+ * memory use is the same for a hundred rows or a hundred million. Each file is
+ * written under a temporary name and moved into place when complete, so a
+ * reader never sees half an extract.
+ *
+ * <p>In SQL mode the rows come from SQLite cursors in one read transaction, in
+ * primary-key order (shard by shard with {@link ShardedDatabaseService});
+ * otherwise from the model's current {@link ModelVersion},
+ * in no particular order. Either way the four files describe the same moment.
+ * An unassigned course teacher is written as an empty field (null in JSON).
+ */
+public final class DataExporter {
+
+    public enum Format {
+        CSV("csv"), JSONL("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    public enum Table {
+        STUDENTS("students", "id", "name", "major"),
+        TEACHERS("teachers", "id", "name", "department", "subject"),
+        COURSES("courses", "id", "name", "department", "teacher_id"),
+        ENROLLMENTS("enrollments", "student_id", "course_id");
+
+        private final String fileName;
+        private final String[] columns;
+
+        Table(String fileName, String... columns) {
+            this.fileName = fileName;
+            this.columns = columns;
+        }
+
+        public String getFileName() { return fileName; }
+        public String[] getColumns() { return columns.clone(); }
+    }
+
+    /** Receives the rows of each table in turn, in {@link Table} order. */
+    interface TableSink {
+        void begin(Table table) throws IOException;
+
+        /** One row, in the table's column order; the array may be reused for the next row. */
+        void row(String[] values) throws IOException;
+
+        void end(Table table) throws IOException;
+    }
+
+    /** What was written for one table. */
+    public static final class TableResult {
+        private final Table table;
+        private final Path file;
+        private final long rows;
+        private final long textBytes;
+        private final long fileBytes;
+        private final long nanos;
+
+        TableResult(Table table, Path file, long rows, long textBytes, long fileBytes, long nanos) {
+            this.table = table;
+            this.file = file;
+            this.rows = rows;
+            this.textBytes = textBytes;
+            this.fileBytes = fileBytes;
+            this.nanos = nanos;
+        }
+
+        public Table getTable() { return table; }
+        public Path getFile() { return file; }
+        public long getRows() { return rows; }
+        /** Size of the text before compression. */
+        public long getTextBytes() { return textBytes; }
+        public long getFileBytes() { return fileBytes; }
+        public long getMillis() { return nanos / 1_000_000; }
+
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %,d rows in %,d ms (%,.0f rows/s), %,d bytes%s", table.fileName, rows,
+                    getMillis(), getRowsPerSecond(), fileBytes, fileBytes == textBytes ? ""
+                            : String.format(Locale.ROOT, " (%,d uncompressed)", textBytes));
+        }
+    }
+
+    private final Path directory;
+    private final Format format;
+    private final boolean gzip;
+
+    public DataExporter(Path directory, Format format, boolean gzip) {
+        if (directory == null || format == null) {
+            throw new IllegalArgumentException("Export directory and format are required");
+        }
+        this.directory = directory;
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    /** The file a table is written to. */
+    public Path fileFor(Table table) {
+        return directory.resolve(table.fileName + "." + format.extension + (gzip ? ".gz" : ""));
+    }
+
+    /** Streams all four tables from the database, which must be in SQL mode. */
+    public List<TableResult> export(DatabaseService db) throws IOException {
+        return run(db::exportTables);
+    }
+
+    /** Streams all four tables from one model version. */
+    public List<TableResult> export(ModelVersion version) throws IOException {
+        return run(sink -> streamVersion(version, sink));
+    }
+
+    private interface Source {
+        void stream(TableSink sink) throws IOException;
+    }
+
+    private List<TableResult> run(Source source) throws IOException {
+        Files.createDirectories(directory);
+        FileSink sink = new FileSink();
+        try {
+            source.stream(sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            sink.abandon();
+        }
+        return Collections.unmodifiableList(sink.results);
+    }
+
+    private static void streamVersion(ModelVersion version, TableSink sink) throws IOException {
+        String[] row = new String[3];
+        sink.begin(Table.STUDENTS);
+        for (StudentState s : version.getStudents()) {
+            row[0] = s.getId();
+            row[1] = s.getName();
+            row[2] = s.getMajor();
+            sink.row(row);
+        }
+        sink.end(Table.STUDENTS);
+
+        row = new String[4];
+        sink.begin(Table.TEACHERS);
+        for (TeacherState t : version.getTeachers()) {
+            row[0] = t.getId();
+            row[1] = t.getName();
+            row[2] = t.getDepartment().name();
+            row[3] = t.getSubject();
+            sink.row(row);
+        }
+        sink.end(Table.TEACHERS);
+
+        sink.begin(Table.COURSES);
+        for (CourseState c : version.getCourses()) {
+            row[0] = c.getCourseId();
+            row[1] = c.getCourseName();
+            row[2] = c.getDepartment().name();
+            row[3] = "TBD".equals(c.getTeacherId()) ? null : c.getTeacherId();
+            sink.row(row);
+        }
+        sink.end(Table.COURSES);
+
+        row = new String[2];
+        sink.begin(Table.ENROLLMENTS);
+        for (StudentState s : version.getStudents()) {
+            row[0] = s.getId();
+            for (String courseId : s.getEnrolledCourseIds()) {
+                row[1] = courseId;
+                sink.row(row);
+            }
+        }
+        sink.end(Table.ENROLLMENTS);
+    }
+
+    /** Writes each table to its own file through a temporary name. */
+    private final class FileSink implements TableSink {
+        final List<TableResult> results = new ArrayList<>(Table.values().length);
+        private String[] columns;
+        private Path tmp;
+        private ChannelWriter out;
+        private long rows;
+        private long started;
+
+        @Override
+        public void begin(Table table) throws IOException {
+            Path target = fileFor(table);
+            tmp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            out = new ChannelWriter(FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), gzip);
+            columns = table.columns;
+            rows = 0;
+            started = System.nanoTime();
+            if (format == Format.CSV) CsvWriter.appendRecord(out, table.columns);
+        }
+
+        @Override
+        public void row(String[] values) throws IOException {
+            if (format == Format.CSV) {
+                CsvWriter.appendRecord(out, values);
+            } else {
+                appendJson(out, columns, values);
+            }
+            rows++;
+        }
+
+        @Override
+        public void end(Table table) throws IOException {
+            out.close();
+            long nanos = System.nanoTime() - started;
+            Path target = fileFor(table);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            results.add(new TableResult(table, target, rows, out.getTextBytes(), Files.size(target), nanos));
+            out = null;
+        }
+
+        // Cleans up after a failed table; a no-op once every table has ended
+        void abandon() throws IOException {
+            if (out != null) out.close();
+            if (tmp != null) Files.deleteIfExists(tmp);
+        }
+    }
+
+    // --- JSON Lines ---
+
+    private static void appendJson(Appendable out, String[] names, String[] values) throws IOException {
+        out.append('{');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) out.append(',');
+            appendJsonString(out, names[i]);
+            out.append(':');
+            appendJsonString(out, values[i]);
+        }
+        out.append("}\n");
+    }
+
+    static void appendJsonString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            out.append(value, from, i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default: out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            from = i + 1;
+        }
+        out.append(value, from, value.length()).append('"');
+    }
+}
@@ -3,42 +3,256 @@ package utilities;
 import people.Student;
 import people.Teacher;
 import courses.Course;
+import courses.Department;
+import courses.Enrollment;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
-public class DataModel {
+/** The whole model in memory, indexed, with a published {@link ModelVersion} after every change. */
+public class DataModel implements UniversityModel {
 
-    // Generics ensure type safety
-    private List<Student> students;
-    private List<Teacher> teachers;
-    private List<Course> courses;
+    // Generics ensure type safety; each list keeps a case-folded primary-key index in sync
+    private final IndexedList<Student> students;
+    private final IndexedList<Teacher> teachers;
+    private final IndexedList<Course> courses;
+
+    // Secondary indexes, kept in sync through list listeners; attribute changes go through this class
+    private final SecondaryIndex<Department, Course> coursesByDepartment = SecondaryIndex.byDepartment(Course::getDepartment);
+    private final SecondaryIndex<String, Course> coursesByTeacher = SecondaryIndex.byText(Course::getTeacherId);
+    private final SecondaryIndex<Department, Teacher> teachersByDepartment = SecondaryIndex.byDepartment(Teacher::getDepartment);
+    private final SecondaryIndex<String, Student> studentsByMajor = SecondaryIndex.byText(Student::getMajor);
+
+    // Name search, also kept in sync through list listeners; names never change
+    private final NameIndex<Student> studentNames = new NameIndex<>(Student::getName);
+    private final NameIndex<Teacher> teacherNames = new NameIndex<>(Teacher::getName);
+    private final NameIndex<Course> courseNames = new NameIndex<>(Course::getCourseName);
+
+    // Immutable versions for lock-free readers, see snapshot()
+    private final VersionPublisher versions = new VersionPublisher();
 
     public DataModel() {
-        this.students = new ArrayList<>();
-        this.teachers = new ArrayList<>();
-        this.courses = new ArrayList<>();
+        this.students = new IndexedList<>(Student::getId);
+        this.teachers = new IndexedList<>(Teacher::getId);
+        this.courses = new IndexedList<>(Course::getCourseId);
+        students.addListener(studentsByMajor);
+        teachers.addListener(teachersByDepartment);
+        courses.addListener(coursesByDepartment);
+        courses.addListener(coursesByTeacher);
+        students.addListener(studentNames);
+        teachers.addListener(teacherNames);
+        courses.addListener(courseNames);
+        students.addListener(versions.students);
+        teachers.addListener(versions.teachers);
+        courses.addListener(versions.courses);
     }
 
 
-    public List<Student> getStudents() { return students; }
-    public List<Teacher> getTeachers() { return teachers; }
-    public List<Course> getCourses() { return courses; }
-    
-    public void setStudents(List<Student> students) { this.students = students; }
-    public void setTeachers(List<Teacher> teachers) { this.teachers = teachers; }
-    public void setCourses(List<Course> courses) { this.courses = courses; }
+    @Override public List<Student> getStudents() { return students; }
+    @Override public List<Teacher> getTeachers() { return teachers; }
+    @Override public List<Course> getCourses() { return courses; }
+
+    // The given lists are copied so the ID indexes always cover the model's contents
+    @Override public void setStudents(List<Student> students) { this.students.replaceWith(students); }
+    @Override public void setTeachers(List<Teacher> teachers) { this.teachers.replaceWith(teachers); }
+    @Override public void setCourses(List<Course> courses) { this.courses.replaceWith(courses); }
 
 
+    /** Appends freshly loaded entities; used by the bulk loader to hand over prebuilt indexes. */
+    void absorb(IndexedList<Student> students, IndexedList<Teacher> teachers, IndexedList<Course> courses) {
+        versions.beginBulk();
+        try {
+            this.students.absorb(students);
+            this.teachers.absorb(teachers);
+            this.courses.absorb(courses);
+        } finally {
+            versions.endBulk(this.students, this.teachers, this.courses);
+        }
+    }
+
+    /**
+     * The current version of the whole model, for readers that need a consistent
+     * view while writes go on. Costs one volatile read and never blocks writers.
+     */
+    public ModelVersion snapshot() {
+        return versions.current();
+    }
+
+    @Override
+    public Optional<ModelVersion> currentVersion() {
+        return Optional.of(snapshot());
+    }
+
+    /** Enrollment aggregates for the current version; O(1), whatever the model's size. */
+    @Override
+    public ModelStatistics statistics() {
+        return snapshot().getStatistics();
+    }
+
+    // Every entity is one object for good, so holds are the interface's plain lookups
+
+    @Override
     public Optional<Student> findStudent(String id) {
-        return students.stream().filter(s -> s.getId().equalsIgnoreCase(id)).findFirst();
+        return Optional.ofNullable(students.lookup(id));
     }
-    
+
+    @Override
     public Optional<Teacher> findTeacher(String id) {
-        return teachers.stream().filter(t -> t.getId().equalsIgnoreCase(id)).findFirst();
+        return Optional.ofNullable(teachers.lookup(id));
     }
-    
+
+    @Override
     public Optional<Course> findCourse(String id) {
-        return courses.stream().filter(c -> c.getCourseId().equalsIgnoreCase(id)).findFirst();
+        return Optional.ofNullable(courses.lookup(id));
+    }
+
+    // --- Paging ---
+    // A cursor is "<index>:<id>": where the next page starts, plus the ID just
+    // before it. If the list changed since the cursor was issued, paging resumes
+    // after that ID wherever it now is. Pages start from the narrowest index and
+    // the filter applies whatever condition is left.
+
+    @Override
+    public Page<Student> pageStudents(String major, String cursor, int pageSize) {
+        List<Student> source = major == null ? students : findStudentsByMajor(major);
+        return page(source, Student::getId, s -> major == null || major.equalsIgnoreCase(s.getMajor()), cursor, pageSize);
+    }
+
+    @Override
+    public Page<Teacher> pageTeachers(Department dept, String cursor, int pageSize) {
+        List<Teacher> source = dept == null ? teachers : findTeachersByDepartment(dept);
+        return page(source, Teacher::getId, t -> dept == null || t.getDepartment() == dept, cursor, pageSize);
+    }
+
+    @Override
+    public Page<Course> pageCourses(Department dept, String teacherId, String cursor, int pageSize) {
+        List<Course> source = teacherId != null ? findCoursesByTeacher(teacherId)
+                : dept != null ? findCoursesByDepartment(dept)
+                : courses;
+        return page(source, Course::getCourseId, c -> (dept == null || c.getDepartment() == dept)
+                && (teacherId == null || teacherId.equalsIgnoreCase(c.getTeacherId())), cursor, pageSize);
+    }
+
+    private static <T> Page<T> page(List<T> list, Function<T, String> idOf, Predicate<T> filter,
+                                    String cursor, int pageSize) {
+        int i = resolveCursor(list, idOf, cursor);
+        List<T> items = new ArrayList<>(Math.min(pageSize, 256));
+        for (; i < list.size() && items.size() < pageSize; i++) {
+            T item = list.get(i);
+            if (filter.test(item)) items.add(item);
+        }
+        // Skip to the next match so the last page does not hand out a cursor to nothing
+        while (i < list.size() && !filter.test(list.get(i))) i++;
+        String next = i > 0 && i < list.size() ? i + ":" + idOf.apply(list.get(i - 1)) : null;
+        return new Page<>(items, next);
+    }
+
+    private static <T> int resolveCursor(List<T> list, Function<T, String> idOf, String cursor) {
+        if (cursor == null || cursor.isEmpty()) return 0;
+        int index;
+        String anchor;
+        try {
+            int colon = cursor.indexOf(':');
+            index = Integer.parseInt(cursor.substring(0, colon));
+            anchor = cursor.substring(colon + 1);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (index > 0 && index <= list.size() && anchor.equalsIgnoreCase(idOf.apply(list.get(index - 1)))) {
+            return index;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (anchor.equalsIgnoreCase(idOf.apply(list.get(i)))) return i + 1;
+        }
+        return Math.max(0, Math.min(index, list.size()));
+    }
+
+    // --- Secondary Index Queries ---
+    // Each returns a copy in insertion order; matching is case-insensitive for text keys.
+
+    @Override
+    public List<Course> findCoursesByDepartment(Department dept) {
+        return coursesByDepartment.get(dept);
+    }
+
+    @Override
+    public List<Course> findCoursesByTeacher(String teacherId) {
+        return coursesByTeacher.get(teacherId);
+    }
+
+    @Override
+    public List<Teacher> findTeachersByDepartment(Department dept) {
+        return teachersByDepartment.get(dept);
+    }
+
+    @Override
+    public List<Student> findStudentsByMajor(String major) {
+        return studentsByMajor.get(major);
+    }
+
+    // --- Name Search ---
+    // Case and accents are ignored; each query word matches a name word exactly,
+    // as a prefix or, from three letters on, with a typo. Best matches first.
+
+    @Override
+    public List<Student> searchStudents(String query, int limit) {
+        return studentNames.search(query, limit);
+    }
+
+    @Override
+    public List<Teacher> searchTeachers(String query, int limit) {
+        return teacherNames.search(query, limit);
+    }
+
+    @Override
+    public List<Course> searchCourses(String query, int limit) {
+        return courseNames.search(query, limit);
+    }
+
+    @Override
+    public Map<Department, Integer> countCoursesByDepartment() {
+        return coursesByDepartment.counts();
+    }
+
+    @Override
+    public Map<Department, Integer> countTeachersByDepartment() {
+        return teachersByDepartment.counts();
+    }
+
+    @Override
+    public long countStudents() {
+        return students.size();
+    }
+
+    // --- Indexed Attribute Changes ---
+    // Use these rather than the entity setters so the secondary indexes follow.
+
+    @Override
+    public void assignTeacher(Course course, String teacherId) {
+        coursesByTeacher.reindex(course, () -> course.assignTeacher(teacherId));
+        versions.teacherChanged(course);
+    }
+
+    @Override
+    public void updateMajor(Student student, String major) {
+        studentsByMajor.reindex(student, () -> student.setMajor(major));
+        versions.majorChanged(student);
+    }
+
+    // --- Enrollment Changes ---
+    // Reported once final so snapshots follow, all in one version.
+
+    @Override
+    public void enrollmentsAdded(Collection<Enrollment> enrollments) {
+        versions.enrollments(enrollments, true);
+    }
+
+    @Override
+    public void enrollmentsRemoved(Collection<Enrollment> enrollments) {
+        versions.enrollments(enrollments, false);
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package utilities;
 
 import courses.Course;
 import courses.Department;
+import courses.Enrollment;
 import people.Student;
 import people.Teacher;
 
@@ -10,531 +11,1276 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 
-public class DatabaseService {
+public class DatabaseService implements EntityStore {
 
-    private static final String DB_URL = "jdbc:sqlite:ums.db";
-
-    private enum PersistenceMode { SQL, FILE, NONE }
+    /** Where data is kept; SQL falls back to FILE when no JDBC driver is available. */
+    public enum PersistenceMode { SQL, FILE, NONE }
 
+    private final String dbUrl;
+    private final Path dataDir;
+    private final PersistenceMode preferredMode;
     private PersistenceMode persistenceMode = PersistenceMode.SQL;
-    private static final Path DATA_DIR = Paths.get("data");
+
+    // Created once SQL mode is confirmed; all SQL work borrows from here
+    private ConnectionPool pool;
+    // FILE mode storage: append-only log under data/log
+    private RecordLog recordLog;
+
+    final Map<String, Long> lastLoadTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /** Capacity for enrollment inserts that skip the seat check. */
+    public static final int NO_CAPACITY = Integer.MAX_VALUE;
+    static final String COURSE_FULL = "Course has reached maximum capacity";
+
+    // Latency and error counters per public operation, see Metrics
+    private static final Metrics.Operation TRANSACTION = Metrics.operation("db.inTransaction");
+    private static final Metrics.Operation CLEAR = Metrics.operation("db.clearDatabase");
+    private static final Metrics.Operation INIT = Metrics.operation("db.initDatabase");
+    private static final Metrics.Operation LOAD = Metrics.operation("db.loadData");
+    private static final Metrics.Operation INSERT_STUDENT = Metrics.operation("db.insertStudent");
+    private static final Metrics.Operation INSERT_TEACHER = Metrics.operation("db.insertTeacher");
+    private static final Metrics.Operation INSERT_COURSE = Metrics.operation("db.insertCourse");
+    private static final Metrics.Operation INSERT_ENROLLMENT = Metrics.operation("db.insertEnrollment");
+    private static final Metrics.Operation INSERT_STUDENTS = Metrics.operation("db.insertStudents");
+    private static final Metrics.Operation INSERT_TEACHERS = Metrics.operation("db.insertTeachers");
+    private static final Metrics.Operation INSERT_COURSES = Metrics.operation("db.insertCourses");
+    private static final Metrics.Operation INSERT_ENROLLMENTS = Metrics.operation("db.insertEnrollments");
+    private static final Metrics.Operation UPDATE_ASSIGNMENT = Metrics.operation("db.updateTeacherAssignment");
+    private static final Metrics.Operation UPDATE_ASSIGNMENTS = Metrics.operation("db.updateTeacherAssignments");
+    private static final Metrics.Operation DELETE_STUDENT = Metrics.operation("db.deleteStudent");
+    private static final Metrics.Operation FETCH = Metrics.operation("db.fetch");
+    private static final Metrics.Operation QUERY_IDS = Metrics.operation("db.queryIds");
+    private static final Metrics.Operation UPDATE_STUDENT = Metrics.operation("db.updateStudent");
+    private static final Metrics.Operation EXPORT_TABLES = Metrics.operation("db.exportTables");
+
+    /** Uses ./ums.db, falling back to ./data, unless overridden by {@code -Dums.db.file} and {@code -Dums.data.dir}. */
+    public DatabaseService() {
+        this(defaultDbFile(), defaultDataDir(), PersistenceMode.SQL);
+    }
+
+    static Path defaultDbFile() {
+        return Paths.get(System.getProperty("ums.db.file", "ums.db"));
+    }
+
+    static Path defaultDataDir() {
+        return Paths.get(System.getProperty("ums.data.dir", "data"));
+    }
 
     /**
-     * Establishes a connection to the SQLite database.
-     * @return a Connection object.
-     * @throws SQLException if a database access error occurs.
+     * @param dbFile        SQLite database file used in SQL mode.
+     * @param dataDir       directory for FILE mode storage.
+     * @param preferredMode FILE or NONE skip SQL entirely; SQL falls back to FILE if unavailable.
      */
-    private Connection connect() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+    public DatabaseService(Path dbFile, Path dataDir, PersistenceMode preferredMode) {
+        this.dbUrl = "jdbc:sqlite:" + dbFile;
+        this.dataDir = dataDir;
+        this.preferredMode = preferredMode;
     }
 
+    public PersistenceMode getPersistenceMode() {
+        return persistenceMode;
+    }
 
-    public void clearDatabase() {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; clearDatabase skipped.");
-            return;
+    // Connection bound to the current thread by inTransaction(), if any
+    private final ThreadLocal<ConnectionPool.PooledConnection> boundConnection = new ThreadLocal<>();
+
+    private ConnectionPool.PooledConnection borrow() throws SQLException {
+        ConnectionPool.PooledConnection bound = boundConnection.get();
+        if (bound != null) {
+            return bound;
         }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String[] tables = {"ENROLLMENTS", "COURSES", "TEACHERS", "STUDENTS"};
-            try (Connection conn = connect();
-                 Statement stmt = conn.createStatement()) {
-                for (String table : tables) {
-                    stmt.execute("DELETE FROM " + table);
+        if (pool == null) {
+            throw new SQLException("Database service is closed");
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Runs {@code work} so that every write it makes on this thread shares one
+     * connection and commits together. If {@code work} throws, all of its SQL
+     * writes are rolled back. Outside SQL mode the work simply runs.
+     */
+    public void inTransaction(Runnable work) {
+        TRANSACTION.run(() -> {
+            if (persistenceMode != PersistenceMode.SQL || boundConnection.get() != null) {
+                work.run();
+                return;
+            }
+            try (ConnectionPool.PooledConnection pooled = borrow()) {
+                Connection conn = pooled.getConnection();
+                pooled.pin();
+                boundConnection.set(pooled);
+                conn.setAutoCommit(false);
+                boolean committed = false;
+                try {
+                    work.run();
+                    conn.commit();
+                    committed = true;
+                } finally {
+                    boundConnection.remove();
+                    pooled.unpin();
+                    // Roll back before restoring autocommit, which would otherwise commit
+                    // whatever the failed work (an Error, or a failed commit) left behind.
+                    // If even the rollback fails, the pool discards the connection.
+                    if (committed || rollbackQuietly(conn)) conn.setAutoCommit(true);
                 }
-                System.out.println("[DB] Database tables cleared successfully.");
             } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to clear database: " + e.getMessage(), e);
+                throw new RuntimeException("[DB Error] Transaction failed: " + e.getMessage(), e);
             }
-            return;
+        });
+    }
+
+    /** True when {@link #inTransaction} rolls back every write of work that fails. */
+    public boolean isTransactional() {
+        return persistenceMode == PersistenceMode.SQL;
+    }
+
+    private static boolean rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+            return true;
+        } catch (SQLException e) {
+            System.out.println("[DB Warning] Rollback failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Returns the connection pool, or null when not running in SQL mode. */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /** Returns the record log, or null when not running in FILE mode. */
+    public RecordLog getRecordLog() {
+        return persistenceMode == PersistenceMode.FILE ? recordLog : null;
+    }
+
+    /**
+     * Describes the current state of the backing storage (file sizes and
+     * modification times), so a snapshot can tell whether it is still current.
+     * Returns null when persistence is disabled.
+     */
+    public String getSourceFingerprint() {
+        try {
+            if (persistenceMode == PersistenceMode.SQL) {
+                Path db = Paths.get(dbUrl.substring("jdbc:sqlite:".length()));
+                return "sql:" + describe(db) + ";" + describe(Paths.get(db + "-wal"));
+            }
+            if (persistenceMode == PersistenceMode.FILE) {
+                StringBuilder sb = new StringBuilder("file:");
+                try (Stream<Path> files = Files.list(dataDir.resolve("log"))) {
+                    files.filter(f -> f.getFileName().toString().endsWith(".log"))
+                            .sorted()
+                            .forEach(f -> sb.append(describe(f)).append(';'));
+                }
+                return sb.toString();
+            }
+        } catch (IOException e) {
+            System.err.println("[DB Warning] Could not fingerprint storage: " + e.getMessage());
         }
+        return null;
+    }
 
-        // FILE mode: truncate CSV files
+    private static String describe(Path file) {
         try {
-            Files.newBufferedWriter(DATA_DIR.resolve("students.csv"), StandardOpenOption.TRUNCATE_EXISTING).close();
-            Files.newBufferedWriter(DATA_DIR.resolve("teachers.csv"), StandardOpenOption.TRUNCATE_EXISTING).close();
-            Files.newBufferedWriter(DATA_DIR.resolve("courses.csv"), StandardOpenOption.TRUNCATE_EXISTING).close();
-            Files.newBufferedWriter(DATA_DIR.resolve("enrollments.csv"), StandardOpenOption.TRUNCATE_EXISTING).close();
-            System.out.println("[DB] File-based data cleared successfully.");
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            if (size == 0) {
+                // An empty or missing write-ahead file carries no data
+                return file.getFileName() + "=0";
+            }
+            return file.getFileName() + "=" + size + "@" + Files.getLastModifiedTime(file).toMillis();
         } catch (IOException e) {
-            throw new RuntimeException("[DB Error] Failed to clear file-based storage: " + e.getMessage(), e);
+            return file.getFileName() + "=?";
+        }
+    }
+
+    /** Closes pooled connections and the record log. Safe to call more than once. */
+    public void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (recordLog != null) {
+            recordLog.close();
+        }
+    }
+
+
+    public void clearDatabase() {
+        CLEAR.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; clearDatabase skipped.");
+                return;
+            }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String[] tables = {"ENROLLMENTS", "COURSES", "TEACHERS", "STUDENTS"};
+                try (ConnectionPool.PooledConnection conn = borrow();
+                     Statement stmt = conn.getConnection().createStatement()) {
+                    for (String table : tables) {
+                        stmt.execute("DELETE FROM " + table);
+                    }
+                    System.out.println("[DB] Database tables cleared successfully.");
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to clear database: " + e.getMessage(), e);
+                }
+                return;
+            }
+
+            // FILE mode: start the record log over
+            try {
+                recordLog.clear();
+                System.out.println("[DB] File-based data cleared successfully.");
+            } catch (IOException e) {
+                throw new RuntimeException("[DB Error] Failed to clear file-based storage: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private void openFileStore() {
+        persistenceMode = PersistenceMode.FILE;
+        try {
+            if (!Files.exists(dataDir)) {
+                Files.createDirectories(dataDir);
+            }
+            if (recordLog == null) {
+                recordLog = new RecordLog(dataDir.resolve("log"));
+                if (recordLog.open()) {
+                    importLegacyCsv();
+                }
+            }
+            System.out.println("[DB] File persistence initialized.");
+        } catch (IOException io) {
+            persistenceMode = PersistenceMode.NONE;
+            System.err.println("[DB Error] Failed to initialize file persistence: " + io.getMessage());
         }
     }
 
     public void initDatabase() {
+        INIT.run(() -> {
 
-        // Try to establish SQL connection first. If JDBC is not available, fall back to file persistence.
-        try (Connection conn = connect()) {
+            if (preferredMode == PersistenceMode.NONE) {
+                persistenceMode = PersistenceMode.NONE;
+                System.out.println("[DB] Persistence disabled.");
+                return;
+            }
+            if (preferredMode != PersistenceMode.SQL) {
+                openFileStore();
+                return;
+            }
+            // Try to establish SQL connection first. If JDBC is not available, fall back to file persistence.
+            // The probe connection goes back to the pool and serves the schema check too.
+            ConnectionPool.PooledConnection conn;
+            try {
+                if (pool == null) {
+                    pool = new ConnectionPool(dbUrl, new ConnectionPool.Config());
+                }
+                conn = pool.borrow();
+            } catch (SQLException e) {
+                // SQL not available; fall back to simple file-based persistence
+                if (pool != null) {
+                    pool.close();
+                    pool = null;
+                }
+                System.err.println("[DB Warning] Could not open SQLite connection: " + e.getMessage());
+                System.err.println("[DB Warning] Falling back to file-based persistence in '" + dataDir + "' directory.");
+                openFileStore();
+                return;
+            }
             System.out.println("[DB] Database connection established successfully.");
             persistenceMode = PersistenceMode.SQL;
-        } catch (SQLException e) {
-            // SQL not available; fall back to simple file-based persistence
-            System.err.println("[DB Warning] Could not open SQLite connection: " + e.getMessage());
-            System.err.println("[DB Warning] Falling back to file-based persistence in './data' directory.");
-            persistenceMode = PersistenceMode.FILE;
-            try {
-                if (!Files.exists(DATA_DIR)) {
-                    Files.createDirectories(DATA_DIR);
+
+            try (conn) {
+                if (new SchemaMigrator().migrate(conn.getConnection()) > 0) {
+                    System.out.println("[DB] Database tables initialized successfully.");
                 }
-                // Ensure CSV files exist
-                Path studentsF = DATA_DIR.resolve("students.csv");
-                Path teachersF = DATA_DIR.resolve("teachers.csv");
-                Path coursesF = DATA_DIR.resolve("courses.csv");
-                Path enrollF = DATA_DIR.resolve("enrollments.csv");
-                if (!Files.exists(studentsF)) Files.createFile(studentsF);
-                if (!Files.exists(teachersF)) Files.createFile(teachersF);
-                if (!Files.exists(coursesF)) Files.createFile(coursesF);
-                if (!Files.exists(enrollF)) Files.createFile(enrollF);
-                System.out.println("[DB] File persistence initialized.");
-            } catch (IOException io) {
-                persistenceMode = PersistenceMode.NONE;
-                System.err.println("[DB Error] Failed to initialize file persistence: " + io.getMessage());
-            }
-        }
-
-        // SQL for creating tables
-        String createStudents = "CREATE TABLE IF NOT EXISTS STUDENTS (" +
-                "  id TEXT PRIMARY KEY," +
-                "  name TEXT NOT NULL," +
-                "  major TEXT" +
-                ");";
-
-        String createTeachers = "CREATE TABLE IF NOT EXISTS TEACHERS (" +
-                "  id TEXT PRIMARY KEY," +
-                "  name TEXT NOT NULL," +
-                "  department TEXT," +
-                "  subject TEXT" +
-                ");";
-
-        String createCourses = "CREATE TABLE IF NOT EXISTS COURSES (" +
-                "  id TEXT PRIMARY KEY," +
-                "  name TEXT NOT NULL," +
-                "  department TEXT," +
-                "  teacher_id TEXT," +
-                "  FOREIGN KEY(teacher_id) REFERENCES TEACHERS(id)" +
-                ");";
-
-
-        String createEnrollments = "CREATE TABLE IF NOT EXISTS ENROLLMENTS (" +
-                "  student_id TEXT NOT NULL," +
-                "  course_id TEXT NOT NULL," +
-                "  PRIMARY KEY (student_id, course_id)," +
-                "  FOREIGN KEY(student_id) REFERENCES STUDENTS(id)," +
-                "  FOREIGN KEY(course_id) REFERENCES COURSES(id)" +
-                ");";
-
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement()) {
-            
-            // Execute all table creation statements
-            stmt.execute(createStudents);
-            stmt.execute(createTeachers);
-            stmt.execute(createCourses);
-            stmt.execute(createEnrollments);
-            
-            System.out.println("[DB] Database tables initialized successfully.");
+            } catch (SQLException e) {
+                System.err.println("[DB Error] " + e.getMessage());
+            }
+        });
+    }
 
-        } catch (SQLException e) {
-            System.err.println("[DB Error] " + e.getMessage());
+    public void loadData(DataModel model) {
+        LOAD.run(() -> {
+            System.out.println("[DB] Loading data from database...");
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; skipping loadData.");
+                return;
+            }
+            lastLoadTimings.clear();
+            long start = System.nanoTime();
+            try {
+                Tables tables = readTables();
+                // Hand over to the model, which indexes and publishes everything at once
+                long phase = System.nanoTime();
+                model.absorb(tables.students, tables.teachers, tables.courses);
+                lastLoadTimings.put("model", elapsedMillis(phase));
+                System.out.println(persistenceMode == PersistenceMode.SQL
+                        ? "[DB] Data loaded successfully."
+                        : "[DB] Data loaded from files successfully.");
+                lastLoadTimings.put("total", elapsedMillis(start));
+                System.out.println("[DB] Load timings (ms): " + getLastLoadTimings());
+            } catch (SQLException e) {
+                System.err.println("[DB Error] Could not load data: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("[DB Error] Failed to load file-based data: " + e.getMessage());
+            }
+        });
+    }
+
+    /** The entity tables of one store, enrollments linked, ready for a model to take. */
+    static final class Tables {
+        final IndexedList<Student> students;
+        final IndexedList<Teacher> teachers;
+        final IndexedList<Course> courses;
+
+        Tables(IndexedList<Student> students, IndexedList<Teacher> teachers, IndexedList<Course> courses) {
+            this.students = students;
+            this.teachers = teachers;
+            this.courses = courses;
         }
     }
 
-    public void loadData(DataModel model) {
-        System.out.println("[DB] Loading data from database...");
+    /**
+     * Reads every table, recording the phase timings: in SQL mode within one
+     * read transaction, in FILE mode on loader threads after the log replay. An
+     * enrollment is linked on each side that is in this store.
+     */
+    Tables readTables() throws SQLException, IOException {
         if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; skipping loadData.");
-            return;
+            return new Tables(new IndexedList<>(Student::getId, 0), new IndexedList<>(Teacher::getId, 0),
+                    new IndexedList<>(Course::getCourseId, 0));
         }
         if (persistenceMode == PersistenceMode.SQL) {
-            try (Connection conn = connect()) {
-            
-            // 1. Load Students
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM STUDENTS")) {
-                while (rs.next()) {
-                    model.getStudents().add(new Student(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            rs.getString("major")
-                    ));
-                }
+            return readFromDatabase();
+        }
+        ExecutorService loaders = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "ums-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            return readFromFiles(loaders);
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    /** Per-phase wall-clock timings of the last {@link #loadData} call, in milliseconds. */
+    public Map<String, Long> getLastLoadTimings() {
+        synchronized (lastLoadTimings) {
+            return new LinkedHashMap<>(lastLoadTimings);
+        }
+    }
+
+    /** Reads one entity table into an indexed list on a loader thread. */
+    private interface TableReader<T> {
+        IndexedList<T> read() throws SQLException, IOException;
+    }
+
+    private Tables readFromDatabase() throws SQLException, IOException {
+        // SQLite gives every connection its own snapshot, so all four tables are
+        // read on one connection inside one read transaction; reading them on
+        // separate connections would let a concurrent writer slip in between
+        try (ConnectionPool.PooledConnection pooled = borrow()) {
+            Connection conn = pooled.getConnection();
+            boolean ownTransaction = conn.getAutoCommit();
+            if (ownTransaction) conn.setAutoCommit(false);
+            try {
+                return readFromDatabase(conn);
+            } finally {
+                // Nothing was written, so a rollback just ends the read transaction
+                if (ownTransaction && rollbackQuietly(conn)) conn.setAutoCommit(true);
             }
+        }
+    }
+
+    private Tables readFromDatabase(Connection conn) throws SQLException, IOException {
+        // 1. Row counts, so every collection is allocated at its final size
+        long phase = System.nanoTime();
+        int[] counts = new int[4];
+        queryEach(conn, "SELECT (SELECT COUNT(*) FROM STUDENTS), (SELECT COUNT(*) FROM TEACHERS),"
+                + " (SELECT COUNT(*) FROM COURSES), (SELECT COUNT(*) FROM ENROLLMENTS)", rs -> {
+            for (int i = 0; i < counts.length; i++) counts[i] = rs.getInt(i + 1);
+        });
+        lastLoadTimings.put("count", elapsedMillis(phase));
+
+        // 2. Entity tables, building the ID index as rows stream in. Students take
+        //    a handful of courses each, so the average sizes their enrollment sets;
+        //    course rosters are skewed, so each is sized from its own count.
+        phase = System.nanoTime();
+        int perStudent = counts[0] == 0 ? 0 : (int) (((long) counts[3] + counts[0] - 1) / counts[0]);
+        IndexedList<Student> studentList = timed("students", () -> {
+            IndexedList<Student> list = new IndexedList<>(Student::getId, counts[0]);
+            queryEach(conn, "SELECT id, name, major FROM STUDENTS", rs -> {
+                Student s = new Student(rs.getString(1), rs.getString(2), rs.getString(3));
+                s.ensureEnrollmentCapacity(perStudent);
+                list.add(s);
+            });
+            return list;
+        });
+        IndexedList<Teacher> teacherList = timed("teachers", () -> {
+            IndexedList<Teacher> list = new IndexedList<>(Teacher::getId, counts[1]);
+            queryEach(conn, "SELECT id, name, department, subject FROM TEACHERS", rs ->
+                    list.add(new Teacher(rs.getString(1), rs.getString(2),
+                            Department.valueOf(rs.getString(3)), rs.getString(4))));
+            return list;
+        });
+        IndexedList<Course> courseList = timed("courses", () -> {
+            IndexedList<Course> list = new IndexedList<>(Course::getCourseId, counts[2]);
+            queryEach(conn, "SELECT c.id, c.name, c.department, c.teacher_id,"
+                    + " (SELECT COUNT(*) FROM ENROLLMENTS e WHERE e.course_id = c.id) FROM COURSES c", rs -> {
+                Course c = new Course(rs.getString(1), rs.getString(2), Department.valueOf(rs.getString(3)));
+                c.assignTeacher(rs.getString(4)); // Can be null
+                c.ensureRosterCapacity(rs.getInt(5));
+                list.add(c);
+            });
+            return list;
+        });
+        lastLoadTimings.put("entities", elapsedMillis(phase));
+
+        // 3. Enrollments in a single pass, linked through the indexes built above
+        //    before the model takes the lists, so its first version is complete
+        phase = System.nanoTime();
+        queryEach(conn, "SELECT student_id, course_id FROM ENROLLMENTS", rs ->
+                linkEnrollment(studentList, courseList, rs.getString(1), rs.getString(2)));
+        lastLoadTimings.put("enrollments", elapsedMillis(phase));
+        return new Tables(studentList, teacherList, courseList);
+    }
 
-            // 2. Load Teachers
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM TEACHERS")) {
+    /** Handles one row of a streamed query. */
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private void queryEach(String sql, RowHandler handler) throws SQLException {
+        try (ConnectionPool.PooledConnection pooled = borrow()) {
+            queryEach(pooled.getConnection(), sql, handler);
+        }
+    }
+
+    private static void queryEach(Connection conn, String sql, RowHandler handler) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    model.getTeachers().add(new Teacher(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            Department.valueOf(rs.getString("department")),
-                            rs.getString("subject")
-                    ));
+                    handler.handle(rs);
                 }
             }
-            
-            // 3. Load Courses
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM COURSES")) {
-                while (rs.next()) {
-                    Course c = new Course(
-                            rs.getString("id"),
-                            rs.getString("name"),
-                            Department.valueOf(rs.getString("department"))
-                    );
-                    c.assignTeacher(rs.getString("teacher_id")); // Can be null
-                    model.getCourses().add(c);
-                }
+        }
+    }
+
+    private Tables readFromFiles(ExecutorService loaders) throws SQLException, IOException {
+        // 1. Replay the log down to its live set
+        long phase = System.nanoTime();
+        RecordLog.LiveState live = recordLog.replay();
+        lastLoadTimings.put("replay", elapsedMillis(phase));
+
+        // 2. Entities, with their ID indexes built in parallel
+        phase = System.nanoTime();
+        Future<IndexedList<Student>> students = loaders.submit(() -> timed("students", () -> {
+            IndexedList<Student> list = new IndexedList<>(Student::getId, live.students.size());
+            for (String[] r : live.students.values()) {
+                list.add(new Student(r[1], RecordLog.field(r, 2), RecordLog.field(r, 3)));
+            }
+            return list;
+        }));
+        Future<IndexedList<Teacher>> teachers = loaders.submit(() -> timed("teachers", () -> {
+            IndexedList<Teacher> list = new IndexedList<>(Teacher::getId, live.teachers.size());
+            for (String[] r : live.teachers.values()) {
+                Department dept = RecordLog.department(RecordLog.field(r, 3));
+                if (dept == null) continue; // skip invalid department entries
+                list.add(new Teacher(r[1], RecordLog.field(r, 2), dept, RecordLog.field(r, 4)));
+            }
+            return list;
+        }));
+        Future<IndexedList<Course>> courses = loaders.submit(() -> timed("courses", () -> {
+            IndexedList<Course> list = new IndexedList<>(Course::getCourseId, live.courses.size());
+            for (String[] r : live.courses.values()) {
+                Department dept = RecordLog.department(RecordLog.field(r, 3));
+                if (dept == null) continue; // skip invalid department entries
+                Course c = new Course(r[1], RecordLog.field(r, 2), dept);
+                String teacherId = RecordLog.field(r, 4);
+                if (!teacherId.isEmpty()) c.assignTeacher(teacherId);
+                list.add(c);
             }
+            return list;
+        }));
+        IndexedList<Student> studentList = join(students);
+        IndexedList<Course> courseList = join(courses);
+        IndexedList<Teacher> teacherList = join(teachers);
+        lastLoadTimings.put("entities", elapsedMillis(phase));
 
-            // 4. Load Enrollments and populate relationships
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT * FROM ENROLLMENTS")) {
-                while (rs.next()) {
-                    String studentId = rs.getString("student_id");
-                    String courseId = rs.getString("course_id");
-                    
-                    // Find the objects in the model and link them
-                    model.findStudent(studentId).ifPresent(s -> s.enroll(courseId));
-                    model.findCourse(courseId).ifPresent(c -> c.addStudent(studentId));
-                }
+        // 3. Enrollments in a single pass, before the model takes the lists
+        phase = System.nanoTime();
+        for (Map.Entry<String, Set<String>> e : live.enrollments.entrySet()) {
+            for (String courseId : e.getValue()) {
+                linkEnrollment(studentList, courseList, e.getKey(), courseId);
             }
-            System.out.println("[DB] Data loaded successfully.");
-            } catch (SQLException e) {
-                System.err.println("[DB Error] Could not load data: " + e.getMessage());
+        }
+        lastLoadTimings.put("enrollments", elapsedMillis(phase));
+        return new Tables(studentList, teacherList, courseList);
+    }
+
+    /** Seeds a brand-new record log from the CSV files used by earlier versions. */
+    private void importLegacyCsv() throws IOException {
+        List<String[]> records = new ArrayList<>();
+        readLines("students.csv", r -> records.add(new String[] {RecordLog.STUDENT, r.field(0), r.field(1), r.field(2)}));
+        readLines("teachers.csv", r -> records.add(new String[] {RecordLog.TEACHER, r.field(0), r.field(1), r.field(2), r.field(3)}));
+        readLines("courses.csv", r -> records.add(new String[] {RecordLog.COURSE, r.field(0), r.field(1), r.field(2), r.field(3)}));
+        readLines("enrollments.csv", r -> records.add(RecordLog.enrollmentRecord(r.field(0), r.field(1))));
+        if (!records.isEmpty()) {
+            recordLog.append(records);
+            System.out.println("[DB] Imported " + records.size() + " records from legacy CSV files.");
+        }
+    }
+
+    private void readLines(String fileName, Consumer<CsvReader> handler) throws IOException {
+        Path file = dataDir.resolve(fileName);
+        if (!Files.exists(file)) return;
+        try (InputStream in = Files.newInputStream(file)) {
+            CsvReader reader = new CsvReader(in);
+            while (reader.next()) {
+                if (reader.isBlank()) continue;
+                handler.accept(reader);
             }
-            return;
         }
+    }
+
+    private static void linkEnrollment(IndexedList<Student> students, IndexedList<Course> courses,
+                                       String studentId, String courseId) {
+        Student s = students.lookup(studentId);
+        if (s != null) s.enroll(courseId);
+        Course c = courses.lookup(courseId);
+        if (c != null) c.addStudent(studentId);
+    }
 
-        // FILE mode: read CSVs from data directory
+    private <T> IndexedList<T> timed(String phase, TableReader<T> reader) throws SQLException, IOException {
+        long start = System.nanoTime();
+        IndexedList<T> result = reader.read();
+        lastLoadTimings.put(phase, elapsedMillis(start));
+        return result;
+    }
+
+    static <T> T join(Future<T> future) throws SQLException, IOException {
         try {
-            Path studentsF = DATA_DIR.resolve("students.csv");
-            if (Files.exists(studentsF)) {
-                try (Stream<String> lines = Files.lines(studentsF)) {
-                    lines.forEach(line -> {
-                        if (line.trim().isEmpty()) return;
-                        String[] parts = line.split("\\,");
-                        String id = parts.length > 0 ? parts[0] : "";
-                        String name = parts.length > 1 ? parts[1] : "";
-                        String major = parts.length > 2 ? parts[2] : "";
-                        model.getStudents().add(new Student(id, name, major));
-                    });
-                }
-            }
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new SQLException(cause);
+        }
+    }
 
-            Path teachersF = DATA_DIR.resolve("teachers.csv");
-            if (Files.exists(teachersF)) {
-                try (Stream<String> lines = Files.lines(teachersF)) {
-                    lines.forEach(line -> {
-                        if (line.trim().isEmpty()) return;
-                        String[] parts = line.split("\\,");
-                        String id = parts.length > 0 ? parts[0] : "";
-                        String name = parts.length > 1 ? parts[1] : "";
-                        String dept = parts.length > 2 ? parts[2] : "";
-                        String subject = parts.length > 3 ? parts[3] : "";
-                        try {
-                            model.getTeachers().add(new Teacher(id, name, Department.valueOf(dept), subject));
-                        } catch (IllegalArgumentException iae) {
-                            // skip invalid department entries
-                        }
-                    });
+    static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // --- On-demand Reads ---
+    // For LazyDataModel, SQL mode only. The NOCASE lookups are served by the
+    // case-insensitive indexes from schema migration 3.
+
+    @Override
+    public Student fetchStudent(String id) {
+        return FETCH.call(() -> {
+            requireSql();
+            try (ConnectionPool.PooledConnection conn = borrow()) {
+                PreparedStatement ps = conn.prepare("SELECT id, name, major FROM STUDENTS WHERE id = ? COLLATE NOCASE");
+                ps.setString(1, id);
+                Student s;
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    s = new Student(rs.getString(1), rs.getString(2), rs.getString(3));
                 }
+                for (String courseId : queryIds(conn, "SELECT course_id FROM ENROLLMENTS WHERE student_id = ?", s.getId())) {
+                    s.enroll(courseId);
+                }
+                return s;
+            } catch (SQLException e) {
+                throw new RuntimeException("[DB Error] Failed to fetch student: " + e.getMessage(), e);
             }
+        });
+    }
 
-            Path coursesF = DATA_DIR.resolve("courses.csv");
-            if (Files.exists(coursesF)) {
-                try (Stream<String> lines = Files.lines(coursesF)) {
-                    lines.forEach(line -> {
-                        if (line.trim().isEmpty()) return;
-                        String[] parts = line.split("\\,");
-                        String id = parts.length > 0 ? parts[0] : "";
-                        String name = parts.length > 1 ? parts[1] : "";
-                        String dept = parts.length > 2 ? parts[2] : "";
-                        String teacherId = parts.length > 3 ? parts[3] : null;
-                        try {
-                            Course c = new Course(id, name, Department.valueOf(dept));
-                            if (teacherId != null && !teacherId.isEmpty()) c.assignTeacher(teacherId);
-                            model.getCourses().add(c);
-                        } catch (IllegalArgumentException iae) {
-                            // skip invalid department entries
-                        }
-                    });
+    @Override
+    public Teacher fetchTeacher(String id) {
+        return FETCH.call(() -> {
+            requireSql();
+            try (ConnectionPool.PooledConnection conn = borrow()) {
+                PreparedStatement ps = conn.prepare("SELECT id, name, department, subject FROM TEACHERS WHERE id = ? COLLATE NOCASE");
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    Department dept = RecordLog.department(rs.getString(3));
+                    return dept == null ? null : new Teacher(rs.getString(1), rs.getString(2), dept, rs.getString(4));
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException("[DB Error] Failed to fetch teacher: " + e.getMessage(), e);
             }
+        });
+    }
 
-            Path enrollF = DATA_DIR.resolve("enrollments.csv");
-            if (Files.exists(enrollF)) {
-                try (Stream<String> lines = Files.lines(enrollF)) {
-                    lines.forEach(line -> {
-                        if (line.trim().isEmpty()) return;
-                        String[] parts = line.split("\\,");
-                        String studentId = parts.length > 0 ? parts[0] : "";
-                        String courseId = parts.length > 1 ? parts[1] : "";
-                        model.findStudent(studentId).ifPresent(s -> s.enroll(courseId));
-                        model.findCourse(courseId).ifPresent(c -> c.addStudent(studentId));
-                    });
+    @Override
+    public Course fetchCourse(String id) {
+        return FETCH.call(() -> {
+            requireSql();
+            try (ConnectionPool.PooledConnection conn = borrow()) {
+                PreparedStatement ps = conn.prepare("SELECT id, name, department, teacher_id FROM COURSES WHERE id = ? COLLATE NOCASE");
+                ps.setString(1, id);
+                Course c;
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    Department dept = RecordLog.department(rs.getString(3));
+                    if (dept == null) return null;
+                    c = new Course(rs.getString(1), rs.getString(2), dept);
+                    c.assignTeacher(rs.getString(4)); // Can be null
+                }
+                for (String studentId : queryIds(conn, "SELECT student_id FROM ENROLLMENTS WHERE course_id = ?", c.getCourseId())) {
+                    c.addStudent(studentId);
                 }
+                return c;
+            } catch (SQLException e) {
+                throw new RuntimeException("[DB Error] Failed to fetch course: " + e.getMessage(), e);
             }
-            System.out.println("[DB] Data loaded from files successfully.");
-        } catch (IOException ioe) {
-            System.err.println("[DB Error] Failed to load file-based data: " + ioe.getMessage());
+        });
+    }
+
+    @Override
+    public List<String> findStudentIds(String major, String afterId, int limit) {
+        return major == null
+                ? queryIds("SELECT id FROM STUDENTS WHERE id > ? ORDER BY id LIMIT ?", after(afterId), limit)
+                : queryIds("SELECT id FROM STUDENTS WHERE major = ? COLLATE NOCASE AND id > ? ORDER BY id LIMIT ?",
+                        major, after(afterId), limit);
+    }
+
+    @Override
+    public List<String> findTeacherIds(Department dept, String afterId, int limit) {
+        return dept == null
+                ? queryIds("SELECT id FROM TEACHERS WHERE id > ? ORDER BY id LIMIT ?", after(afterId), limit)
+                : queryIds("SELECT id FROM TEACHERS WHERE department = ? AND id > ? ORDER BY id LIMIT ?",
+                        dept.name(), after(afterId), limit);
+    }
+
+    @Override
+    public List<String> findCourseIds(Department dept, String teacherId, String afterId, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id FROM COURSES WHERE id > ?");
+        params.add(after(afterId));
+        if (dept != null) {
+            sql.append(" AND department = ?");
+            params.add(dept.name());
+        }
+        if (teacherId != null) {
+            sql.append(" AND teacher_id = ? COLLATE NOCASE");
+            params.add(teacherId);
         }
+        sql.append(" ORDER BY id LIMIT ?");
+        params.add(limit);
+        return queryIds(sql.toString(), params.toArray());
     }
 
-    // --- Data Modification Methods ---
-    // These methods write changes to the DB immediately.
+    @Override
+    public List<String> findStudentIdsByName(String query, int limit) {
+        return findIdsByName("STUDENTS", query, limit);
+    }
 
-    public void insertStudent(Student s) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; insertStudent skipped.");
-            return;
+    @Override
+    public List<String> findTeacherIdsByName(String query, int limit) {
+        return findIdsByName("TEACHERS", query, limit);
+    }
+
+    @Override
+    public List<String> findCourseIdsByName(String query, int limit) {
+        return findIdsByName("COURSES", query, limit);
+    }
+
+    private List<String> findIdsByName(String table, String query, int limit) {
+        // Split as the name index splits, so the words hold only letters and digits
+        // and need no LIKE escaping; each must start the name or a word in it
+        String[] words = NameIndex.words(query);
+        if (words.length == 0 || limit < 1) return new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        // table is one of our own constants, never user input
+        StringBuilder sql = new StringBuilder("SELECT id FROM " + table + " WHERE 1 = 1");
+        for (String word : words) {
+            sql.append(" AND (name LIKE ? OR name LIKE ?)");
+            params.add(word + "%");
+            params.add("% " + word + "%");
         }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "INSERT INTO STUDENTS(id, name, major) VALUES(?,?,?)";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, s.getId());
-                pstmt.setString(2, s.getName());
-                pstmt.setString(3, s.getMajor());
-                pstmt.executeUpdate();
-                return;
+        sql.append(" ORDER BY id LIMIT ?");
+        params.add(limit);
+        return queryIds(sql.toString(), params.toArray());
+    }
+
+    /** Course IDs the student is enrolled in, as stored here. */
+    List<String> findEnrolledCourseIds(String studentId) {
+        return queryIds("SELECT course_id FROM ENROLLMENTS WHERE student_id = ?", studentId);
+    }
+
+    @Override
+    public Map<Department, Integer> countCoursesByDepartment() {
+        return countByDepartment("COURSES");
+    }
+
+    @Override
+    public Map<Department, Integer> countTeachersByDepartment() {
+        return countByDepartment("TEACHERS");
+    }
+
+    @Override
+    public long countStudents() {
+        return QUERY_IDS.call(() -> {
+            requireSql();
+            long[] count = new long[1];
+            try {
+                queryEach("SELECT COUNT(*) FROM STUDENTS", rs -> count[0] = rs.getLong(1));
             } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to insert student: " + e.getMessage(), e);
+                throw new RuntimeException("[DB Error] Failed to count students: " + e.getMessage(), e);
             }
-        }
+            return count[0];
+        });
+    }
+
+    private Map<Department, Integer> countByDepartment(String table) {
+        return QUERY_IDS.call(() -> {
+            requireSql();
+            Map<Department, Integer> counts = new EnumMap<>(Department.class);
+            try {
+                // table is one of our own constants, never user input
+                queryEach("SELECT department, COUNT(*) FROM " + table + " GROUP BY department", rs -> {
+                    Department dept = RecordLog.department(rs.getString(1));
+                    if (dept != null) counts.put(dept, rs.getInt(2));
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("[DB Error] Failed to count " + table + ": " + e.getMessage(), e);
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * Enrollment aggregates from grouped queries: people are counted off the
+     * tables, and courses are grouped by department, teacher and roster size,
+     * each roster counted off the enrollment index. SQL mode only.
+     */
+    @Override
+    public ModelStatistics computeStatistics() {
+        return QUERY_IDS.call(() -> {
+            ModelStatistics.Change stats = ModelStatistics.EMPTY.change();
+            stats.student((int) countStudents());
+            countTeachersByDepartment().forEach((dept, n) -> stats.teacher(dept, n));
+            addCourseStatistics(stats);
+            return stats.build();
+        });
+    }
 
-        // FILE mode
-        Path studentsF = DATA_DIR.resolve("students.csv");
-        String line = String.join(",", escapeCsv(s.getId()), escapeCsv(s.getName()), escapeCsv(s.getMajor()));
+    /** Adds the courses stored here, with their rosters, to {@code stats}. */
+    void addCourseStatistics(ModelStatistics.Change stats) {
+        requireSql();
         try {
-            Files.write(studentsF, (line + System.lineSeparator()).getBytes(), StandardOpenOption.APPEND);
-        } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to write student to file: " + ioe.getMessage(), ioe);
+            queryEach("SELECT c.department, c.teacher_id,"
+                    + " (SELECT COUNT(*) FROM ENROLLMENTS e WHERE e.course_id = c.id) AS roster, COUNT(*)"
+                    + " FROM COURSES c GROUP BY c.department, c.teacher_id, roster", rs -> {
+                Department dept = RecordLog.department(rs.getString(1));
+                if (dept != null) stats.course(dept, rs.getString(2), rs.getInt(3), rs.getInt(4));
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("[DB Error] Failed to aggregate courses: " + e.getMessage(), e);
         }
     }
 
-    public void insertTeacher(Teacher t) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; insertTeacher skipped.");
-            return;
+    // --- Bulk Export ---
+
+    // Primary-key order, so each query streams off its index without sorting
+    private static final String[] EXPORT_QUERIES = {
+            "SELECT id, name, major FROM STUDENTS ORDER BY id",
+            "SELECT id, name, department, subject FROM TEACHERS ORDER BY id",
+            "SELECT id, name, department, NULLIF(teacher_id, 'TBD') FROM COURSES ORDER BY id",
+            "SELECT student_id, course_id FROM ENROLLMENTS ORDER BY student_id, course_id"
+    };
+
+    /**
+     * Streams every row of every table to {@code sink}, in {@link DataExporter.Table}
+     * order. All four queries run in one read transaction, so the tables agree
+     * with each other even while writes go on. SQL mode only.
+     */
+    void exportTables(DataExporter.TableSink sink) throws IOException {
+        try {
+            EXPORT_TABLES.run(() -> {
+                requireSql();
+                inTransaction(() -> {
+                    try {
+                        for (DataExporter.Table table : DataExporter.Table.values()) {
+                            sink.begin(table);
+                            streamTable(table, sink);
+                            sink.end(table);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (SQLException e) {
+                        throw new RuntimeException("[DB Error] Export failed: " + e.getMessage(), e);
+                    }
+                });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "INSERT INTO TEACHERS(id, name, department, subject) VALUES(?,?,?,?)";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, t.getId());
-                pstmt.setString(2, t.getName());
-                pstmt.setString(3, t.getDepartment().name()); // Store enum as string
-                pstmt.setString(4, t.getSubject());
-                pstmt.executeUpdate();
-                return;
+    }
+
+    /** Feeds every row of one table to {@code sink}, between its begin and end calls. */
+    void streamTable(DataExporter.Table table, DataExporter.TableSink sink) throws SQLException {
+        String[] row = new String[table.getColumns().length];
+        queryEach(EXPORT_QUERIES[table.ordinal()], rs -> {
+            for (int i = 0; i < row.length; i++) row[i] = rs.getString(i + 1);
+            try {
+                sink.row(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String after(String afterId) {
+        return afterId == null ? "" : afterId;
+    }
+
+    private List<String> queryIds(String sql, Object... params) {
+        return QUERY_IDS.call(() -> {
+            requireSql();
+            try (ConnectionPool.PooledConnection conn = borrow()) {
+                return queryIds(conn, sql, params);
             } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to insert teacher: " + e.getMessage(), e);
+                throw new RuntimeException("[DB Error] Query failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static List<String> queryIds(ConnectionPool.PooledConnection conn, String sql, Object... params) throws SQLException {
+        PreparedStatement ps = conn.prepare(sql);
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+        List<String> ids = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
             }
         }
+        return ids;
+    }
 
-        Path teachersF = DATA_DIR.resolve("teachers.csv");
-        String line = String.join(",", escapeCsv(t.getId()), escapeCsv(t.getName()), escapeCsv(t.getDepartment().name()), escapeCsv(t.getSubject()));
-        try {
-            Files.write(teachersF, (line + System.lineSeparator()).getBytes(), StandardOpenOption.APPEND);
-        } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to write teacher to file: " + ioe.getMessage(), ioe);
+    /** Empties COURSES and ENROLLMENTS, leaving students and teachers; SQL mode only. */
+    void deleteCoursesAndEnrollments() {
+        requireSql();
+        try (ConnectionPool.PooledConnection conn = borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("DELETE FROM ENROLLMENTS");
+            stmt.execute("DELETE FROM COURSES");
+        } catch (SQLException e) {
+            throw new RuntimeException("[DB Error] Failed to clear courses: " + e.getMessage(), e);
+        }
+    }
+
+    void requireSql() {
+        if (persistenceMode != PersistenceMode.SQL) {
+            throw new IllegalStateException("On-demand reads need SQL persistence (current mode: " + persistenceMode + ")");
         }
     }
+
+    // --- Data Modification Methods ---
+    // These methods write changes to the DB immediately.
+
+    public void insertStudent(Student s) {
+        INSERT_STUDENT.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; insertStudent skipped.");
+                return;
+            }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "INSERT INTO STUDENTS(id, name, major) VALUES(?,?,?)";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setString(1, s.getId());
+                    pstmt.setString(2, s.getName());
+                    pstmt.setString(3, s.getMajor());
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to insert student: " + e.getMessage(), e);
+                }
+            }
+
+            // FILE mode
+            appendRecord(RecordLog.studentRecord(s), "write student to file");
+        });
+    }
+
+    public void insertTeacher(Teacher t) {
+        INSERT_TEACHER.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; insertTeacher skipped.");
+                return;
+            }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "INSERT INTO TEACHERS(id, name, department, subject) VALUES(?,?,?,?)";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setString(1, t.getId());
+                    pstmt.setString(2, t.getName());
+                    pstmt.setString(3, t.getDepartment().name()); // Store enum as string
+                    pstmt.setString(4, t.getSubject());
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to insert teacher: " + e.getMessage(), e);
+                }
+            }
+
+            appendRecord(RecordLog.teacherRecord(t), "write teacher to file");
+        });
+    }
     
     public void insertCourse(Course c) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; insertCourse skipped.");
-            return;
-        }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "INSERT INTO COURSES(id, name, department, teacher_id) VALUES(?,?,?,?)";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, c.getCourseId());
-                pstmt.setString(2, c.getCourseName());
-                pstmt.setString(3, c.getDepartment().name());
-                pstmt.setString(4, c.getTeacherId());
-                pstmt.executeUpdate();
+        INSERT_COURSE.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; insertCourse skipped.");
                 return;
-            } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to insert course: " + e.getMessage(), e);
             }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "INSERT INTO COURSES(id, name, department, teacher_id) VALUES(?,?,?,?)";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setString(1, c.getCourseId());
+                    pstmt.setString(2, c.getCourseName());
+                    pstmt.setString(3, c.getDepartment().name());
+                    pstmt.setString(4, c.getTeacherId());
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to insert course: " + e.getMessage(), e);
+                }
+            }
+
+            appendRecord(RecordLog.courseRecord(c), "write course to file");
+        });
+    }
+
+    public void insertEnrollment(String studentId, String courseId) {
+        insertEnrollment(studentId, courseId, NO_CAPACITY);
+    }
+
+    /**
+     * Inserts the enrollment unless the course already has {@code capacity}
+     * students, and returns false if so. In SQL mode the count and the insert
+     * are one statement, so the limit holds however callers race; in FILE mode
+     * the caller's own seat count is all there is.
+     */
+    public boolean insertEnrollment(String studentId, String courseId, int capacity) {
+        return INSERT_ENROLLMENT.call(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; insertEnrollment skipped.");
+                return true;
+            }
+            if (persistenceMode == PersistenceMode.SQL) {
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(enrollmentInsertSql(capacity));
+                    bindEnrollment(pstmt, studentId, courseId, capacity);
+                    return pstmt.executeUpdate() > 0;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to insert enrollment: " + e.getMessage(), e);
+                }
+            }
+
+            appendRecord(RecordLog.enrollmentRecord(studentId, courseId), "write enrollment to file");
+            return true;
+        });
+    }
+
+    private static String enrollmentInsertSql(int capacity) {
+        return capacity == NO_CAPACITY
+                ? "INSERT INTO ENROLLMENTS(student_id, course_id) VALUES(?,?)"
+                : "INSERT INTO ENROLLMENTS(student_id, course_id) SELECT ?, ?"
+                        + " WHERE (SELECT COUNT(*) FROM ENROLLMENTS WHERE course_id = ?) < ?";
+    }
+
+    private static void bindEnrollment(PreparedStatement ps, String studentId, String courseId, int capacity)
+            throws SQLException {
+        ps.setString(1, studentId);
+        ps.setString(2, courseId);
+        if (capacity != NO_CAPACITY) {
+            ps.setString(3, courseId);
+            ps.setInt(4, capacity);
         }
+    }
 
-        Path coursesF = DATA_DIR.resolve("courses.csv");
-        String line = String.join(",", escapeCsv(c.getCourseId()), escapeCsv(c.getCourseName()), escapeCsv(c.getDepartment().name()), escapeCsv(c.getTeacherId() == null ? "" : c.getTeacherId()));
-        try {
-            Files.write(coursesF, (line + System.lineSeparator()).getBytes(), StandardOpenOption.APPEND);
-        } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to write course to file: " + ioe.getMessage(), ioe);
+    // --- Bulk Methods ---
+    // Each call writes one chunk in a single transaction. The returned map holds
+    // the rows that could not be written, keyed by their position in the chunk.
+
+    /** Binds one row's values onto a prepared statement. */
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    public Map<Integer, String> insertStudents(List<Student> rows) {
+        return INSERT_STUDENTS.call(() -> {
+            return writeBatch("students", rows,
+                    "INSERT INTO STUDENTS(id, name, major) VALUES(?,?,?)",
+                    (ps, s) -> {
+                        ps.setString(1, s.getId());
+                        ps.setString(2, s.getName());
+                        ps.setString(3, s.getMajor());
+                    },
+                    RecordLog::studentRecord);
+        });
+    }
+
+    public Map<Integer, String> insertTeachers(List<Teacher> rows) {
+        return INSERT_TEACHERS.call(() -> {
+            return writeBatch("teachers", rows,
+                    "INSERT INTO TEACHERS(id, name, department, subject) VALUES(?,?,?,?)",
+                    (ps, t) -> {
+                        ps.setString(1, t.getId());
+                        ps.setString(2, t.getName());
+                        ps.setString(3, t.getDepartment().name());
+                        ps.setString(4, t.getSubject());
+                    },
+                    RecordLog::teacherRecord);
+        });
+    }
+
+    public Map<Integer, String> insertCourses(List<Course> rows) {
+        return INSERT_COURSES.call(() -> {
+            return writeBatch("courses", rows,
+                    "INSERT INTO COURSES(id, name, department, teacher_id) VALUES(?,?,?,?)",
+                    (ps, c) -> {
+                        ps.setString(1, c.getCourseId());
+                        ps.setString(2, c.getCourseName());
+                        ps.setString(3, c.getDepartment().name());
+                        ps.setString(4, c.getTeacherId());
+                    },
+                    RecordLog::courseRecord);
+        });
+    }
+
+    public Map<Integer, String> insertEnrollments(List<Enrollment> rows) {
+        return insertEnrollments(rows, NO_CAPACITY);
+    }
+
+    /** Batched {@link #insertEnrollment(String, String, int)}; rows that would overfill their course fail. */
+    public Map<Integer, String> insertEnrollments(List<Enrollment> rows, int capacity) {
+        return INSERT_ENROLLMENTS.call(() -> {
+            return writeBatch("enrollments", rows, enrollmentInsertSql(capacity),
+                    (ps, e) -> bindEnrollment(ps, e.getStudentId(), e.getCourseId(), capacity),
+                    e -> RecordLog.enrollmentRecord(e.getStudentId(), e.getCourseId()),
+                    capacity == NO_CAPACITY ? null : COURSE_FULL);
+        });
+    }
+
+    private static void collectSkipped(int[] updateCounts, String skippedReason, Map<Integer, String> failures) {
+        if (skippedReason == null) return;
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) failures.put(i, skippedReason);
         }
     }
 
-    public void insertEnrollment(String studentId, String courseId) {
+    /** Batched {@link #updateTeacherAssignment}; each row is {courseId, teacherId}. */
+    public Map<Integer, String> updateTeacherAssignments(List<String[]> rows) {
+        return UPDATE_ASSIGNMENTS.call(() -> {
+            return writeBatch("teacher assignments", rows,
+                    "UPDATE COURSES SET teacher_id = ? WHERE id = ?",
+                    (ps, a) -> {
+                        ps.setString(1, a[1]);
+                        ps.setString(2, a[0]);
+                    },
+                    a -> RecordLog.assignmentRecord(a[0], a[1]));
+        });
+    }
+
+    private <T> Map<Integer, String> writeBatch(String what, List<T> rows, String sql, RowBinder<T> binder,
+                                                Function<T, String[]> toRecord) {
+        return writeBatch(what, rows, sql, binder, toRecord, null);
+    }
+
+    /**
+     * As above; with {@code skippedReason}, a row the statement chose not to
+     * write (zero rows changed) fails with that reason. SQL mode only.
+     */
+    private <T> Map<Integer, String> writeBatch(String what, List<T> rows, String sql, RowBinder<T> binder,
+                                                Function<T, String[]> toRecord, String skippedReason) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        if (rows.isEmpty()) {
+            return failures;
+        }
         if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; insertEnrollment skipped.");
-            return;
+            System.out.println("[DB Warning] Persistence disabled; bulk insert of " + what + " skipped.");
+            return failures;
         }
         if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "INSERT INTO ENROLLMENTS(student_id, course_id) VALUES(?,?)";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, studentId);
-                pstmt.setString(2, courseId);
-                pstmt.executeUpdate();
-                return;
+            try (ConnectionPool.PooledConnection pooled = borrow()) {
+                Connection conn = pooled.getConnection();
+                PreparedStatement ps = pooled.prepare(sql);
+                if (!conn.getAutoCommit()) {
+                    // Already inside inTransaction(): the caller owns commit and rollback
+                    for (T row : rows) {
+                        binder.bind(ps, row);
+                        ps.addBatch();
+                    }
+                    collectSkipped(ps.executeBatch(), skippedReason, failures);
+                    return failures;
+                }
+                conn.setAutoCommit(false);
+                boolean committed = false;
+                try {
+                    for (T row : rows) {
+                        binder.bind(ps, row);
+                        ps.addBatch();
+                    }
+                    collectSkipped(ps.executeBatch(), skippedReason, failures);
+                    conn.commit();
+                    committed = true;
+                } catch (SQLException batchError) {
+                    // Something in the chunk was rejected: redo it row by row so only
+                    // the offending rows are dropped. SQLite rolls back just the failed
+                    // statement, so the rest of the transaction stays intact.
+                    ps.clearBatch();
+                    conn.rollback();
+                    failures.clear();
+                    for (int i = 0; i < rows.size(); i++) {
+                        try {
+                            binder.bind(ps, rows.get(i));
+                            if (ps.executeUpdate() == 0 && skippedReason != null) failures.put(i, skippedReason);
+                        } catch (SQLException rowError) {
+                            failures.put(i, rowError.getMessage());
+                        }
+                    }
+                    conn.commit();
+                    committed = true;
+                } finally {
+                    if (committed || rollbackQuietly(conn)) conn.setAutoCommit(true);
+                }
+                return failures;
             } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to insert enrollment: " + e.getMessage(), e);
+                throw new RuntimeException("[DB Error] Failed to bulk insert " + what + ": " + e.getMessage(), e);
             }
         }
 
-        Path enrollF = DATA_DIR.resolve("enrollments.csv");
-        String line = String.join(",", escapeCsv(studentId), escapeCsv(courseId));
+        // FILE mode: one append for the whole chunk
+        List<String[]> records = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            records.add(toRecord.apply(row));
+        }
         try {
-            Files.write(enrollF, (line + System.lineSeparator()).getBytes(), StandardOpenOption.APPEND);
+            recordLog.append(records);
         } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to write enrollment to file: " + ioe.getMessage(), ioe);
+            throw new RuntimeException("[DB Error] Failed to write " + what + " to file: " + ioe.getMessage(), ioe);
         }
+        return failures;
     }
 
     public void updateTeacherAssignment(String courseId, String teacherId) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; updateTeacherAssignment skipped.");
-            return;
-        }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "UPDATE COURSES SET teacher_id = ? WHERE id = ?";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, teacherId);
-                pstmt.setString(2, courseId);
-                pstmt.executeUpdate();
+        UPDATE_ASSIGNMENT.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; updateTeacherAssignment skipped.");
                 return;
-            } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to update teacher assignment: " + e.getMessage(), e);
             }
-        }
-
-        // FILE mode: rewrite courses file replacing matching course id line
-        Path coursesF = DATA_DIR.resolve("courses.csv");
-        try {
-            if (!Files.exists(coursesF)) return;
-            Stream<String> lines = Files.lines(coursesF);
-            java.util.List<String> updated = lines.map(line -> {
-                String[] parts = line.split(",");
-                if (parts.length > 0 && parts[0].equals(courseId)) {
-                    String name = parts.length > 1 ? parts[1] : "";
-                    String dept = parts.length > 2 ? parts[2] : "";
-                    return String.join(",", escapeCsv(courseId), name, dept, escapeCsv(teacherId == null ? "" : teacherId));
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "UPDATE COURSES SET teacher_id = ? WHERE id = ?";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setString(1, teacherId);
+                    pstmt.setString(2, courseId);
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to update teacher assignment: " + e.getMessage(), e);
                 }
-                return line;
-            }).toList();
-            lines.close();
-            Files.write(coursesF, String.join(System.lineSeparator(), updated).getBytes());
-        } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to update teacher assignment in file: " + ioe.getMessage(), ioe);
-        }
+            }
+
+            // FILE mode: append an assignment record
+            appendRecord(RecordLog.assignmentRecord(courseId, teacherId), "update teacher assignment in file");
+        });
     }
 
     public void deleteStudent(String id) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; deleteStudent skipped.");
-            return;
-        }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "DELETE FROM STUDENTS WHERE id = ?";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                // First, delete any enrollments
-                String enrollSql = "DELETE FROM ENROLLMENTS WHERE student_id = ?";
-                try (PreparedStatement enrollStmt = conn.prepareStatement(enrollSql)) {
+        DELETE_STUDENT.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; deleteStudent skipped.");
+                return;
+            }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "DELETE FROM STUDENTS WHERE id = ?";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    // First, delete any enrollments
+                    PreparedStatement enrollStmt = conn.prepare("DELETE FROM ENROLLMENTS WHERE student_id = ?");
                     enrollStmt.setString(1, id);
                     enrollStmt.executeUpdate();
+                    // Then delete the student
+                    pstmt.setString(1, id);
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to delete student: " + e.getMessage(), e);
                 }
-                // Then delete the student
-                pstmt.setString(1, id);
-                pstmt.executeUpdate();
-                return;
-            } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to delete student: " + e.getMessage(), e);
             }
-        }
 
-        // FILE mode: remove lines from enrollments and students files
-        try {
-            Path enrollF = DATA_DIR.resolve("enrollments.csv");
-            if (Files.exists(enrollF)) {
-                Stream<String> lines = Files.lines(enrollF);
-                java.util.List<String> filtered = lines.filter(line -> {
-                    if (line.trim().isEmpty()) return false;
-                    String[] parts = line.split(",");
-                    return parts.length < 1 || !parts[0].equals(id);
-                }).toList();
-                lines.close();
-                Files.write(enrollF, String.join(System.lineSeparator(), filtered).getBytes());
-            }
-
-            Path studentsF = DATA_DIR.resolve("students.csv");
-            if (Files.exists(studentsF)) {
-                Stream<String> lines = Files.lines(studentsF);
-                java.util.List<String> filtered = lines.filter(line -> {
-                    if (line.trim().isEmpty()) return false;
-                    String[] parts = line.split(",");
-                    return parts.length < 1 || !parts[0].equals(id);
-                }).toList();
-                lines.close();
-                Files.write(studentsF, String.join(System.lineSeparator(), filtered).getBytes());
-            }
-        } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to delete student from file storage: " + ioe.getMessage(), ioe);
-        }
+            // FILE mode: append a delete record; replay drops the student and their enrollments
+            appendRecord(RecordLog.deleteStudentRecord(id), "delete student from file storage");
+        });
     }
 
     public void updateStudent(Student student) {
-        if (persistenceMode == PersistenceMode.NONE) {
-            System.out.println("[DB Warning] Persistence disabled; updateStudent skipped.");
-            return;
-        }
-        if (persistenceMode == PersistenceMode.SQL) {
-            String sql = "UPDATE STUDENTS SET name = ?, major = ? WHERE id = ?";
-            try (Connection conn = connect();
-                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, student.getName());
-                pstmt.setString(2, student.getMajor());
-                pstmt.setString(3, student.getId());
-                pstmt.executeUpdate();
+        UPDATE_STUDENT.run(() -> {
+            if (persistenceMode == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; updateStudent skipped.");
                 return;
-            } catch (SQLException e) {
-                throw new RuntimeException("[DB Error] Failed to update student: " + e.getMessage(), e);
             }
-        }
+            if (persistenceMode == PersistenceMode.SQL) {
+                String sql = "UPDATE STUDENTS SET name = ?, major = ? WHERE id = ?";
+                try (ConnectionPool.PooledConnection conn = borrow()) {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setString(1, student.getName());
+                    pstmt.setString(2, student.getMajor());
+                    pstmt.setString(3, student.getId());
+                    pstmt.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    throw new RuntimeException("[DB Error] Failed to update student: " + e.getMessage(), e);
+                }
+            }
 
-        // FILE mode: rewrite students file replacing matching id
-        Path studentsF = DATA_DIR.resolve("students.csv");
+            // FILE mode: the newer student record supersedes the old one
+            appendRecord(RecordLog.studentRecord(student), "update student in file storage");
+        });
+    }
+
+    private void appendRecord(String[] record, String what) {
         try {
-            if (!Files.exists(studentsF)) return;
-            Stream<String> lines = Files.lines(studentsF);
-            java.util.List<String> updated = lines.map(line -> {
-                String[] parts = line.split(",");
-                if (parts.length > 0 && parts[0].equals(student.getId())) {
-                    return String.join(",", escapeCsv(student.getId()), escapeCsv(student.getName()), escapeCsv(student.getMajor()));
-                }
-                return line;
-            }).toList();
-            lines.close();
-            Files.write(studentsF, String.join(System.lineSeparator(), updated).getBytes());
+            recordLog.append(record);
         } catch (IOException ioe) {
-            throw new RuntimeException("[DB Error] Failed to update student in file storage: " + ioe.getMessage(), ioe);
+            throw new RuntimeException("[DB Error] Failed to " + what + ": " + ioe.getMessage(), ioe);
         }
     }
-
-    // Simple CSV escaping to avoid breaking on commas/newlines
-    private static String escapeCsv(String s) {
-        if (s == null) return "";
-        return s.replace("\n", " ").replace("\r", " ").replace(",", ";");
-    }
 }
@@ -0,0 +1,168 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import people.Student;
+import people.Teacher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds realistic synthetic datasets from a seed: the same config always
+ * yields the same entities in the same order. Students, teachers and courses
+ * are spread across every {@link Department}. Course popularity follows a Zipf
+ * distribution, so a few courses are in heavy demand and most are not.
+ */
+public class DatasetGenerator {
+
+    /** Dataset shape; defaults can be overridden with {@code -Dums.gen.*} system properties. */
+    public static class Config {
+        public long seed = Long.getLong("ums.gen.seed", 42L);
+        public int students = Integer.getInteger("ums.gen.students", 10_000);
+        public int teachers = Integer.getInteger("ums.gen.teachers", 400);
+        public int courses = Integer.getInteger("ums.gen.courses", 1_500);
+        // Pre-registered enrollments per student, before any registration traffic
+        public int enrollmentsPerStudent = Integer.getInteger("ums.gen.enrollmentsPerStudent", 2);
+        // Zipf exponent for course popularity: 0 is uniform, higher is more skewed
+        public double popularitySkew = Double.parseDouble(System.getProperty("ums.gen.skew", "1.1"));
+    }
+
+    /** A generated dataset, in import order. */
+    public static class Dataset {
+        public final List<Teacher> teachers;
+        public final List<Course> courses;
+        public final List<Student> students;
+        public final List<Enrollment> enrollments;
+
+        Dataset(List<Teacher> teachers, List<Course> courses, List<Student> students, List<Enrollment> enrollments) {
+            this.teachers = teachers;
+            this.courses = courses;
+            this.students = students;
+            this.enrollments = enrollments;
+        }
+    }
+
+    private static final String[] FIRST = {"Ada", "Ben", "Chloe", "Dev", "Elif", "Femi", "Grace", "Hugo", "Iris",
+            "Jonas", "Kira", "Liam", "Mei", "Noor", "Omar", "Priya", "Quinn", "Rosa", "Sami", "Tariq", "Uma",
+            "Vera", "Wen", "Yusuf", "Zara"};
+    private static final String[] LAST = {"Ahmed", "Brown", "Chen", "Diaz", "Evans", "Fischer", "Garcia", "Haddad",
+            "Ito", "Jensen", "Khan", "Lopez", "Martin", "Nowak", "Okafor", "Patel", "Rossi", "Silva", "Tanaka",
+            "Ueda", "Varga", "Wong", "Yilmaz", "Zhou"};
+    private static final String[][] SUBJECTS = {
+            {"Algorithms", "Databases", "Networks", "Compilers", "Machine Learning"},
+            {"Marketing", "Finance", "Accounting", "Operations", "Strategy"},
+            {"Circuits", "Signals", "Power Systems", "Control", "Embedded Systems"},
+            {"Literature", "History", "Philosophy", "Art History", "Linguistics"},
+            {"Mechanics", "Optics", "Thermodynamics", "Quantum Physics", "Astrophysics"}};
+    private static final String[] MAJORS = {"Computer Science", "Business", "Electrical Engineering",
+            "Humanities", "Physics"};
+    private static final String[] LEVELS = {"Intro to", "Topics in", "Applied", "Advanced"};
+
+    private final Config config;
+    private final double[] popularity; // cumulative, by popularity rank
+    private final long stride;         // maps ranks to course positions; coprime with the course count
+
+    public DatasetGenerator(Config config) {
+        if (config.students < 1 || config.teachers < 1 || config.courses < 1) {
+            throw new IllegalArgumentException("Students, teachers and courses must each be at least 1");
+        }
+        this.config = config;
+        this.popularity = new double[config.courses];
+        double total = 0;
+        for (int rank = 0; rank < config.courses; rank++) {
+            total += 1.0 / Math.pow(rank + 1, config.popularitySkew);
+            popularity[rank] = total;
+        }
+        for (int rank = 0; rank < config.courses; rank++) {
+            popularity[rank] /= total;
+        }
+        this.stride = config.courses % 7919 == 0 ? 1 : 7919; // 7919 is prime
+    }
+
+    public Config getConfig() { return config; }
+
+    public static String studentId(int i) { return String.format("S%06d", i); }
+    public static String teacherId(int i) { return String.format("T%05d", i); }
+    public static String courseId(int i) { return String.format("C%05d", i); }
+
+    public Dataset generate() {
+        Random random = new Random(config.seed);
+        Department[] departments = Department.values();
+
+        List<Teacher> teachers = new ArrayList<>(config.teachers);
+        for (int i = 0; i < config.teachers; i++) {
+            Department dept = departments[i % departments.length];
+            String[] subjects = SUBJECTS[dept.ordinal() % SUBJECTS.length];
+            teachers.add(new Teacher(teacherId(i), "Dr. " + name(random), dept, subjects[random.nextInt(subjects.length)]));
+        }
+
+        List<Course> courses = new ArrayList<>(config.courses);
+        for (int i = 0; i < config.courses; i++) {
+            Department dept = departments[i % departments.length];
+            String[] subjects = SUBJECTS[dept.ordinal() % SUBJECTS.length];
+            Course c = new Course(courseId(i),
+                    LEVELS[random.nextInt(LEVELS.length)] + " " + subjects[random.nextInt(subjects.length)], dept);
+            // Teachers were dealt round-robin by department; pick one from the course's department
+            int d = i % departments.length;
+            int inDept = (config.teachers - d + departments.length - 1) / departments.length;
+            int teacher = inDept > 0 ? d + departments.length * random.nextInt(inDept) : random.nextInt(config.teachers);
+            c.assignTeacher(teacherId(teacher));
+            courses.add(c);
+        }
+
+        List<Student> students = new ArrayList<>(config.students);
+        for (int i = 0; i < config.students; i++) {
+            students.add(new Student(studentId(i), name(random), MAJORS[random.nextInt(MAJORS.length)]));
+        }
+
+        // Pre-registration respects the cap, so the whole set imports cleanly
+        int[] seats = new int[config.courses];
+        int perStudent = Math.min(config.enrollmentsPerStudent, config.courses);
+        List<Enrollment> enrollments = new ArrayList<>(config.students * perStudent);
+        for (int s = 0; s < config.students; s++) {
+            int taken = 0;
+            int[] chosen = new int[perStudent];
+            for (int attempt = 0; taken < perStudent && attempt < perStudent * 8; attempt++) {
+                int c = nextCourse(random);
+                if (seats[c] >= UniversityService.MAX_COURSE_CAPACITY || contains(chosen, taken, c)) continue;
+                chosen[taken++] = c;
+                seats[c]++;
+                enrollments.add(new Enrollment(studentId(s), courseId(c)));
+            }
+        }
+        return new Dataset(teachers, courses, students, enrollments);
+    }
+
+    /** Imports a generated dataset through {@code service}, so it is persisted in the service's mode. */
+    public Dataset populate(UniversityService service) {
+        Dataset data = generate();
+        service.importTeachers(data.teachers);
+        service.importCourses(data.courses);
+        service.importStudents(data.students);
+        service.importEnrollments(data.enrollments);
+        return data;
+    }
+
+    /** Draws a course position by popularity. */
+    public int nextCourse(Random random) {
+        int pos = Arrays.binarySearch(popularity, random.nextDouble());
+        int rank = Math.min(pos >= 0 ? pos : -pos - 1, config.courses - 1);
+        // Spread the popular ranks over departments instead of clustering them at low IDs
+        return (int) ((rank * stride) % config.courses);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static String name(Random random) {
+        return FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+    }
+}
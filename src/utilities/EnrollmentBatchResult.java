@@ -0,0 +1,73 @@
+package utilities;
+
+import courses.Enrollment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Per-item outcome of a batch enrollment, in the order the items were requested. */
+public class EnrollmentBatchResult {
+
+    /** One requested enrollment; {@code reason} is null when it went through. */
+    public static class Item {
+        private final Enrollment enrollment;
+        private String reason;
+
+        Item(Enrollment enrollment) {
+            this.enrollment = enrollment;
+        }
+
+        public Enrollment getEnrollment() { return enrollment; }
+        public boolean isEnrolled() { return reason == null; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return enrollment + (reason == null ? ": enrolled" : ": " + reason);
+        }
+    }
+
+    private final List<Item> items;
+
+    EnrollmentBatchResult(List<Item> items) {
+        this.items = items;
+    }
+
+    void fail(Item item, String reason) {
+        if (item.reason == null) item.reason = reason;
+    }
+
+    /** Marks every item not already failed with {@code reason}; used when an all-or-nothing batch aborts. */
+    void failAll(String reason) {
+        for (Item item : items) fail(item, reason);
+    }
+
+    public List<Item> getItems() { return Collections.unmodifiableList(items); }
+
+    public int getEnrolledCount() {
+        int n = 0;
+        for (Item item : items) {
+            if (item.isEnrolled()) n++;
+        }
+        return n;
+    }
+
+    public List<Item> getFailures() {
+        List<Item> failures = new ArrayList<>();
+        for (Item item : items) {
+            if (!item.isEnrolled()) failures.add(item);
+        }
+        return failures;
+    }
+
+    /** True when every requested enrollment went through. */
+    public boolean isComplete() {
+        return getEnrolledCount() == items.size();
+    }
+
+    @Override
+    public String toString() {
+        return getEnrolledCount() + " of " + items.size() + " enrollments applied";
+    }
+}
@@ -0,0 +1,264 @@
+package utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded cache of entities for {@link LazyDataModel}, shared by every entity
+ * type. Each entry has a weight, and once the total passes the limit the least
+ * recently used entries are evicted. Misses are loaded outside the lock; when
+ * two threads load the same entity, the first to finish wins, so there is never
+ * more than one resident copy of an entity.
+ *
+ * <p>A change in flight {@linkplain #acquire holds} the entities it modifies
+ * until it has written them back. A held entry is never evicted, so everyone
+ * working on the entity meanwhile shares the one copy. Releasing a hold bumps
+ * a counter for the entity's stripe; a load that started before the release
+ * may have read the store before the write landed, so it is read again rather
+ * than made resident.
+ */
+class EntityCache {
+
+    static final int TYPES = 3;
+
+    private static final class Entry {
+        final int type;
+        final Object value;
+        final ToIntFunction<Object> weigher;
+        int weight;
+        int pins;
+        ReentrantLock lock; // created on the first exclusive hold
+
+        Entry(int type, Object value, ToIntFunction<Object> weigher) {
+            this.type = type;
+            this.value = value;
+            this.weigher = weigher;
+            this.weight = Math.max(1, weigher.applyAsInt(value));
+        }
+    }
+
+    /** This thread's holds on one entry, innermost last; true where the hold took the entry's lock. */
+    private static final class Held {
+        final Entry entry;
+        final ArrayDeque<Boolean> exclusive = new ArrayDeque<>();
+
+        Held(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final int STRIPES = 64;
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private final int[] sizes = new int[TYPES];
+    private long weight;
+    private final long[] releases = new long[STRIPES];
+    private final ThreadLocal<Map<String, Held>> held = ThreadLocal.withInitial(HashMap::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    EntityCache(long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Cache weight limit must be at least 1");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    private static String key(int type, String id) {
+        return type + IndexedList.canonical(id);
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (STRIPES - 1);
+    }
+
+    /** The resident entity, or the one {@code loader} returns, which becomes resident. Null if neither exists. */
+    @SuppressWarnings("unchecked")
+    <T> T get(int type, String id, Supplier<T> loader, ToIntFunction<T> weigher) {
+        Entry e = lookup(type, key(type, id), loader, (ToIntFunction<Object>) weigher, false);
+        return e == null ? null : (T) e.value;
+    }
+
+    /**
+     * As {@link #get}, and holds the entity until {@link #release}: it stays
+     * resident, so a change in flight is never split across two copies. With
+     * {@code exclusive}, exclusive holders of the same entity take turns; they
+     * must take several in a consistent order. Holds are per thread and nest.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T acquire(int type, String id, Supplier<T> loader, ToIntFunction<T> weigher, boolean exclusive) {
+        String key = key(type, id);
+        Map<String, Held> mine = held.get();
+        Held h = mine.get(key);
+        if (h != null) {
+            synchronized (this) {
+                h.entry.pins++;
+            }
+        } else {
+            Entry e = lookup(type, key, loader, (ToIntFunction<Object>) weigher, true);
+            if (e == null) return null;
+            h = new Held(e);
+            mine.put(key, h);
+        }
+        if (exclusive) lockOf(h.entry).lock();
+        h.exclusive.addLast(exclusive);
+        return (T) h.entry.value;
+    }
+
+    /** Ends this thread's innermost hold on the entity; call it once the change has been written. */
+    void release(int type, String id) {
+        String key = key(type, id);
+        Map<String, Held> mine = held.get();
+        Held h = mine.get(key);
+        if (h == null) {
+            throw new IllegalStateException("Entity " + id + " is not held by this thread");
+        }
+        boolean exclusive = h.exclusive.removeLast();
+        if (h.exclusive.isEmpty()) mine.remove(key);
+        Entry e = h.entry;
+        synchronized (this) {
+            e.pins--;
+            releases[stripe(key)]++;
+            if (entries.get(key) == e) {
+                refreshWeight(e);
+                evict();
+            }
+        }
+        if (exclusive) e.lock.unlock();
+    }
+
+    private synchronized ReentrantLock lockOf(Entry e) {
+        if (e.lock == null) e.lock = new ReentrantLock();
+        return e.lock;
+    }
+
+    private Entry lookup(int type, String key, Supplier<?> loader, ToIntFunction<Object> weigher, boolean pin) {
+        int stripe = stripe(key);
+        while (true) {
+            long seen;
+            synchronized (this) {
+                Entry e = entries.get(key);
+                if (e != null) {
+                    hits.increment();
+                    // Rosters grow while resident, so the weight is refreshed on every hit
+                    refreshWeight(e);
+                    if (pin) e.pins++;
+                    evict();
+                    return e;
+                }
+                seen = releases[stripe];
+            }
+            misses.increment();
+            Object loaded = loader.get();
+            if (loaded == null) return null;
+            synchronized (this) {
+                Entry e = entries.get(key);
+                if (e == null) {
+                    // A change was written back while this copy was read: it may predate it
+                    if (releases[stripe] != seen) continue;
+                    e = new Entry(type, loaded, weigher);
+                    entries.put(key, e);
+                    sizes[type]++;
+                    weight += e.weight;
+                }
+                if (pin) e.pins++;
+                evict();
+                return e;
+            }
+        }
+    }
+
+    private void refreshWeight(Entry e) {
+        int w = Math.max(1, e.weigher.applyAsInt(e.value));
+        weight += w - e.weight;
+        e.weight = w;
+    }
+
+    /** Makes {@code value} resident unless the entity already is; returns the resident copy. */
+    @SuppressWarnings("unchecked")
+    synchronized <T> T put(int type, String id, T value, ToIntFunction<T> weigher) {
+        String key = key(type, id);
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return (T) existing.value;
+        }
+        Entry e = new Entry(type, value, (ToIntFunction<Object>) weigher);
+        entries.put(key, e);
+        sizes[type]++;
+        weight += e.weight;
+        evict();
+        return value;
+    }
+
+    /** Drops the entity if {@code value} is its resident copy. */
+    synchronized boolean invalidate(int type, String id, Object value) {
+        String key = key(type, id);
+        Entry e = entries.get(key);
+        if (e == null || e.value != value) return false;
+        remove(key, e);
+        return true;
+    }
+
+    synchronized void invalidateAll(int type) {
+        entries.entrySet().removeIf(en -> {
+            if (en.getValue().type != type) return false;
+            weight -= en.getValue().weight;
+            sizes[type]--;
+            return true;
+        });
+    }
+
+    private void remove(String key, Entry e) {
+        entries.remove(key);
+        sizes[e.type]--;
+        weight -= e.weight;
+    }
+
+    // Oldest first, skipping held entries; the newest entry always stays, even
+    // when it alone is over the limit
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        for (int candidates = entries.size() - 1; weight > maxWeight && candidates > 0; candidates--) {
+            Entry e = it.next().getValue();
+            if (e.pins > 0) continue;
+            it.remove();
+            sizes[e.type]--;
+            weight -= e.weight;
+            evictions.increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T> List<T> values(int type) {
+        List<T> values = new ArrayList<>(sizes[type]);
+        for (Entry e : entries.values()) {
+            if (e.type == type) values.add((T) e.value);
+        }
+        return values;
+    }
+
+    synchronized int size(int type) { return sizes[type]; }
+    synchronized long getWeight() { return weight; }
+    long getMaxWeight() { return maxWeight; }
+    long getHits() { return hits.sum(); }
+    long getMisses() { return misses.sum(); }
+    long getEvictions() { return evictions.sum(); }
+
+    double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
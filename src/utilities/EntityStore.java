@@ -0,0 +1,53 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import people.Student;
+import people.Teacher;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read access to persisted entities, for a model that loads them on demand
+ * instead of holding everything. IDs match case-insensitively, as they do in
+ * memory. ID queries return at most {@code limit} IDs greater than
+ * {@code afterId} (null for the start), in ID order.
+ */
+public interface EntityStore {
+
+    /** The student with its enrolled course IDs, or null if there is none. */
+    Student fetchStudent(String id);
+
+    Teacher fetchTeacher(String id);
+
+    /** The course with its enrolled student IDs, or null if there is none. */
+    Course fetchCourse(String id);
+
+    /** Student IDs, only those with {@code major} unless it is null. */
+    List<String> findStudentIds(String major, String afterId, int limit);
+
+    List<String> findTeacherIds(Department dept, String afterId, int limit);
+
+    /** Course IDs, filtered by department and/or teacher where those are not null. */
+    List<String> findCourseIds(Department dept, String teacherId, String afterId, int limit);
+
+    /**
+     * IDs of the entities whose name has a word starting with each word of
+     * {@code query}, ignoring case; at most {@code limit}, in ID order.
+     */
+    List<String> findStudentIdsByName(String query, int limit);
+
+    List<String> findTeacherIdsByName(String query, int limit);
+
+    List<String> findCourseIdsByName(String query, int limit);
+
+    Map<Department, Integer> countCoursesByDepartment();
+
+    Map<Department, Integer> countTeachersByDepartment();
+
+    long countStudents();
+
+    /** Enrollment aggregates over everything stored, computed by the store. */
+    ModelStatistics computeStatistics();
+}
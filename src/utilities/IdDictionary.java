@@ -0,0 +1,101 @@
+package utilities;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps entity IDs to dense int codes (0, 1, 2, ...) so relations can be stored
+ * as primitive int sets instead of lists of strings. Codes are never reused.
+ * Lookups are lock-free; only assigning a new code takes a lock.
+ */
+public final class IdDictionary {
+
+    /** Shared dictionaries for the two sides of the enrollment relation. */
+    public static final IdDictionary STUDENTS = new IdDictionary();
+    public static final IdDictionary COURSES = new IdDictionary();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private int size;
+
+    /** Returns the code for {@code id}, assigning the next free one on first use. */
+    public int intern(String id) {
+        Integer code = codes.get(id);
+        if (code != null) return code;
+        synchronized (this) {
+            code = codes.get(id);
+            if (code != null) return code;
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = id;
+            names = current;
+            code = size++;
+            // Publishing the code after the name makes the name visible to any reader holding it
+            codes.put(id, code);
+            return code;
+        }
+    }
+
+    /** Returns the code for {@code id}, or -1 if it has never been interned. */
+    public int code(String id) {
+        if (id == null) return -1;
+        Integer code = codes.get(id);
+        return code == null ? -1 : code;
+    }
+
+    public String name(int code) {
+        return names[code];
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * A read-only list of the IDs in {@code set}, resolved on access. Iteration
+     * works on a copy of the set, so it is safe while other threads modify it.
+     */
+    public List<String> view(IntSet set) {
+        return new AbstractList<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                int[] codes = set.toArray();
+                return new Iterator<String>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < codes.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= codes.length) throw new NoSuchElementException();
+                        return name(codes[next++]);
+                    }
+                };
+            }
+
+            @Override
+            public String get(int index) {
+                return name(set.get(index));
+            }
+
+            @Override
+            public int size() {
+                return set.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && set.contains(code((String) o));
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Outcome of a bulk import: how many rows were written and why the others were not. */
+public class ImportReport {
+
+    /** A row that was not imported. {@code row} is its zero-based position in the input. */
+    public static class Reject {
+        private final long row;
+        private final String key;
+        private final String reason;
+
+        public Reject(long row, String key, String reason) {
+            this.row = row;
+            this.key = key;
+            this.reason = reason;
+        }
+
+        public long getRow() { return row; }
+        public String getKey() { return key; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return "row " + row + " (" + key + "): " + reason;
+        }
+    }
+
+    private final String entity;
+    private long accepted;
+    private final List<Reject> rejects = new ArrayList<>();
+
+    public ImportReport(String entity) {
+        this.entity = entity;
+    }
+
+    void accept(int count) {
+        accepted += count;
+    }
+
+    void reject(long row, String key, String reason) {
+        rejects.add(new Reject(row, key, reason));
+    }
+
+    public String getEntity() { return entity; }
+    public long getAccepted() { return accepted; }
+    public List<Reject> getRejects() { return Collections.unmodifiableList(rejects); }
+
+    @Override
+    public String toString() {
+        return entity + ": " + accepted + " imported, " + rejects.size() + " rejected";
+    }
+}
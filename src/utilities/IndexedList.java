@@ -0,0 +1,205 @@
+package utilities;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A list that keeps a case-folded primary-key hash index in sync with its contents.
+ * Every structural change (add, remove, set, clear, iterator removal) goes through
+ * this class, so callers mutating the list directly cannot desync the index.
+ * Mutations are synchronized and ID lookups are lock-free, so concurrent
+ * writers cannot corrupt the list while other threads look entities up by ID.
+ *
+ * <p>Positional access ({@link #get}, {@link #size}, iteration) reads the
+ * backing list without locking and is only reliable on one thread, or while no
+ * one writes; concurrent readers should use {@link DataModel#snapshot()}.
+ */
+class IndexedList<T> extends AbstractList<T> {
+
+    // Volatile because absorb() swaps them for another list's
+    private volatile ArrayList<T> items;
+    private volatile Map<String, T> index;
+    // Elements whose key was already indexed when they were added; while there
+    // are none, removing an indexed element never has a duplicate to promote
+    private int duplicates;
+    private final Function<T, String> keyOf;
+    private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Told about every element entering or leaving the list, e.g. to maintain a secondary index. */
+    interface Listener<T> {
+        void added(T item);
+        void removed(T item);
+        void cleared();
+    }
+
+    IndexedList(Function<T, String> keyOf) {
+        this(keyOf, 16);
+    }
+
+    IndexedList(Function<T, String> keyOf, int initialCapacity) {
+        this.keyOf = keyOf;
+        this.items = new ArrayList<>(initialCapacity);
+        this.index = new ConcurrentHashMap<>(Math.max(16, (int) (initialCapacity / 0.75f) + 1));
+    }
+
+    /** Registers {@code listener} and replays the current contents to it as additions. */
+    synchronized void addListener(Listener<T> listener) {
+        listeners.add(listener);
+        for (T item : items) {
+            listener.added(item);
+        }
+    }
+
+    /** Canonical form of a primary key: IDs are matched case-insensitively. */
+    static String canonical(String id) {
+        return id == null ? null : id.toLowerCase(Locale.ROOT);
+    }
+
+    /** O(1) lookup by primary key; returns null when absent. */
+    T lookup(String id) {
+        if (id == null) return null;
+        return index.get(canonical(id));
+    }
+
+    boolean containsKey(String id) {
+        return lookup(id) != null;
+    }
+
+    synchronized void ensureCapacity(int capacity) {
+        items.ensureCapacity(capacity);
+    }
+
+    @Override
+    public T get(int i) {
+        return items.get(i);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        T found = lookupFor(o);
+        if (found == null) return false;
+        // Only fall back to a scan when the key is shared by a different instance
+        return found.equals(o) || items.contains(o);
+    }
+
+    @Override
+    public synchronized void add(int i, T element) {
+        items.add(i, element);
+        modCount++;
+        indexAdded(element);
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> c) {
+        items.ensureCapacity(items.size() + c.size());
+        return super.addAll(c);
+    }
+
+    @Override
+    public synchronized T set(int i, T element) {
+        T old = items.set(i, element);
+        indexRemoved(old);
+        indexAdded(element);
+        return old;
+    }
+
+    @Override
+    public synchronized T remove(int i) {
+        T old = items.remove(i);
+        modCount++;
+        indexRemoved(old);
+        return old;
+    }
+
+    @Override
+    public synchronized void clear() {
+        items.clear();
+        index.clear();
+        duplicates = 0;
+        modCount++;
+        for (Listener<T> l : listeners) l.cleared();
+    }
+
+    private void indexAdded(T element) {
+        if (element == null) return;
+        for (Listener<T> l : listeners) l.added(element);
+        String key = canonical(keyOf.apply(element));
+        if (key != null) {
+            // Keep the first entry for a key, matching the old findFirst() semantics
+            if (index.putIfAbsent(key, element) != null) duplicates++;
+        }
+    }
+
+    private void indexRemoved(T element) {
+        if (element == null) return;
+        for (Listener<T> l : listeners) l.removed(element);
+        String key = canonical(keyOf.apply(element));
+        if (key == null) return;
+        if (index.get(key) != element) {
+            duplicates--; // it was shadowed by the indexed element
+            return;
+        }
+        index.remove(key);
+        if (duplicates == 0) return;
+        // A duplicate key may still be in the list; promote the earliest one
+        for (T other : items) {
+            if (key.equals(canonical(keyOf.apply(other)))) {
+                index.put(key, other);
+                duplicates--;
+                break;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T lookupFor(Object o) {
+        if (o == null) return null;
+        try {
+            return lookup(keyOf.apply((T) o));
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves the contents of {@code other} to the end of this list. When this list
+     * is empty the backing storage and index are taken over without rehashing.
+     */
+    synchronized void absorb(IndexedList<T> other) {
+        if (items.isEmpty()) {
+            ArrayList<T> emptyItems = items;
+            Map<String, T> emptyIndex = index;
+            items = other.items;
+            index = other.index;
+            duplicates = other.duplicates;
+            other.items = emptyItems;
+            other.index = emptyIndex;
+            other.duplicates = 0;
+            modCount++;
+            for (Listener<T> l : listeners) {
+                for (T item : items) l.added(item);
+            }
+        } else {
+            addAll(other.items);
+            other.clear();
+        }
+    }
+
+    /** Replaces the contents with {@code source}, rebuilding the index. */
+    void replaceWith(List<T> source) {
+        clear();
+        if (source != null) addAll(source);
+    }
+}
@@ -0,0 +1,156 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * Insertion-ordered set of non-negative ints. Small sets are scanned linearly;
+ * larger ones add an open-addressing hash table, so membership is O(1) while a
+ * handful of entries still costs only a few bytes each. Removal moves the last
+ * member into the freed position. All operations are synchronized on the set.
+ */
+public final class IntSet {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int LINEAR_LIMIT = 8;
+
+    private int[] members = EMPTY;
+    private int size;
+    // Slots hold (position in members + 1); 0 marks an empty slot
+    private int[] table;
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return members[index];
+    }
+
+    public synchronized boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /** Adds {@code value}; returns false if it was already present. */
+    public synchronized boolean add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        if (indexOf(value) >= 0) return false;
+        if (size == members.length) {
+            members = Arrays.copyOf(members, Math.max(4, size * 2));
+        }
+        members[size] = value;
+        size++;
+        if (table != null) {
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            } else {
+                insertSlot(value, size - 1);
+            }
+        } else if (size > LINEAR_LIMIT) {
+            rehash(Integer.highestOneBit(size * 4));
+        }
+        return true;
+    }
+
+    /** Removes {@code value}; returns false if it was not present. */
+    public synchronized boolean remove(int value) {
+        int pos = indexOf(value);
+        if (pos < 0) return false;
+        int last = size - 1;
+        if (table != null) {
+            deleteSlot(value);
+            if (pos != last) {
+                table[slotOf(members[last])] = pos + 1;
+            }
+        }
+        members[pos] = members[last];
+        size--;
+        return true;
+    }
+
+    /** Makes room for {@code capacity} members, so adding up to that many never grows the set. */
+    public synchronized void ensureCapacity(int capacity) {
+        if (capacity > members.length) {
+            members = Arrays.copyOf(members, capacity);
+        }
+        if (capacity > LINEAR_LIMIT) {
+            int tableSize = Integer.highestOneBit(capacity * 4);
+            if (table == null || table.length < tableSize) rehash(tableSize);
+        }
+    }
+
+    public synchronized void clear() {
+        members = EMPTY;
+        size = 0;
+        table = null;
+    }
+
+    public synchronized int[] toArray() {
+        return Arrays.copyOf(members, size);
+    }
+
+    private int indexOf(int value) {
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                if (members[i] == value) return i;
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(value) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) return -1;
+            if (members[entry - 1] == value) return entry - 1;
+        }
+    }
+
+    private int slotOf(int value) {
+        int mask = table.length - 1;
+        for (int slot = hash(value) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry != 0 && members[entry - 1] == value) return slot;
+        }
+    }
+
+    private void insertSlot(int value, int pos) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = pos + 1;
+    }
+
+    /** Linear-probing delete with backward shift, so no tombstones are needed. */
+    private void deleteSlot(int value) {
+        int mask = table.length - 1;
+        int hole = slotOf(value);
+        table[hole] = 0;
+        for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hash(members[table[slot] - 1]) & mask;
+            // Move the entry back if the hole lies between its home slot and where it sits
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                table[hole] = table[slot];
+                table[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insertSlot(members[i], i);
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,161 @@
+package utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the active log segment through one long-lived {@link FileChannel} and
+ * makes it durable according to a {@link SyncPolicy}. With {@code ALWAYS},
+ * concurrent writers share fsyncs (group commit): one {@code force()} covers
+ * every byte written before it started, so writers that were waiting for it
+ * return without forcing again.
+ */
+class Journal implements AutoCloseable {
+
+    /** When appended bytes are forced to disk. */
+    enum SyncPolicy {
+        /** Before {@link #commit} returns; concurrent commits share one force. */
+        ALWAYS,
+        /** By a background thread every {@code ums.log.fsyncIntervalMs}; a crash can lose that window. */
+        INTERVAL,
+        /** Left to the operating system; segments are still forced when they are sealed or closed. */
+        NEVER
+    }
+
+    private final SyncPolicy policy;
+    private FileChannel channel;
+    private long written; // bytes appended since the journal was opened, across segments
+    private boolean closed;
+
+    private final Object syncLock = new Object();
+    private final AtomicLong synced = new AtomicLong();
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final ScheduledExecutorService syncer;
+
+    Journal(Path file, SyncPolicy policy, long intervalMillis) throws IOException {
+        this.policy = policy;
+        this.channel = openChannel(file);
+        if (policy == SyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ums-log-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /** Reads {@code ums.log.fsync}: always, interval or never. */
+    static SyncPolicy policyFromProperties() {
+        String value = System.getProperty("ums.log.fsync", "always");
+        try {
+            return SyncPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown log fsync policy: " + value);
+        }
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    /** Writes {@code bytes} at the end of the segment. Returns a ticket to pass to {@link #commit}. */
+    synchronized long write(ByteBuffer bytes) throws IOException {
+        if (closed) throw new ClosedChannelException();
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes);
+        }
+        appends.incrementAndGet();
+        return written;
+    }
+
+    /** Returns once the write behind {@code ticket} is as durable as the policy promises. */
+    void commit(long ticket) throws IOException {
+        if (policy == SyncPolicy.ALWAYS) {
+            sync(ticket);
+        }
+    }
+
+    /** Forces everything written so far. */
+    void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = written;
+        }
+        sync(target);
+    }
+
+    private void sync(long upTo) throws IOException {
+        // One thread forces at a time; the ones queued behind it usually find their bytes already covered
+        synchronized (syncLock) {
+            while (synced.get() < upTo) {
+                FileChannel ch;
+                long target;
+                synchronized (this) {
+                    if (closed) throw new ClosedChannelException();
+                    ch = channel;
+                    target = written;
+                }
+                try {
+                    ch.force(false);
+                } catch (ClosedChannelException e) {
+                    continue; // the segment was sealed, which forced it; go again on the new one
+                }
+                syncs.incrementAndGet();
+                synced.accumulateAndGet(target, Math::max);
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("[DB Error] Log fsync failed: " + e.getMessage());
+        }
+    }
+
+    /** Seals the current segment, forcing it to disk, and continues in {@code next}. */
+    synchronized void switchTo(Path next) throws IOException {
+        FileChannel sealed = channel;
+        channel = openChannel(next);
+        sealed.force(false);
+        sealed.close();
+        synced.accumulateAndGet(written, Math::max);
+    }
+
+    long getAppendCount() { return appends.get(); }
+    long getSyncCount() { return syncs.get(); }
+    SyncPolicy getPolicy() { return policy; }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("[DB Error] Failed to close the log: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package utilities;
+
+import people.Student;
+import people.Teacher;
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A model that reads entities from an {@link EntityStore} the first time they
+ * are looked up instead of loading everything at startup, and keeps only the
+ * recently used ones in a bounded {@link EntityCache}. Enrollment edges come
+ * with the entity that owns them.
+ *
+ * <p>The lists from {@link #getStudents()} and friends hold the resident
+ * entities only; queries, counts, statistics and paging go to the store. The
+ * store must be written through on every change (SQL mode without
+ * write-behind), since an evicted entity is read back from it. No versions are
+ * published: the model never holds all of the data.
+ */
+public class LazyDataModel implements UniversityModel {
+
+    public static class Config {
+        // Total cache weight: each entity counts one, plus one per enrollment it holds
+        public long maxWeight = Long.getLong("ums.cache.maxWeight", 1_000_000L);
+    }
+
+    private static final int STUDENT = 0;
+    private static final int TEACHER = 1;
+    private static final int COURSE = 2;
+
+    private static final ToIntFunction<Student> STUDENT_WEIGHT = s -> 1 + s.getEnrolledCourseIds().size();
+    private static final ToIntFunction<Teacher> TEACHER_WEIGHT = t -> 1;
+    private static final ToIntFunction<Course> COURSE_WEIGHT = c -> 1 + c.getEnrolledStudentIds().size();
+
+    private final EntityStore store;
+    private final EntityCache cache;
+    private final ResidentList<Student> students = new ResidentList<>(STUDENT, Student::getId, STUDENT_WEIGHT);
+    private final ResidentList<Teacher> teachers = new ResidentList<>(TEACHER, Teacher::getId, TEACHER_WEIGHT);
+    private final ResidentList<Course> courses = new ResidentList<>(COURSE, Course::getCourseId, COURSE_WEIGHT);
+
+    public LazyDataModel(EntityStore store, Config config) {
+        if (store == null) {
+            throw new IllegalArgumentException("EntityStore cannot be null");
+        }
+        this.store = store;
+        this.cache = new EntityCache(config.maxWeight);
+    }
+
+    @Override public List<Student> getStudents() { return students; }
+    @Override public List<Teacher> getTeachers() { return teachers; }
+    @Override public List<Course> getCourses() { return courses; }
+
+    @Override public void setStudents(List<Student> list) { students.clear(); students.addAll(list); }
+    @Override public void setTeachers(List<Teacher> list) { teachers.clear(); teachers.addAll(list); }
+    @Override public void setCourses(List<Course> list) { courses.clear(); courses.addAll(list); }
+
+    @Override
+    public boolean readsThrough() {
+        return true;
+    }
+
+    @Override
+    public Optional<ModelVersion> currentVersion() {
+        return Optional.empty();
+    }
+
+    /** Computed by the store on each call, since no version keeps them up to date here. */
+    @Override
+    public ModelStatistics statistics() {
+        return store.computeStatistics();
+    }
+
+    @Override
+    public Optional<Student> findStudent(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.get(STUDENT, id, () -> store.fetchStudent(id), STUDENT_WEIGHT));
+    }
+
+    @Override
+    public Optional<Teacher> findTeacher(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.get(TEACHER, id, () -> store.fetchTeacher(id), TEACHER_WEIGHT));
+    }
+
+    @Override
+    public Optional<Course> findCourse(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.get(COURSE, id, () -> store.fetchCourse(id), COURSE_WEIGHT));
+    }
+
+    // Held entities are never evicted, so a change in flight is never split
+    // between its copy and one re-read from the store. lockCourse() also takes
+    // the course's lock until it is released, so enrollments in one course run
+    // one at a time.
+
+    @Override
+    public Optional<Student> holdStudent(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.acquire(STUDENT, id, () -> store.fetchStudent(id), STUDENT_WEIGHT, false));
+    }
+
+    @Override
+    public Optional<Course> holdCourse(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.acquire(COURSE, id, () -> store.fetchCourse(id), COURSE_WEIGHT, false));
+    }
+
+    @Override
+    public Optional<Course> lockCourse(String id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(cache.acquire(COURSE, id, () -> store.fetchCourse(id), COURSE_WEIGHT, true));
+    }
+
+    @Override
+    public void releaseStudent(Student student) {
+        cache.release(STUDENT, student.getId());
+    }
+
+    @Override
+    public void releaseCourse(Course course) {
+        cache.release(COURSE, course.getCourseId());
+    }
+
+    // --- Store Queries ---
+    // IDs come from the store and are resolved through the cache, so each entity
+    // still has one object. Results are in ID order rather than insertion order.
+
+    @Override
+    public List<Course> findCoursesByDepartment(Department dept) {
+        if (dept == null) return Collections.emptyList();
+        return resolve(store.findCourseIds(dept, null, null, Integer.MAX_VALUE), this::findCourse);
+    }
+
+    @Override
+    public List<Course> findCoursesByTeacher(String teacherId) {
+        if (teacherId == null) return Collections.emptyList();
+        return resolve(store.findCourseIds(null, teacherId, null, Integer.MAX_VALUE), this::findCourse);
+    }
+
+    @Override
+    public List<Teacher> findTeachersByDepartment(Department dept) {
+        if (dept == null) return Collections.emptyList();
+        return resolve(store.findTeacherIds(dept, null, Integer.MAX_VALUE), this::findTeacher);
+    }
+
+    @Override
+    public List<Student> findStudentsByMajor(String major) {
+        if (major == null) return Collections.emptyList();
+        return resolve(store.findStudentIds(major, null, Integer.MAX_VALUE), this::findStudent);
+    }
+
+    // A name index has to see every entity, and this model only holds some, so
+    // names are matched by the store instead: word prefixes only, in ID order,
+    // with no typo matching or ranking
+
+    @Override
+    public List<Student> searchStudents(String query, int limit) {
+        return resolve(store.findStudentIdsByName(query, limit), this::findStudent);
+    }
+
+    @Override
+    public List<Teacher> searchTeachers(String query, int limit) {
+        return resolve(store.findTeacherIdsByName(query, limit), this::findTeacher);
+    }
+
+    @Override
+    public List<Course> searchCourses(String query, int limit) {
+        return resolve(store.findCourseIdsByName(query, limit), this::findCourse);
+    }
+
+    @Override
+    public Map<Department, Integer> countCoursesByDepartment() {
+        return store.countCoursesByDepartment();
+    }
+
+    @Override
+    public Map<Department, Integer> countTeachersByDepartment() {
+        return store.countTeachersByDepartment();
+    }
+
+    @Override
+    public long countStudents() {
+        return store.countStudents();
+    }
+
+    // --- Changes ---
+    // Entities are written through and nothing is indexed or versioned here, so
+    // only the objects change.
+
+    @Override
+    public void assignTeacher(Course course, String teacherId) {
+        course.assignTeacher(teacherId);
+    }
+
+    @Override
+    public void updateMajor(Student student, String major) {
+        student.setMajor(major);
+    }
+
+    @Override
+    public void enrollmentsAdded(Collection<Enrollment> enrollments) { }
+
+    @Override
+    public void enrollmentsRemoved(Collection<Enrollment> enrollments) { }
+
+    // --- Keyset Paging ---
+    // The cursor is the last ID of the previous page (null for the first page),
+    // so a page costs the same however deep it is. Pages are in ID order.
+
+    @Override
+    public Page<Student> pageStudents(String major, String afterId, int pageSize) {
+        return page(store.findStudentIds(major, afterId, pageSize + 1), pageSize, this::findStudent);
+    }
+
+    @Override
+    public Page<Teacher> pageTeachers(Department dept, String afterId, int pageSize) {
+        return page(store.findTeacherIds(dept, afterId, pageSize + 1), pageSize, this::findTeacher);
+    }
+
+    @Override
+    public Page<Course> pageCourses(Department dept, String teacherId, String afterId, int pageSize) {
+        return page(store.findCourseIds(dept, teacherId, afterId, pageSize + 1), pageSize, this::findCourse);
+    }
+
+    private static <T> Page<T> page(List<String> ids, int pageSize, Function<String, Optional<T>> find) {
+        boolean more = ids.size() > pageSize;
+        List<T> items = resolve(more ? ids.subList(0, pageSize) : ids, find);
+        return new Page<>(items, more ? ids.get(pageSize - 1) : null);
+    }
+
+    // An ID whose row was deleted since the query is skipped
+    private static <T> List<T> resolve(List<String> ids, Function<String, Optional<T>> find) {
+        List<T> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            find.apply(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    // --- Cache Statistics ---
+
+    public long getCacheHits() { return cache.getHits(); }
+    public long getCacheMisses() { return cache.getMisses(); }
+    public double getCacheHitRate() { return cache.getHitRate(); }
+    public long getCacheEvictions() { return cache.getEvictions(); }
+    public long getCacheWeight() { return cache.getWeight(); }
+    public long getCacheMaxWeight() { return cache.getMaxWeight(); }
+
+    /**
+     * The resident entities of one type, as a list. Adding makes an entity
+     * resident, removing drops it; neither touches the store. Reads work on a
+     * snapshot, so iteration is safe while the cache changes.
+     */
+    private final class ResidentList<T> extends AbstractList<T> {
+        private final int type;
+        private final Function<T, String> idOf;
+        private final ToIntFunction<T> weigher;
+
+        ResidentList(int type, Function<T, String> idOf, ToIntFunction<T> weigher) {
+            this.type = type;
+            this.idOf = idOf;
+            this.weigher = weigher;
+        }
+
+        private List<T> snapshot() {
+            return cache.values(type);
+        }
+
+        @Override public T get(int index) { return snapshot().get(index); }
+        @Override public int size() { return cache.size(type); }
+        @Override public Iterator<T> iterator() { return Collections.unmodifiableList(snapshot()).iterator(); }
+
+        @Override
+        public boolean add(T item) {
+            cache.put(type, idOf.apply(item), item, weigher);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (o == null) return false;
+            try {
+                return cache.invalidate(type, idOf.apply((T) o), o);
+            } catch (ClassCastException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void clear() {
+            cache.invalidateAll(type);
+        }
+    }
+}
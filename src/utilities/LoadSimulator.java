@@ -0,0 +1,481 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import people.Student;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Replays registration-day traffic against a {@link UniversityService} populated
+ * by {@link DatasetGenerator}. Worker threads mix single enrollments into popular
+ * courses, whole-timetable batch enrollments and browsing, then the run reports
+ * throughput, latency percentiles and how many requests hit a full course.
+ * Meanwhile an auditor thread checks model snapshots for the same invariants the
+ * model is checked for afterwards: no overbooked courses and no enrollments that
+ * only one side knows about. Persisted runs are also reloaded and compared.
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=utilities.LoadSimulator \
+ *     -Dexec.args="--mode both --students 20000 --threads 16 --requests 200000"
+ * </pre>
+ */
+public class LoadSimulator {
+
+    /** Traffic shape; defaults can be overridden with {@code -Dums.load.*} system properties. */
+    public static class Config {
+        public int threads = Integer.getInteger("ums.load.threads", Runtime.getRuntime().availableProcessors());
+        public int requests = Integer.getInteger("ums.load.requests", 100_000);
+        public long seed = Long.getLong("ums.load.seed", 7L);
+        // Share of requests that enroll a whole timetable, and that only browse; the rest enroll in one course
+        public double timetableShare = Double.parseDouble(System.getProperty("ums.load.timetableShare", "0.2"));
+        public double browseShare = Double.parseDouble(System.getProperty("ums.load.browseShare", "0.1"));
+        // Pause between snapshot audits during the run
+        public long auditIntervalMs = Long.getLong("ums.load.auditIntervalMs", 10L);
+    }
+
+    /** Outcome of one run. Latencies are in nanoseconds. */
+    public static class Report {
+        public final String label;
+        public final LatencyHistogram enroll = new LatencyHistogram();
+        public final LatencyHistogram timetable = new LatencyHistogram();
+        public final LatencyHistogram browse = new LatencyHistogram();
+        final LongAdder enrolled = new LongAdder();
+        final LongAdder rejectedFull = new LongAdder();
+        final LongAdder rejectedDuplicate = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        long elapsedNanos;
+        long snapshotAudits;
+        final List<String> violations = new ArrayList<>();
+
+        Report(String label) {
+            this.label = label;
+        }
+
+        public long getRequests() { return enroll.getCount() + timetable.getCount() + browse.getCount(); }
+        public long getEnrolled() { return enrolled.sum(); }
+        public long getRejectedFull() { return rejectedFull.sum(); }
+        public long getRejectedDuplicate() { return rejectedDuplicate.sum(); }
+        public long getFailed() { return failed.sum(); }
+        public long getSnapshotAudits() { return snapshotAudits; }
+        public double getThroughput() { return getRequests() * 1e9 / Math.max(1, elapsedNanos); }
+        public List<String> getViolations() { return violations; }
+
+        public void print(PrintStream out) {
+            out.printf(Locale.ROOT, "=== %s: %,d requests in %.2f s (%,.0f req/s) ===%n",
+                    label, getRequests(), elapsedNanos / 1e9, getThroughput());
+            out.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s%n", "request", "count", "p50 us", "p99 us", "p99.9 us", "max us");
+            printRow(out, "enroll", enroll);
+            printRow(out, "timetable", timetable);
+            printRow(out, "browse", browse);
+            out.printf(Locale.ROOT, "Enrollments: %,d applied, %,d rejected (course full), %,d duplicates, %,d other failures%n",
+                    getEnrolled(), getRejectedFull(), getRejectedDuplicate(), getFailed());
+            out.printf(Locale.ROOT, "Snapshots audited during the run: %,d%n", snapshotAudits);
+            if (violations.isEmpty()) {
+                out.println("Invariants: OK");
+            } else {
+                out.println("Invariants: " + violations.size() + " violation(s)");
+                violations.stream().limit(20).forEach(v -> out.println("  " + v));
+            }
+        }
+
+        private static void printRow(PrintStream out, String name, LatencyHistogram h) {
+            out.printf(Locale.ROOT, "%-10s %,10d %10.1f %10.1f %10.1f %10.1f%n", name, h.getCount(),
+                    h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                    h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3);
+        }
+    }
+
+    private final UniversityService service;
+    private final DataModel model;
+    private final DatasetGenerator generator;
+    private final Config config;
+
+    public LoadSimulator(UniversityService service, DataModel model, DatasetGenerator generator, Config config) {
+        if (config.threads < 1 || config.requests < 0) {
+            throw new IllegalArgumentException("Threads must be at least 1 and requests cannot be negative");
+        }
+        this.service = service;
+        this.model = model;
+        this.generator = generator;
+        this.config = config;
+    }
+
+    /** Runs the traffic against an already populated service and checks the model afterwards. */
+    public Report run(String label) {
+        Report report = new Report(label);
+        AtomicInteger remaining = new AtomicInteger(config.requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < config.threads; t++) {
+            // Each worker has its own stream, so a run is repeatable up to thread interleaving
+            Random random = new Random(config.seed * 31 + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (remaining.getAndDecrement() > 0) {
+                    request(random, report);
+                }
+            }, "ums-load-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        // Analytics stand-in: audits consistent snapshots, lock-free, while the writers run
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<String> audit = new ArrayList<>();
+        Thread auditor = new Thread(() -> {
+            while (running.get() && audit.isEmpty()) {
+                ModelVersion version = model.snapshot();
+                for (String v : checkInvariants(version)) {
+                    audit.add("Snapshot " + version.getVersion() + ": " + v);
+                }
+                report.snapshotAudits++;
+                try {
+                    Thread.sleep(config.auditIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "ums-load-audit");
+        auditor.start();
+
+        // Every enrollment prints a line; keep the console and its lock out of the measurement
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        long begin = System.nanoTime();
+        try {
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            service.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            report.elapsedNanos = System.nanoTime() - begin;
+            System.setOut(out);
+            System.setErr(err);
+        }
+        running.set(false);
+        try {
+            auditor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report.violations.addAll(audit);
+        report.violations.addAll(checkInvariants(model));
+        // Once the writers are done, the latest version must agree with the live model
+        ModelVersion last = model.snapshot();
+        report.violations.addAll(checkInvariants(last));
+        if (countEnrollments(last) != countEnrollments(model)) {
+            report.violations.add("The last snapshot has " + countEnrollments(last) + " enrollments, the model "
+                    + countEnrollments(model));
+        }
+        return report;
+    }
+
+    private void request(Random random, Report report) {
+        DatasetGenerator.Config shape = generator.getConfig();
+        String studentId = DatasetGenerator.studentId(random.nextInt(shape.students));
+        double kind = random.nextDouble();
+        long begin = System.nanoTime();
+        try {
+            if (kind < config.browseShare) {
+                Department dept = Department.values()[random.nextInt(Department.values().length)];
+                service.findCourses(dept, null, null, 20);
+                report.browse.record(System.nanoTime() - begin);
+            } else if (kind < config.browseShare + config.timetableShare) {
+                List<String> courseIds = new ArrayList<>();
+                int wanted = Math.min(3 + random.nextInt(4), shape.courses);
+                while (courseIds.size() < wanted) {
+                    String courseId = DatasetGenerator.courseId(generator.nextCourse(random));
+                    if (!courseIds.contains(courseId)) courseIds.add(courseId);
+                }
+                EnrollmentBatchResult result = service.enrollMany(studentId, courseIds, UniversityService.BatchMode.BEST_EFFORT);
+                report.timetable.record(System.nanoTime() - begin);
+                for (EnrollmentBatchResult.Item item : result.getItems()) {
+                    tally(report, item.isEnrolled(), item.getReason());
+                }
+            } else {
+                String courseId = DatasetGenerator.courseId(generator.nextCourse(random));
+                boolean ok = service.enrollStudent(studentId, courseId);
+                report.enroll.record(System.nanoTime() - begin);
+                tally(report, ok, ok ? null : rejectionReason(studentId, courseId));
+            }
+        } catch (RuntimeException e) {
+            report.failed.increment();
+        }
+    }
+
+    private static void tally(Report report, boolean enrolled, String reason) {
+        if (enrolled) {
+            report.enrolled.increment();
+        } else if (UniversityService.COURSE_FULL.equals(reason)) {
+            report.rejectedFull.increment();
+        } else if (reason != null && reason.contains("already enrolled")) {
+            report.rejectedDuplicate.increment();
+        } else {
+            report.failed.increment();
+        }
+    }
+
+    // enrollStudent only reports false; seats are never released during a run, so the state tells why
+    private String rejectionReason(String studentId, String courseId) {
+        Optional<Student> student = model.findStudent(studentId);
+        Optional<Course> course = model.findCourse(courseId);
+        if (student.isPresent() && student.get().isEnrolledIn(courseId)) return "already enrolled";
+        if (course.isPresent() && course.get().getSeatsTaken() >= UniversityService.MAX_COURSE_CAPACITY) {
+            return UniversityService.COURSE_FULL;
+        }
+        return null;
+    }
+
+    /**
+     * Cross-checks both sides of every enrollment: no course is over capacity,
+     * each course's seat count matches its roster, and every enrollment is known
+     * to both the student and the course. Returns one message per violation.
+     */
+    public static List<String> checkInvariants(DataModel model) {
+        List<String> violations = new ArrayList<>();
+        for (Course c : model.getCourses()) {
+            int seats = c.getSeatsTaken();
+            List<String> roster = c.getEnrolledStudentIds();
+            if (seats > UniversityService.MAX_COURSE_CAPACITY) {
+                violations.add("Course " + c.getCourseId() + " is overbooked: " + seats + " seats taken");
+            }
+            if (seats != roster.size()) {
+                violations.add("Course " + c.getCourseId() + " has " + seats + " seats taken but "
+                        + roster.size() + " students enrolled");
+            }
+            for (String sid : roster) {
+                Optional<Student> s = model.findStudent(sid);
+                if (s.isEmpty() || !s.get().isEnrolledIn(c.getCourseId())) {
+                    violations.add("Course " + c.getCourseId() + " lists " + sid + ", who is not enrolled in it");
+                }
+            }
+        }
+        for (Student s : model.getStudents()) {
+            for (String cid : s.getEnrolledCourseIds()) {
+                Optional<Course> c = model.findCourse(cid);
+                if (c.isEmpty() || !c.get().hasStudent(s.getId())) {
+                    violations.add("Student " + s.getId() + " is enrolled in " + cid + ", which does not list them");
+                }
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * The same checks on a snapshot, which needs no locks however busy the model
+     * is, plus a recount of the snapshot's incrementally maintained statistics.
+     */
+    public static List<String> checkInvariants(ModelVersion version) {
+        List<String> violations = new ArrayList<>();
+        ModelStatistics stats = version.getStatistics();
+        long[] seats = new long[Department.values().length];
+        int[] sizes = new int[UniversityService.MAX_COURSE_CAPACITY + 1];
+        long enrollments = 0;
+        for (ModelVersion.CourseState c : version.getCourses()) {
+            List<String> roster = c.getEnrolledStudentIds();
+            seats[c.getDepartment().ordinal()] += roster.size();
+            sizes[Math.min(roster.size(), UniversityService.MAX_COURSE_CAPACITY)]++;
+            enrollments += roster.size();
+            if (roster.size() > UniversityService.MAX_COURSE_CAPACITY) {
+                violations.add("Course " + c.getCourseId() + " is overbooked: " + roster.size() + " students enrolled");
+            }
+            for (String sid : roster) {
+                Optional<ModelVersion.StudentState> s = version.findStudent(sid);
+                if (s.isEmpty() || !s.get().getEnrolledCourseIds().contains(c.getCourseId())) {
+                    violations.add("Course " + c.getCourseId() + " lists " + sid + ", who is not enrolled in it");
+                }
+            }
+        }
+        for (ModelVersion.StudentState s : version.getStudents()) {
+            for (String cid : s.getEnrolledCourseIds()) {
+                Optional<ModelVersion.CourseState> c = version.findCourse(cid);
+                if (c.isEmpty() || !c.get().getEnrolledStudentIds().contains(s.getId())) {
+                    violations.add("Student " + s.getId() + " is enrolled in " + cid + ", which does not list them");
+                }
+            }
+        }
+        if (stats.getEnrollmentCount() != enrollments || stats.getCourseCount() != version.getCourses().size()
+                || stats.getStudentCount() != version.getStudents().size()) {
+            violations.add("Statistics count " + stats.getEnrollmentCount() + " enrollments, " + stats.getCourseCount()
+                    + " courses and " + stats.getStudentCount() + " students; the snapshot has " + enrollments + ", "
+                    + version.getCourses().size() + " and " + version.getStudents().size());
+        }
+        for (Department d : Department.values()) {
+            if (stats.getEnrolledSeats(d) != seats[d.ordinal()]) {
+                violations.add("Statistics count " + stats.getEnrolledSeats(d) + " seats in " + d + ", the snapshot "
+                        + seats[d.ordinal()]);
+            }
+        }
+        if (!Arrays.equals(stats.getRosterSizeDistribution(), sizes)) {
+            violations.add("Statistics roster-size distribution disagrees with the snapshot");
+        }
+        return violations;
+    }
+
+    static long countEnrollments(ModelVersion version) {
+        long n = 0;
+        for (ModelVersion.StudentState s : version.getStudents()) {
+            n += s.getEnrolledCourseIds().size();
+        }
+        return n;
+    }
+
+    static long countEnrollments(DataModel model) {
+        long n = 0;
+        for (Student s : model.getStudents()) {
+            n += s.getEnrolledCourseIds().size();
+        }
+        return n;
+    }
+
+    // --- Command line ---
+
+    public static void main(String[] args) {
+        DatasetGenerator.Config shape = new DatasetGenerator.Config();
+        Config config = new Config();
+        String mode = "both";
+        String shards = null;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--mode": mode = value; i++; break;
+                case "--students": shape.students = Integer.parseInt(value); i++; break;
+                case "--teachers": shape.teachers = Integer.parseInt(value); i++; break;
+                case "--courses": shape.courses = Integer.parseInt(value); i++; break;
+                case "--skew": shape.popularitySkew = Double.parseDouble(value); i++; break;
+                case "--seed": shape.seed = Long.parseLong(value); config.seed = shape.seed; i++; break;
+                case "--threads": config.threads = Integer.parseInt(value); i++; break;
+                case "--requests": config.requests = Integer.parseInt(value); i++; break;
+                case "--shards": shards = value; i++; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println("Usage: LoadSimulator [--mode sql|file|none|both] [--students N] [--teachers N]"
+                            + " [--courses N] [--skew S] [--seed N] [--threads N] [--requests N]"
+                            + " [--shards department|hash:N]");
+                    System.exit(2);
+            }
+        }
+
+        List<DatabaseService.PersistenceMode> modes = new ArrayList<>();
+        if ("both".equalsIgnoreCase(mode)) {
+            modes.add(DatabaseService.PersistenceMode.SQL);
+            modes.add(DatabaseService.PersistenceMode.FILE);
+        } else {
+            modes.add(DatabaseService.PersistenceMode.valueOf(mode.toUpperCase(Locale.ROOT)));
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(shape);
+        ShardedDatabaseService.Config sharding = shards == null ? null : ShardedDatabaseService.Config.parse(shards);
+        boolean clean = true;
+        for (DatabaseService.PersistenceMode m : modes) {
+            clean &= simulate(m, sharding, generator, config);
+        }
+        System.exit(clean ? 0 : 1);
+    }
+
+    /** {@code sharding} is null for a single database. */
+    private static boolean simulate(DatabaseService.PersistenceMode mode, ShardedDatabaseService.Config sharding,
+                                    DatasetGenerator generator, Config config) {
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("ums-load-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Path dbFile = dir.resolve("ums.db");
+        Path dataDir = dir.resolve("data");
+        try {
+            DataModel model = new DataModel();
+            UniversityService service = new UniversityService(model, open(dbFile, dataDir, mode, sharding));
+            DatasetGenerator.Config shape = generator.getConfig();
+            System.out.printf(Locale.ROOT, "[Load] %s: generating %,d students, %,d teachers, %,d courses (seed %d)%n",
+                    mode, shape.students, shape.teachers, shape.courses, shape.seed);
+            long begin = System.nanoTime();
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                generator.populate(service);
+            } finally {
+                System.setOut(out);
+            }
+            System.out.printf(Locale.ROOT, "[Load] %s: populated %,d enrollments in %d ms; %d threads, %,d requests%n",
+                    mode, countEnrollments(model), (System.nanoTime() - begin) / 1_000_000, config.threads, config.requests);
+
+            Report report = new LoadSimulator(service, model, generator, config).run(mode.name());
+            long expected = countEnrollments(model);
+            service.shutdown();
+
+            if (mode != DatabaseService.PersistenceMode.NONE) {
+                // What was acknowledged in memory must also be what comes back from storage
+                DataModel reloaded = new DataModel();
+                DatabaseService db = open(dbFile, dataDir, mode, sharding);
+                PrintStream quiet = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    db.initDatabase();
+                    db.loadData(reloaded);
+                } finally {
+                    db.close();
+                    System.setOut(quiet);
+                }
+                long stored = countEnrollments(reloaded);
+                if (stored != expected) {
+                    report.violations.add("Storage has " + stored + " enrollments, the model had " + expected);
+                }
+                report.violations.addAll(checkInvariants(reloaded));
+                report.violations.addAll(checkInvariants(reloaded.snapshot()));
+                if (countEnrollments(reloaded.snapshot()) != stored) {
+                    report.violations.add("The reloaded snapshot disagrees with the reloaded model");
+                }
+            }
+            report.print(System.out);
+            return report.getViolations().isEmpty();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static DatabaseService open(Path dbFile, Path dataDir, DatabaseService.PersistenceMode mode,
+                                        ShardedDatabaseService.Config sharding) {
+        return sharding == null
+                ? new DatabaseService(dbFile, dataDir, mode)
+                : new ShardedDatabaseService(dbFile, dataDir, mode, sharding);
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("[DB Warning] Could not remove " + dir + ": " + e.getMessage());
+        }
+    }
+}
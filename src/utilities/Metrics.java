@@ -0,0 +1,220 @@
+package utilities;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of per-operation latency histograms and status gauges.
+ * Each operation is published over JMX as {@code ums:type=Operation,name=<op>}
+ * and the gauges as attributes of {@code ums:type=Status}. Set
+ * {@code -Dums.metrics.jmx=false} to keep them off the platform MBean server.
+ */
+public final class Metrics {
+
+    /** JMX view of one operation; latencies are in microseconds. */
+    public interface OperationMBean {
+        long getCount();
+        long getErrors();
+        double getErrorRate();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+        void reset();
+    }
+
+    /** Latency and outcome counters for one named operation. */
+    public static final class Operation implements OperationMBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        /** Times {@code work}; a thrown exception counts as an error. */
+        public void run(Runnable work) {
+            long start = System.nanoTime();
+            try {
+                work.run();
+            } catch (RuntimeException | Error e) {
+                errors.incrementAndGet();
+                throw e;
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        }
+
+        /** Times {@code work}; a thrown exception or a {@code false} result counts as an error. */
+        public <T> T call(Supplier<T> work) {
+            long start = System.nanoTime();
+            try {
+                T result = work.get();
+                if (Boolean.FALSE.equals(result)) errors.incrementAndGet();
+                return result;
+            } catch (RuntimeException | Error e) {
+                errors.incrementAndGet();
+                throw e;
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override public long getCount() { return latency.getCount(); }
+        @Override public long getErrors() { return errors.get(); }
+
+        @Override
+        public double getErrorRate() {
+            long n = latency.getCount();
+            return n == 0 ? 0 : (double) errors.get() / n;
+        }
+
+        @Override public double getMeanMicros() { return latency.getMean() / 1_000.0; }
+        @Override public double getP50Micros() { return latency.getValueAtPercentile(50) / 1_000.0; }
+        @Override public double getP99Micros() { return latency.getValueAtPercentile(99) / 1_000.0; }
+        @Override public double getP999Micros() { return latency.getValueAtPercentile(99.9) / 1_000.0; }
+        @Override public double getMaxMicros() { return latency.getMax() / 1_000.0; }
+
+        @Override
+        public void reset() {
+            latency.reset();
+            errors.set(0);
+        }
+    }
+
+    private static final boolean JMX = Boolean.parseBoolean(System.getProperty("ums.metrics.jmx", "true"));
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+
+    static {
+        register("ums:type=Status", new StatusBean());
+    }
+
+    private Metrics() {
+    }
+
+    /** Returns the operation named {@code name}, creating and publishing it on first use. */
+    public static Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> {
+            Operation op = new Operation(n);
+            register("ums:type=Operation,name=" + ObjectName.quote(n), new StandardMBean(op, OperationMBean.class, false));
+            return op;
+        });
+    }
+
+    /** Publishes a status value; a later gauge with the same name replaces the earlier one. */
+    public static void gauge(String name, Supplier<?> value) {
+        gauges.put(name, value);
+    }
+
+    public static void resetAll() {
+        operations.values().forEach(Operation::reset);
+    }
+
+    /** Writes the gauges and every operation that has been called, as an aligned table. */
+    public static void dump(Appendable out) {
+        try {
+            out.append("--- Status ---\n");
+            for (Map.Entry<String, Supplier<?>> g : new TreeMap<>(gauges).entrySet()) {
+                out.append(String.format("  %-28s %s%n", g.getKey(), read(g.getValue())));
+            }
+            out.append("--- Operations (latency in microseconds) ---\n");
+            out.append(String.format("  %-34s %9s %7s %10s %10s %10s %10s%n",
+                    "operation", "count", "errors", "p50", "p99", "p99.9", "max"));
+            for (Operation op : new TreeMap<>(operations).values()) {
+                if (op.getCount() == 0) continue;
+                out.append(String.format("  %-34s %9d %7d %10.1f %10.1f %10.1f %10.1f%n",
+                        op.getName(), op.getCount(), op.getErrors(),
+                        op.getP50Micros(), op.getP99Micros(), op.getP999Micros(), op.getMaxMicros()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object read(Supplier<?> gauge) {
+        try {
+            Object value = gauge.get();
+            return value == null ? "n/a" : value;
+        } catch (RuntimeException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    private static void register(String name, Object bean) {
+        if (!JMX) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("[Metrics Warning] Could not register " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    /** Exposes the gauges as read-only attributes; the attribute set follows whatever is registered. */
+    private static class StatusBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Supplier<?> gauge = gauges.get(attribute);
+            if (gauge == null) throw new AttributeNotFoundException(attribute);
+            return String.valueOf(read(gauge));
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                Supplier<?> gauge = gauges.get(a);
+                if (gauge != null) list.add(new Attribute(a, String.valueOf(read(gauge))));
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attrs = new TreeMap<>(gauges).keySet().stream()
+                    .map(n -> new MBeanAttributeInfo(n, String.class.getName(), n, true, false, false))
+                    .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(StatusBean.class.getName(), "UMS status", attrs, null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Status attributes are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import people.Student;
+import people.Teacher;
+import utilities.ModelVersion.CourseState;
+import utilities.ModelVersion.StudentState;
+import utilities.ModelVersion.TeacherState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary image of one {@link ModelVersion}, loaded through a
+ * memory-mapped file so startup skips row-by-row parsing. Entities are stored
+ * in ID order.
+ *
+ * <pre>
+ * header: magic "UMSS" | version | body length (long) | CRC32 of body (long)
+ *         | fingerprint length | fingerprint (UTF-8)
+ * body:   string table (count, then length-prefixed UTF-8 strings)
+ *         students  (count, then id, name, major as string indexes)
+ *         teachers  (count, then id, name, department ordinal, subject)
+ *         courses   (count, then id, name, department ordinal, teacher)
+ *         enrollments (count, then student index, course index)
+ * </pre>
+ *
+ * A null string is stored as index -1.
+ *
+ * The fingerprint identifies the state of the underlying storage when the
+ * snapshot was taken; a mismatch means the snapshot is stale.
+ */
+public final class ModelSnapshot {
+
+    private static final int MAGIC = 0x554D5353; // "UMSS"
+    private static final int VERSION = 2;
+
+    private ModelSnapshot() {
+    }
+
+    /** Writes the version to {@code file} atomically: a reader sees the old or the new snapshot, never a mix. */
+    public static void write(ModelVersion version, Path file, String fingerprint) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            byte[] fp = fingerprint.getBytes(StandardCharsets.UTF_8);
+            int headerSize = 4 + 4 + 8 + 8 + 4 + fp.length;
+            CRC32 crc = new CRC32();
+            long bodyLength;
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ch.position(headerSize);
+                CountingStream counter = new CountingStream(Channels.newOutputStream(ch));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(counter, crc), 1 << 16));
+                writeBody(version, out);
+                out.flush();
+                bodyLength = counter.count;
+
+                ByteBuffer header = ByteBuffer.allocate(headerSize);
+                header.putInt(MAGIC).putInt(VERSION).putLong(bodyLength).putLong(crc.getValue())
+                        .putInt(fp.length).put(fp).flip();
+                ch.write(header, 0);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeBody(ModelVersion version, DataOutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        List<StudentState> students = sorted(version.getStudents(), StudentState::getId);
+        List<TeacherState> teachers = sorted(version.getTeachers(), TeacherState::getId);
+        List<CourseState> courses = sorted(version.getCourses(), CourseState::getCourseId);
+
+        int[] studentRows = new int[students.size() * 3];
+        int i = 0;
+        for (StudentState s : students) {
+            studentRows[i++] = strings.add(s.getId());
+            studentRows[i++] = strings.add(s.getName());
+            studentRows[i++] = strings.add(s.getMajor());
+        }
+        int[] teacherRows = new int[teachers.size() * 4];
+        i = 0;
+        for (TeacherState t : teachers) {
+            teacherRows[i++] = strings.add(t.getId());
+            teacherRows[i++] = strings.add(t.getName());
+            teacherRows[i++] = t.getDepartment().ordinal();
+            teacherRows[i++] = strings.add(t.getSubject());
+        }
+        int[] courseRows = new int[courses.size() * 4];
+        Map<String, Integer> coursePosition = new HashMap<>();
+        i = 0;
+        for (CourseState c : courses) {
+            coursePosition.put(IndexedList.canonical(c.getCourseId()), coursePosition.size());
+            courseRows[i++] = strings.add(c.getCourseId());
+            courseRows[i++] = strings.add(c.getCourseName());
+            courseRows[i++] = c.getDepartment().ordinal();
+            courseRows[i++] = strings.add(c.getTeacherId());
+        }
+
+        out.writeInt(strings.values.size());
+        for (String s : strings.values) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(students.size());
+        for (int v : studentRows) out.writeInt(v);
+        out.writeInt(teachers.size());
+        for (int v : teacherRows) out.writeInt(v);
+        out.writeInt(courses.size());
+        for (int v : courseRows) out.writeInt(v);
+
+        // Edges are stored from the student side as (student, course) positions
+        int[] edges = new int[1024];
+        int edgeInts = 0;
+        for (int s = 0; s < students.size(); s++) {
+            for (String courseId : students.get(s).getEnrolledCourseIds()) {
+                Integer pos = coursePosition.get(IndexedList.canonical(courseId));
+                if (pos == null) continue;
+                if (edgeInts + 2 > edges.length) {
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+                }
+                edges[edgeInts++] = s;
+                edges[edgeInts++] = pos;
+            }
+        }
+        out.writeInt(edgeInts / 2);
+        for (int e = 0; e < edgeInts; e++) {
+            out.writeInt(edges[e]);
+        }
+    }
+
+    /**
+     * Loads the snapshot into an empty model. Returns false, leaving the model
+     * untouched, if the file is missing, corrupt, from another version or
+     * taken from a different storage state than {@code fingerprint}.
+     */
+    public static boolean load(DataModel model, Path file, String fingerprint) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 28 || buf.getInt() != MAGIC) {
+                System.err.println("[DB Warning] Snapshot " + file + " is not a UMS snapshot; ignoring it.");
+                return false;
+            }
+            if (buf.getInt() != VERSION) {
+                System.err.println("[DB Warning] Snapshot " + file + " has an unsupported version; ignoring it.");
+                return false;
+            }
+            long bodyLength = buf.getLong();
+            long expectedCrc = buf.getLong();
+            int fpLength = buf.getInt();
+            if (fpLength < 0 || fpLength > buf.remaining()) {
+                System.err.println("[DB Warning] Snapshot " + file + " is truncated; ignoring it.");
+                return false;
+            }
+            String stored = readString(buf, fpLength);
+            if (!stored.equals(fingerprint)) {
+                System.out.println("[DB] Snapshot is stale; loading from storage instead.");
+                return false;
+            }
+            if (bodyLength != buf.remaining()) {
+                System.err.println("[DB Warning] Snapshot " + file + " is truncated; ignoring it.");
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                System.err.println("[DB Warning] Snapshot " + file + " failed its checksum; ignoring it.");
+                return false;
+            }
+            readBody(model, buf);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[DB Warning] Could not read snapshot " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // A version iterates in hash order; ID order keeps the loaded lists stable
+    private static <T> List<T> sorted(Collection<T> states, Function<T, String> id) {
+        List<T> list = new ArrayList<>(states);
+        list.sort(Comparator.comparing(id, String.CASE_INSENSITIVE_ORDER));
+        return list;
+    }
+
+    private static void readBody(DataModel model, ByteBuffer buf) {
+        Department[] departments = Department.values();
+        String[] strings = new String[buf.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buf, buf.getInt());
+        }
+
+        int n = buf.getInt();
+        IndexedList<Student> students = new IndexedList<>(Student::getId, n);
+        for (int i = 0; i < n; i++) {
+            students.add(new Student(string(strings, buf), string(strings, buf), string(strings, buf)));
+        }
+        n = buf.getInt();
+        IndexedList<Teacher> teachers = new IndexedList<>(Teacher::getId, n);
+        for (int i = 0; i < n; i++) {
+            String id = string(strings, buf);
+            String name = string(strings, buf);
+            Department dept = departments[buf.getInt()];
+            teachers.add(new Teacher(id, name, dept, string(strings, buf)));
+        }
+        n = buf.getInt();
+        IndexedList<Course> courses = new IndexedList<>(Course::getCourseId, n);
+        for (int i = 0; i < n; i++) {
+            Course c = new Course(string(strings, buf), string(strings, buf), departments[buf.getInt()]);
+            c.assignTeacher(string(strings, buf));
+            courses.add(c);
+        }
+        n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            Student s = students.get(buf.getInt());
+            Course c = courses.get(buf.getInt());
+            s.enroll(c.getCourseId());
+            c.addStudent(s.getId());
+        }
+        model.absorb(students, teachers, courses);
+    }
+
+    private static String string(String[] strings, ByteBuffer buf) {
+        int index = buf.getInt();
+        return index < 0 ? null : strings[index];
+    }
+
+    private static String readString(ByteBuffer buf, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Deduplicating string table; IDs repeated across entities are stored once. */
+    private static class StringTable {
+        final List<String> values = new ArrayList<>();
+        final Map<String, Integer> positions = new HashMap<>();
+
+        int add(String s) {
+            if (s == null) return -1;
+            Integer pos = positions.get(s);
+            if (pos == null) {
+                pos = values.size();
+                values.add(s);
+                positions.put(s, pos);
+            }
+            return pos;
+        }
+    }
+
+    private static class CountingStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package utilities;
+
+import courses.Department;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Enrollment aggregates, maintained as the model changes instead of computed
+ * by scanning it. Each {@link ModelVersion} carries the statistics that match
+ * its contents, so reading them is O(1) (O(teachers) for the teaching loads)
+ * and they always agree with the snapshot they came from.
+ */
+public final class ModelStatistics {
+
+    private static final int DEPARTMENTS = Department.values().length;
+    private static final String UNASSIGNED = "TBD";
+
+    static final ModelStatistics EMPTY = new Change(null).build();
+
+    private final int students;
+    private final int teachers;
+    private final int courses;
+    private final long enrollments;
+    private final int unassignedCourses;
+    private final int[] coursesByDepartment;
+    private final int[] teachersByDepartment;
+    private final long[] seatsByDepartment;
+    // rosterSizes[n] = courses with n students; the last bucket also holds anything larger
+    private final int[] rosterSizes;
+    // Canonical teacher ID -> (teacher ID as written on the course, courses taught)
+    private final PersistentMap<String, Map.Entry<String, Integer>> teachingLoads;
+
+    private ModelStatistics(Change c) {
+        this.students = c.students;
+        this.teachers = c.teachers;
+        this.courses = c.courses;
+        this.enrollments = c.enrollments;
+        this.unassignedCourses = c.unassignedCourses;
+        this.coursesByDepartment = c.coursesByDepartment;
+        this.teachersByDepartment = c.teachersByDepartment;
+        this.seatsByDepartment = c.seatsByDepartment;
+        this.rosterSizes = c.rosterSizes;
+        this.teachingLoads = c.teachingLoads;
+    }
+
+    public int getStudentCount() { return students; }
+    public int getTeacherCount() { return teachers; }
+    public int getCourseCount() { return courses; }
+    public long getEnrollmentCount() { return enrollments; }
+
+    /** Courses still waiting for a teacher. */
+    public int getUnassignedCourseCount() { return unassignedCourses; }
+
+    public int getCourseCount(Department dept) { return coursesByDepartment[dept.ordinal()]; }
+    public int getTeacherCount(Department dept) { return teachersByDepartment[dept.ordinal()]; }
+
+    /** Students enrolled across the department's courses. */
+    public long getEnrolledSeats(Department dept) { return seatsByDepartment[dept.ordinal()]; }
+
+    /** Taken seats over all seats, from 0 to 1; 0 when there are no courses. */
+    public double getFillRatio() {
+        return ratio(enrollments, courses);
+    }
+
+    public double getFillRatio(Department dept) {
+        return ratio(seatsByDepartment[dept.ordinal()], coursesByDepartment[dept.ordinal()]);
+    }
+
+    private static double ratio(long seats, int courses) {
+        return courses == 0 ? 0 : (double) seats / ((long) courses * UniversityService.MAX_COURSE_CAPACITY);
+    }
+
+    public double getAverageCoursesPerStudent() {
+        return students == 0 ? 0 : (double) enrollments / students;
+    }
+
+    public double getAverageStudentsPerCourse() {
+        return courses == 0 ? 0 : (double) enrollments / courses;
+    }
+
+    /**
+     * How many courses have each roster size: element n counts the courses with n
+     * students, up to {@link UniversityService#MAX_COURSE_CAPACITY}, where the
+     * last element also counts any course above it.
+     */
+    public int[] getRosterSizeDistribution() {
+        return rosterSizes.clone();
+    }
+
+    /** Courses taught by the teacher with this ID, matched case-insensitively. */
+    public int getCoursesTaughtBy(String teacherId) {
+        Map.Entry<String, Integer> load = teacherId == null ? null : teachingLoads.get(IndexedList.canonical(teacherId));
+        return load == null ? 0 : load.getValue();
+    }
+
+    /** Courses per assigned teacher ID, most loaded first. */
+    public Map<String, Integer> getTeachingLoads() {
+        List<Map.Entry<String, Integer>> loads = new ArrayList<>(teachingLoads.values());
+        loads.sort(Comparator.comparing((Map.Entry<String, Integer> e) -> e.getValue()).reversed()
+                .thenComparing(Map.Entry::getKey));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : loads) {
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    Change change() {
+        return new Change(this);
+    }
+
+    /**
+     * Statistics under construction: a copy of the previous ones that the deltas
+     * of one change are applied to. The arrays are small (one slot per department
+     * or roster size), so copying them per change is cheap.
+     */
+    static final class Change {
+        private int students;
+        private int teachers;
+        private int courses;
+        private long enrollments;
+        private int unassignedCourses;
+        private final int[] coursesByDepartment;
+        private final int[] teachersByDepartment;
+        private final long[] seatsByDepartment;
+        private final int[] rosterSizes;
+        private PersistentMap<String, Map.Entry<String, Integer>> teachingLoads;
+
+        Change(ModelStatistics from) {
+            if (from == null) {
+                coursesByDepartment = new int[DEPARTMENTS];
+                teachersByDepartment = new int[DEPARTMENTS];
+                seatsByDepartment = new long[DEPARTMENTS];
+                rosterSizes = new int[UniversityService.MAX_COURSE_CAPACITY + 1];
+                teachingLoads = PersistentMap.empty();
+                return;
+            }
+            students = from.students;
+            teachers = from.teachers;
+            courses = from.courses;
+            enrollments = from.enrollments;
+            unassignedCourses = from.unassignedCourses;
+            coursesByDepartment = from.coursesByDepartment.clone();
+            teachersByDepartment = from.teachersByDepartment.clone();
+            seatsByDepartment = from.seatsByDepartment.clone();
+            rosterSizes = from.rosterSizes.clone();
+            teachingLoads = from.teachingLoads;
+        }
+
+        Change student(int delta) {
+            students += delta;
+            return this;
+        }
+
+        Change teacher(Department dept, int delta) {
+            teachers += delta;
+            teachersByDepartment[dept.ordinal()] += delta;
+            return this;
+        }
+
+        /** A course with {@code rosterSize} students and the given teacher arrives (+1) or leaves (-1). */
+        Change course(Department dept, String teacherId, int rosterSize, int delta) {
+            courses += delta;
+            coursesByDepartment[dept.ordinal()] += delta;
+            rosterSizes[bucket(rosterSize)] += delta;
+            seatsByDepartment[dept.ordinal()] += (long) rosterSize * delta;
+            enrollments += (long) rosterSize * delta;
+            teaching(teacherId, delta);
+            return this;
+        }
+
+        /** A course's roster went from {@code before} to {@code before + delta} students. */
+        Change roster(Department dept, int before, int delta) {
+            rosterSizes[bucket(before)]--;
+            rosterSizes[bucket(before + delta)]++;
+            seatsByDepartment[dept.ordinal()] += delta;
+            enrollments += delta;
+            return this;
+        }
+
+        Change teacherChanged(String from, String to) {
+            teaching(from, -1);
+            teaching(to, 1);
+            return this;
+        }
+
+        private void teaching(String teacherId, int delta) {
+            if (teacherId == null || UNASSIGNED.equals(teacherId)) {
+                unassignedCourses += delta;
+                return;
+            }
+            String key = IndexedList.canonical(teacherId);
+            Map.Entry<String, Integer> load = teachingLoads.get(key);
+            int count = (load == null ? 0 : load.getValue()) + delta;
+            teachingLoads = count <= 0 ? teachingLoads.remove(key)
+                    : teachingLoads.put(key, Map.entry(load == null ? teacherId : load.getKey(), count));
+        }
+
+        /** All students leave; every course keeps its place but loses its roster. */
+        Change studentsCleared() {
+            students = 0;
+            Arrays.fill(rosterSizes, 0);
+            rosterSizes[0] = courses;
+            Arrays.fill(seatsByDepartment, 0);
+            enrollments = 0;
+            return this;
+        }
+
+        Change teachersCleared() {
+            teachers = 0;
+            Arrays.fill(teachersByDepartment, 0);
+            return this;
+        }
+
+        /** All courses leave, taking every enrollment with them. */
+        Change coursesCleared() {
+            courses = 0;
+            unassignedCourses = 0;
+            Arrays.fill(coursesByDepartment, 0);
+            Arrays.fill(rosterSizes, 0);
+            Arrays.fill(seatsByDepartment, 0);
+            enrollments = 0;
+            teachingLoads = PersistentMap.empty();
+            return this;
+        }
+
+        private static int bucket(int rosterSize) {
+            return Math.min(Math.max(rosterSize, 0), UniversityService.MAX_COURSE_CAPACITY);
+        }
+
+        ModelStatistics build() {
+            return new ModelStatistics(this);
+        }
+    }
+}
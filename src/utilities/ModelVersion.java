@@ -0,0 +1,177 @@
+package utilities;
+
+import people.Student;
+import people.Teacher;
+import courses.Course;
+import courses.Department;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An immutable, consistent view of the whole model at one moment, taken with
+ * {@link DataModel#snapshot()}. Taking one is a single volatile read, and
+ * reading it needs no locks: later changes produce a new version and never
+ * touch this one. Both sides of an enrollment always appear in the same
+ * version. Entities are held as immutable states rather than the live objects,
+ * and iterate in no particular order.
+ */
+public final class ModelVersion {
+
+    static final ModelVersion EMPTY = new ModelVersion(0, PersistentMap.empty(), PersistentMap.empty(),
+            PersistentMap.empty(), ModelStatistics.EMPTY);
+
+    private final long version;
+    private final PersistentMap<String, StudentState> students;
+    private final PersistentMap<String, TeacherState> teachers;
+    private final PersistentMap<String, CourseState> courses;
+    private final ModelStatistics statistics;
+
+    ModelVersion(long version, PersistentMap<String, StudentState> students, PersistentMap<String, TeacherState> teachers,
+                 PersistentMap<String, CourseState> courses, ModelStatistics statistics) {
+        this.version = version;
+        this.students = students;
+        this.teachers = teachers;
+        this.courses = courses;
+        this.statistics = statistics;
+    }
+
+    /** Increases by one with every published change. */
+    public long getVersion() { return version; }
+
+    /** Aggregates over exactly this version's contents. */
+    public ModelStatistics getStatistics() { return statistics; }
+
+    public Collection<StudentState> getStudents() { return students.values(); }
+    public Collection<TeacherState> getTeachers() { return teachers.values(); }
+    public Collection<CourseState> getCourses() { return courses.values(); }
+
+    public Optional<StudentState> findStudent(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(students.get(IndexedList.canonical(id)));
+    }
+
+    public Optional<TeacherState> findTeacher(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(teachers.get(IndexedList.canonical(id)));
+    }
+
+    public Optional<CourseState> findCourse(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(courses.get(IndexedList.canonical(id)));
+    }
+
+    ModelVersion next(PersistentMap<String, StudentState> students, PersistentMap<String, TeacherState> teachers,
+                      PersistentMap<String, CourseState> courses, ModelStatistics statistics) {
+        return new ModelVersion(version + 1, students, teachers, courses, statistics);
+    }
+
+    PersistentMap<String, StudentState> studentMap() { return students; }
+    PersistentMap<String, TeacherState> teacherMap() { return teachers; }
+    PersistentMap<String, CourseState> courseMap() { return courses; }
+
+    // --- Entity States ---
+
+    public static final class StudentState {
+        private final String id;
+        private final String name;
+        private final String major;
+        private final List<String> enrolledCourseIds;
+
+        StudentState(String id, String name, String major, List<String> enrolledCourseIds) {
+            this.id = id;
+            this.name = name;
+            this.major = major;
+            this.enrolledCourseIds = enrolledCourseIds;
+        }
+
+        static StudentState of(Student s) {
+            return new StudentState(s.getId(), s.getName(), s.getMajor(), List.copyOf(s.getEnrolledCourseIds()));
+        }
+
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public String getMajor() { return major; }
+        public List<String> getEnrolledCourseIds() { return enrolledCourseIds; }
+
+        StudentState withMajor(String major) {
+            return new StudentState(id, name, major, enrolledCourseIds);
+        }
+
+        StudentState withCourse(String courseId, boolean enrolled) {
+            return new StudentState(id, name, major, toggle(enrolledCourseIds, courseId, enrolled));
+        }
+    }
+
+    public static final class TeacherState {
+        private final String id;
+        private final String name;
+        private final Department department;
+        private final String subject;
+
+        TeacherState(Teacher t) {
+            this.id = t.getId();
+            this.name = t.getName();
+            this.department = t.getDepartment();
+            this.subject = t.getSubject();
+        }
+
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public Department getDepartment() { return department; }
+        public String getSubject() { return subject; }
+    }
+
+    public static final class CourseState {
+        private final String id;
+        private final String name;
+        private final Department department;
+        private final String teacherId;
+        private final List<String> enrolledStudentIds;
+
+        CourseState(String id, String name, Department department, String teacherId, List<String> enrolledStudentIds) {
+            this.id = id;
+            this.name = name;
+            this.department = department;
+            this.teacherId = teacherId;
+            this.enrolledStudentIds = enrolledStudentIds;
+        }
+
+        static CourseState of(Course c) {
+            return new CourseState(c.getCourseId(), c.getCourseName(), c.getDepartment(), c.getTeacherId(),
+                    List.copyOf(c.getEnrolledStudentIds()));
+        }
+
+        public String getCourseId() { return id; }
+        public String getCourseName() { return name; }
+        public Department getDepartment() { return department; }
+        public String getTeacherId() { return teacherId; }
+        public List<String> getEnrolledStudentIds() { return enrolledStudentIds; }
+
+        CourseState withTeacher(String teacherId) {
+            return new CourseState(id, name, department, teacherId, enrolledStudentIds);
+        }
+
+        CourseState withStudent(String studentId, boolean enrolled) {
+            return new CourseState(id, name, department, teacherId, toggle(enrolledStudentIds, studentId, enrolled));
+        }
+    }
+
+    // Enrollment lists are short, so a change copies the list
+    private static List<String> toggle(List<String> ids, String id, boolean present) {
+        int at = -1;
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i).equalsIgnoreCase(id)) {
+                at = i;
+                break;
+            }
+        }
+        if (present == (at >= 0)) return ids;
+        List<String> copy = new ArrayList<>(ids);
+        if (present) {
+            copy.add(id);
+        } else {
+            copy.remove(at);
+        }
+        return Collections.unmodifiableList(copy);
+    }
+}
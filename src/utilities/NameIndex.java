@@ -0,0 +1,290 @@
+package utilities;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Word index over entity names for search-as-you-type, kept in sync by
+ * {@link IndexedList} listeners. Names are folded (case, accents, punctuation)
+ * and split into words. A query word matches a name word exactly, as a prefix,
+ * or, from three letters on, approximately by shared trigrams, so "jon smit"
+ * finds "J&oacute;n Smith". Every query word has to match; results are ranked by
+ * how well, then shorter names first, then alphabetically.
+ *
+ * <p>Each word's entities are kept in that tie-break order, so a search skips
+ * a matching word, or the rest of one, as soon as nothing in it can enter the
+ * top results, rather than scoring every match. Typos are looked for last,
+ * since that is the expensive part.
+ */
+class NameIndex<T> implements IndexedList.Listener<T> {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final String[] NO_WORDS = new String[0];
+
+    // Trigram similarity (Dice) a word needs to count as a fuzzy match
+    private static final double FUZZY_THRESHOLD = 0.4;
+
+    private static final Comparator<Entry<?>> TIE_BREAK = Comparator.<Entry<?>>comparingInt(e -> e.name.length())
+            .thenComparing(e -> e.name)
+            .thenComparingLong(e -> e.seq);
+
+    private final Function<T, String> nameOf;
+    // Word -> entries with that word; sorted, so a prefix is a contiguous range
+    private final TreeMap<String, NavigableSet<Entry<T>>> postings = new TreeMap<>();
+    // Trigram -> indexed words containing it, for fuzzy matching
+    private final Map<String, Set<String>> wordsByGram = new HashMap<>();
+    private final Map<T, Entry<T>> filedUnder = new IdentityHashMap<>();
+    private long nextSeq;
+
+    NameIndex(Function<T, String> nameOf) {
+        this.nameOf = nameOf;
+    }
+
+    /** Lower case, accents stripped, anything but letters and digits turned into word breaks. */
+    static String[] words(String text) {
+        if (text == null || text.isEmpty()) return NO_WORDS;
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(NO_WORDS);
+    }
+
+    // Padded so that short words and word edges have trigrams too
+    private static Set<String> grams(String word) {
+        String padded = "$" + word + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    @Override
+    public synchronized void added(T item) {
+        if (filedUnder.containsKey(item)) return;
+        String[] words = words(nameOf.apply(item));
+        Entry<T> entry = new Entry<>(item, words, String.join(" ", words), nextSeq++);
+        for (String word : words) {
+            NavigableSet<Entry<T>> entries = postings.get(word);
+            if (entries == null) {
+                entries = new TreeSet<>(TIE_BREAK);
+                postings.put(word, entries);
+                for (String g : grams(word)) {
+                    wordsByGram.computeIfAbsent(g, k -> new HashSet<>()).add(word);
+                }
+            }
+            entries.add(entry);
+        }
+        filedUnder.put(item, entry);
+    }
+
+    @Override
+    public synchronized void removed(T item) {
+        Entry<T> entry = filedUnder.remove(item);
+        if (entry == null) return;
+        for (String word : entry.words) {
+            NavigableSet<Entry<T>> entries = postings.get(word);
+            if (entries == null || !entries.remove(entry) || !entries.isEmpty()) continue;
+            postings.remove(word);
+            for (String g : grams(word)) {
+                Set<String> bucket = wordsByGram.get(g);
+                bucket.remove(word);
+                if (bucket.isEmpty()) wordsByGram.remove(g);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        postings.clear();
+        wordsByGram.clear();
+        filedUnder.clear();
+    }
+
+    /** Up to {@code limit} entities matching every word of {@code query}, best first. */
+    synchronized List<T> search(String query, int limit) {
+        String[] queryWords = words(query);
+        if (queryWords.length == 0 || limit < 1) return Collections.emptyList();
+        List<T> results = search(queryWords, limit, false);
+        // Short of results: look for typos in every word, not only in the words that match little as typed
+        return results.size() < limit ? search(queryWords, limit, true) : results;
+    }
+
+    private List<T> search(String[] queryWords, int limit, boolean typos) {
+
+        // The query word matching the fewest entities drives the search; counting stops once a word is not the fewest
+        List<Match> matches = new ArrayList<>(queryWords.length);
+        int driver = 0;
+        long driverSize = Long.MAX_VALUE;
+        for (int q = 0; q < queryWords.length; q++) {
+            Match m = new Match(queryWords[q], typos ? Long.MAX_VALUE : Math.max(limit, driverSize == Long.MAX_VALUE ? 0 : driverSize));
+            if (m.entities == 0) return Collections.emptyList();
+            matches.add(m);
+            if (m.entities < driverSize) {
+                driverSize = m.entities;
+                driver = q;
+            }
+        }
+        double othersBest = 0;
+        for (int q = 0; q < queryWords.length; q++) {
+            if (q != driver) othersBest += matches.get(q).best;
+        }
+
+        Match lead = matches.get(driver);
+        List<String> driverWords = new ArrayList<>(lead.prefixed.keySet());
+        driverWords.addAll(lead.fuzzy.keySet());
+
+        Comparator<Hit<T>> worstFirst = Comparator.<Hit<T>>comparingDouble(h -> h.score)
+                .thenComparing((a, b) -> TIE_BREAK.compare(b.entry, a.entry));
+        PriorityQueue<Hit<T>> top = new PriorityQueue<>(Math.min(limit, 1024) + 1, worstFirst);
+        Set<Entry<T>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String word : driverWords) {
+            // The best any entity filed under this word could score
+            double bound = lead.score(word) + othersBest;
+            if (top.size() == limit && bound < top.peek().score) continue;
+            for (Entry<T> e : postings.get(word)) {
+                if (top.size() == limit && bound <= top.peek().score && TIE_BREAK.compare(e, top.peek().entry) > 0) {
+                    break; // the rest of this word can at best tie, and loses the tie
+                }
+                if (!seen.add(e)) continue;
+                double score = 0;
+                for (Match m : matches) {
+                    double s = m.best(e.words);
+                    if (s == 0) {
+                        score = 0;
+                        break;
+                    }
+                    score += s;
+                }
+                if (score == 0) continue;
+                top.add(new Hit<>(e, score));
+                if (top.size() > limit) top.poll();
+            }
+        }
+        List<Hit<T>> ranked = new ArrayList<>(top);
+        ranked.sort(worstFirst.reversed());
+        List<T> results = new ArrayList<>(ranked.size());
+        for (Hit<T> h : ranked) results.add(h.entry.item);
+        return results;
+    }
+
+    /**
+     * How one query word matches indexed words: 1 for the same word, up to 0.9
+     * for a word it starts (more for a longer share of the word), up to 0.8 for a
+     * trigram-similar word. Typos are only looked for when the word matches fewer
+     * than {@code enough} entities as it is, since that walk costs the most.
+     */
+    private final class Match {
+        final String q;
+        final NavigableMap<String, NavigableSet<Entry<T>>> prefixed;
+        final Map<String, Double> fuzzy;
+        final double best;
+        // Entities with a matching word, counted up to the cap given
+        final long entities;
+
+        Match(String q, long enough) {
+            this.q = q;
+            this.prefixed = postings.subMap(q, true, q + Character.MAX_VALUE, false);
+            long count = 0;
+            int shortest = Integer.MAX_VALUE;
+            for (Map.Entry<String, NavigableSet<Entry<T>>> e : prefixed.entrySet()) {
+                shortest = Math.min(shortest, e.getKey().length());
+                count += e.getValue().size();
+                if (count >= enough && shortest <= q.length() + 1) break;
+            }
+            this.fuzzy = count < enough && q.length() >= 3 ? similarWords(q) : Collections.emptyMap();
+            double best = shortest == Integer.MAX_VALUE ? 0 : prefixScore(shortest);
+            for (Map.Entry<String, Double> e : fuzzy.entrySet()) {
+                count += postings.get(e.getKey()).size();
+                best = Math.max(best, e.getValue());
+            }
+            this.best = best;
+            this.entities = count;
+        }
+
+        private double prefixScore(int length) {
+            return length == q.length() ? 1.0 : 0.6 + 0.3 * q.length() / length;
+        }
+
+        double score(String word) {
+            if (word.startsWith(q)) return prefixScore(word.length());
+            Double s = fuzzy.get(word);
+            return s == null ? 0 : s;
+        }
+
+        double best(String[] words) {
+            double best = 0;
+            for (String w : words) best = Math.max(best, score(w));
+            return best;
+        }
+    }
+
+    private Map<String, Double> similarWords(String q) {
+        Set<String> queryGrams = grams(q);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String g : queryGrams) {
+            Set<String> words = wordsByGram.get(g);
+            if (words == null) continue;
+            for (String w : words) shared.merge(w, 1, Integer::sum);
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            // A padded word of n letters has at most n trigrams
+            double dice = 2.0 * e.getValue() / (queryGrams.size() + e.getKey().length());
+            if (dice >= FUZZY_THRESHOLD && !e.getKey().startsWith(q)) {
+                scores.put(e.getKey(), 0.8 * Math.min(1, dice));
+            }
+        }
+        return scores;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final String[] words;
+        final String name;
+        final long seq;
+
+        Entry(T item, String[] words, String name, long seq) {
+            this.item = item;
+            this.words = words;
+            this.name = name;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Hit<T> {
+        final Entry<T> entry;
+        final double score;
+
+        Hit(Entry<T> entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
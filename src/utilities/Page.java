@@ -0,0 +1,23 @@
+package utilities;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a listing. Pass {@link #getNextCursor()} back to fetch the page
+ * after this one; it is null on the last page.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+}
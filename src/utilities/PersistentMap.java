@@ -0,0 +1,317 @@
+package utilities;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash array mapped trie. {@link #put} and {@link #remove} return a
+ * new map that shares every untouched branch with the old one, so an update
+ * copies only the few small nodes on the path to its key (at most seven levels
+ * of up to 32 entries) and older versions stay valid and unchanged. Keys must
+ * not be null. Iteration order follows the key hashes.
+ */
+final class PersistentMap<K, V> {
+
+    private static final Object[] NO_ENTRIES = new Object[0];
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() { return size; }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        return root == null ? null : (V) root.find(0, hash(key), key);
+    }
+
+    PersistentMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node start = root == null ? new BitmapNode(null, 0, NO_ENTRIES) : root;
+        Node next = start.assoc(null, 0, hash(key), key, value, added);
+        return next == root ? this : new PersistentMap<>(next, added[0] ? size + 1 : size);
+    }
+
+    PersistentMap<K, V> remove(Object key) {
+        if (root == null) return this;
+        Node next = root.without(0, hash(key), key);
+        return next == root ? this : new PersistentMap<>(next, size - 1);
+    }
+
+    /** The values, as a read-only collection backed by this (unchanging) map. */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override public Iterator<V> iterator() { return new ValueIterator<>(root); }
+            @Override public int size() { return size; }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Fills a new map in place, for bulk loads. Nodes created by the builder are
+     * mutated directly instead of copied; once {@link #build()} hands them over
+     * they are never touched again.
+     */
+    static final class Builder<K, V> {
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        Builder<K, V> put(K key, V value) {
+            if (edit == null) throw new IllegalStateException("Builder already built");
+            boolean[] added = new boolean[1];
+            Node start = root == null ? new BitmapNode(edit, 0, NO_ENTRIES) : root;
+            root = start.assoc(edit, 0, hash(key), key, value, added);
+            if (added[0]) size++;
+            return this;
+        }
+
+        PersistentMap<K, V> build() {
+            edit = null;
+            return size == 0 ? empty() : new PersistentMap<>(root, size);
+        }
+    }
+
+    // --- Trie Nodes ---
+    // Entries are stored as key/value pairs in one array. A null key marks a
+    // pair whose value is a child node one level (five hash bits) down.
+
+    private abstract static class Node {
+        Object[] array;
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added);
+
+        /** Returns this node if the key is absent, or null if removing it leaves the node empty. */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+        private final Object edit;
+        private int bitmap;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private boolean editable(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).find(shift + 5, hash, key);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                if (editable(edit)) {
+                    array = grown;
+                    bitmap |= bit;
+                    return this;
+                }
+                return new BitmapNode(edit, bitmap | bit, grown);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(edit, shift + 5, hash, key, value, added);
+                return child == v ? this : with(edit, i, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(edit, i, k, value);
+            }
+            added[0] = true;
+            return with(edit, i, null, split(edit, shift + 5, k, v, hash, key, value));
+        }
+
+        private Node with(Object edit, int i, Object key, Object value) {
+            if (editable(edit)) {
+                array[i] = key;
+                array[i + 1] = value;
+                return this;
+            }
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(edit, bitmap, copy);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).without(shift + 5, hash, key);
+                if (child == v) return this;
+                if (child != null) return with(null, i, null, child);
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new BitmapNode(null, bitmap ^ bit, shrunk);
+        }
+
+        // Two keys that share a slot move one level down, or into a collision node if their hashes are equal
+        private static Node split(Object edit, int shift, Object k1, Object v1, int hash2, Object k2, Object v2) {
+            int hash1 = hash(k1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {k1, v1, k2, v2});
+            }
+            boolean[] ignored = new boolean[1];
+            return new BitmapNode(edit, 0, NO_ENTRIES)
+                    .assoc(edit, shift, hash1, k1, v1, ignored)
+                    .assoc(edit, shift, hash2, k2, v2, ignored);
+        }
+    }
+
+    /** Keys whose full hashes are equal; searched linearly. */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest under a bitmap node at this level, then add the new key beside it
+                return new BitmapNode(edit, BitmapNode.bit(this.hash, shift), new Object[] {null, this})
+                        .assoc(edit, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            Object[] copy;
+            if (i >= 0) {
+                if (array[i + 1] == value) return this;
+                copy = array.clone();
+            } else {
+                added[0] = true;
+                i = array.length;
+                copy = Arrays.copyOf(array, array.length + 2);
+                copy[i] = key;
+            }
+            copy[i + 1] = value;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new CollisionNode(hash, shrunk);
+        }
+    }
+
+    /** Depth-first walk over the node arrays; needs no locks, since nodes reachable from a map never change. */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Object[][] arrays = new Object[9][];
+        private final int[] positions = new int[9];
+        private int depth = -1;
+        private Object next;
+        private boolean ready;
+
+        ValueIterator(Node root) {
+            if (root != null) push(root.array);
+        }
+
+        private void push(Object[] array) {
+            arrays[++depth] = array;
+            positions[depth] = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready && depth >= 0) {
+                Object[] a = arrays[depth];
+                int p = positions[depth];
+                if (p >= a.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = p + 2;
+                if (a[p] == null) {
+                    push(((Node) a[p + 1]).array);
+                } else {
+                    next = a[p + 1];
+                    ready = true;
+                }
+            }
+            return ready;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ready = false;
+            return (V) next;
+        }
+    }
+}
@@ -0,0 +1,700 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import people.Student;
+import people.Teacher;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, segmented record log used by FILE persistence.
+ *
+ * <p>Every mutation appends one typed record to the active segment; nothing is
+ * ever rewritten in place. Segments roll over at {@code ums.log.segmentBytes}.
+ * Once dead records (overwritten, deleted or folded-in) pass
+ * {@code ums.log.compactRatio} of the log, a background compactor replays the
+ * sealed segments and writes only the live set into a segment that starts with
+ * {@link #COMPACTED_MARKER}. Loading replays from the newest such segment onward.
+ *
+ * <p>The active segment is written through a {@link Journal}, with group commit
+ * and the fsync policy from {@code ums.log.fsync}. Each record starts with the
+ * CRC32C of the rest of its line. On open, a torn record at the end of the active
+ * segment, left by a crash in the middle of a write, is cut off; anywhere else a
+ * record that fails its checksum is skipped with a warning.
+ */
+public class RecordLog implements AutoCloseable {
+
+    // Record types
+    static final String STUDENT = "S";
+    static final String TEACHER = "T";
+    static final String COURSE = "C";
+    static final String ENROLL = "E";
+    static final String ASSIGN = "A";
+    static final String DELETE_STUDENT = "DS";
+
+    private static final String[] RECORD_TYPES = {STUDENT, TEACHER, COURSE, ENROLL, ASSIGN, DELETE_STUDENT};
+
+    static final String COMPACTED_MARKER = "#COMPACTED";
+    private static final int CHECKSUM_WIDTH = 8; // hex digits
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes = Long.getLong("ums.log.segmentBytes", 8L * 1024 * 1024);
+    private final double compactRatio = Double.parseDouble(System.getProperty("ums.log.compactRatio", "0.5"));
+    private final long compactMinRecords = Long.getLong("ums.log.compactMinRecords", 1_000L);
+    // Segments at least this large are parsed in parallel chunks
+    private final long parallelReplayBytes = Long.getLong("ums.log.parallelReplayBytes", 4L * 1024 * 1024);
+
+    private final Journal.SyncPolicy syncPolicy = Journal.policyFromProperties();
+    private final long syncIntervalMillis = Long.getLong("ums.log.fsyncIntervalMs", 100L);
+
+    private long activeSegment;
+    private long activeSize;
+    private Journal journal;
+
+    // Live keys, kept only to count how many records compaction would drop
+    private final Set<String> studentKeys = new HashSet<>();
+    private final Set<String> teacherKeys = new HashSet<>();
+    private final Set<String> courseKeys = new HashSet<>();
+    private final Map<String, Set<String>> enrollmentKeys = new HashMap<>();
+    private long totalRecords;
+    private long deadRecords;
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ums-log-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    public RecordLog(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the log, creating the first segment if needed. Returns true when the
+     * log did not exist yet, so the caller can seed it from older storage.
+     */
+    public synchronized boolean open() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> segments = listSegments();
+        boolean fresh = segments.isEmpty();
+        activeSegment = fresh ? 1 : segments.get(segments.size() - 1);
+        Path active = segmentPath(activeSegment);
+        if (fresh) {
+            writeMarker(active);
+        } else {
+            repairTail(active);
+        }
+        activeSize = Files.size(active);
+        removeSupersededSegments();
+        journal = new Journal(active, syncPolicy, syncIntervalMillis);
+        return fresh;
+    }
+
+    private static void writeMarker(Path segment) throws IOException {
+        Files.write(segment, (COMPACTED_MARKER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.force(false);
+        }
+    }
+
+    /** Cuts off anything after the last intact record, i.e. a write that a crash interrupted. */
+    private void repairTail(Path segment) throws IOException {
+        long intact = 0;
+        try (InputStream in = Files.newInputStream(segment)) {
+            CsvReader reader = new CsvReader(in);
+            CRC32C crc = new CRC32C();
+            while (reader.next()) {
+                if (reader.isTerminated()
+                        && (reader.isBlank() || reader.startsWith('#') || payloadStart(reader, crc) >= 0)) {
+                    intact = reader.getOffset();
+                }
+            }
+        }
+        long size = Files.size(segment);
+        if (size > intact) {
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(intact);
+                ch.force(false);
+            }
+            System.err.println("[DB Warning] Discarded " + (size - intact) + " bytes of incomplete log records at the end of "
+                    + segment.getFileName() + " (interrupted write).");
+        }
+    }
+
+    // --- Record construction ---
+
+    static String[] studentRecord(Student s) {
+        return new String[] {STUDENT, s.getId(), s.getName(), s.getMajor()};
+    }
+
+    static String[] teacherRecord(Teacher t) {
+        return new String[] {TEACHER, t.getId(), t.getName(), t.getDepartment().name(), t.getSubject()};
+    }
+
+    static String[] courseRecord(Course c) {
+        return new String[] {COURSE, c.getCourseId(), c.getCourseName(), c.getDepartment().name(),
+                c.getTeacherId() == null ? "" : c.getTeacherId()};
+    }
+
+    static String[] enrollmentRecord(String studentId, String courseId) {
+        return new String[] {ENROLL, studentId, courseId};
+    }
+
+    static String[] assignmentRecord(String courseId, String teacherId) {
+        return new String[] {ASSIGN, courseId, teacherId == null ? "" : teacherId};
+    }
+
+    static String[] deleteStudentRecord(String studentId) {
+        return new String[] {DELETE_STUDENT, studentId};
+    }
+
+    // --- Writing ---
+
+    public void append(String[] record) throws IOException {
+        append(Collections.singletonList(record));
+    }
+
+    /**
+     * Appends all records with a single write, and returns once they are as
+     * durable as the fsync policy promises. The wait happens outside the log's
+     * lock, so concurrent appenders can share one fsync.
+     */
+    public void append(List<String[]> records) throws IOException {
+        if (records.isEmpty()) return;
+        byte[] bytes = frame(records);
+        long ticket;
+        synchronized (this) {
+            ticket = journal.write(ByteBuffer.wrap(bytes));
+            activeSize += bytes.length;
+            for (String[] record : records) {
+                track(record);
+            }
+            if (activeSize >= segmentBytes) {
+                roll();
+            }
+            maybeCompact();
+        }
+        journal.commit(ticket);
+    }
+
+    /** Discards every record and starts again from an empty compacted segment. */
+    public synchronized void clear() throws IOException {
+        awaitCompaction();
+        long next = activeSegment + 1;
+        writeMarker(segmentPath(next));
+        journal.switchTo(segmentPath(next));
+        activeSegment = next;
+        activeSize = Files.size(segmentPath(next));
+        removeSupersededSegments();
+        studentKeys.clear();
+        teacherKeys.clear();
+        courseKeys.clear();
+        enrollmentKeys.clear();
+        totalRecords = 0;
+        deadRecords = 0;
+    }
+
+    private void roll() throws IOException {
+        Files.write(segmentPath(activeSegment + 1), new byte[0], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        journal.switchTo(segmentPath(activeSegment + 1));
+        activeSegment++;
+        activeSize = 0;
+    }
+
+    /** Encodes records as checksummed CSV lines: {@code crc32c,type,field,...}. */
+    private static byte[] frame(List<String[]> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() * 48);
+        StringBuilder sb = new StringBuilder();
+        CRC32C crc = new CRC32C();
+        for (String[] record : records) {
+            sb.setLength(0);
+            try {
+                CsvWriter.appendFields(sb, record);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(body, 0, body.length);
+            out.writeBytes(checksum(crc.getValue()).getBytes(StandardCharsets.US_ASCII));
+            out.write(',');
+            out.writeBytes(body);
+            out.write('\r');
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static String checksum(long crc) {
+        String hex = Long.toHexString(crc);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Index of the reader's first payload field: 1 after a valid checksum, 0 for
+     * records written before checksums were added, or -1 for a torn or corrupt record.
+     * A record without a checksum must start with a record type, so a damaged
+     * checksum field cannot pass it off as an old record.
+     */
+    static int payloadStart(CsvReader reader, CRC32C crc) {
+        if (!reader.isTerminated()) return -1;
+        if (reader.fieldLength(0) != CHECKSUM_WIDTH) return isRecordType(reader) ? 0 : -1;
+        crc.reset();
+        reader.updateChecksum(crc, CHECKSUM_WIDTH + 1);
+        return reader.fieldEquals(0, checksum(crc.getValue())) ? 1 : -1;
+    }
+
+    private static boolean isRecordType(CsvReader reader) {
+        for (String type : RECORD_TYPES) {
+            if (reader.fieldEquals(0, type)) return true;
+        }
+        return false;
+    }
+
+    private void track(String[] r) {
+        totalRecords++;
+        switch (r[0]) {
+            case STUDENT:
+                if (!studentKeys.add(r[1])) deadRecords++;
+                break;
+            case TEACHER:
+                if (!teacherKeys.add(r[1])) deadRecords++;
+                break;
+            case COURSE:
+                if (!courseKeys.add(r[1])) deadRecords++;
+                break;
+            case ENROLL:
+                if (!enrollmentKeys.computeIfAbsent(r[1], k -> new HashSet<>()).add(r[2])) deadRecords++;
+                break;
+            case ASSIGN:
+                deadRecords++; // folded into the course record on compaction
+                break;
+            case DELETE_STUDENT:
+                deadRecords++;
+                if (studentKeys.remove(r[1])) deadRecords++;
+                Set<String> enrolled = enrollmentKeys.remove(r[1]);
+                if (enrolled != null) deadRecords += enrolled.size();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // --- Reading ---
+
+    /**
+     * The live contents of the log after applying every record in order. A
+     * partial state covers one chunk of a segment; it also remembers deletes and
+     * assignments that refer to records before the chunk, so that
+     * {@link #merge(LiveState)} gives the same result as a sequential replay.
+     */
+    static class LiveState {
+        final Map<String, String[]> students = new LinkedHashMap<>();
+        final Map<String, String[]> teachers = new LinkedHashMap<>();
+        final Map<String, String[]> courses = new LinkedHashMap<>();
+        final Map<String, Set<String>> enrollments = new LinkedHashMap<>();
+        long records;
+        long corrupt;
+
+        private final boolean partial;
+        private final Set<String> deletedStudents = new LinkedHashSet<>();
+        private final Map<String, String> pendingAssignments = new LinkedHashMap<>();
+
+        LiveState() {
+            this(false);
+        }
+
+        private LiveState(boolean partial) {
+            this.partial = partial;
+        }
+
+        /** Applies one line read from a segment, skipping comments and records that fail their checksum. */
+        void apply(CsvReader r, CRC32C crc) {
+            if (r.isBlank() || r.startsWith('#')) return;
+            int base = payloadStart(r, crc);
+            if (base < 0) {
+                corrupt++;
+                return;
+            }
+            apply(r, base);
+        }
+
+        /** Applies a record whose type is field {@code b}; only entity records are copied into arrays. */
+        private void apply(CsvReader r, int b) {
+            records++;
+            if (r.fieldEquals(b, ENROLL)) {
+                enrollments.computeIfAbsent(r.field(b + 1), k -> new LinkedHashSet<>()).add(r.field(b + 2));
+            } else if (r.fieldEquals(b, STUDENT)) {
+                students.put(r.field(b + 1), r.toArray(b));
+            } else if (r.fieldEquals(b, COURSE)) {
+                String[] course = r.toArray(b);
+                courses.put(course[1], course);
+                if (partial) pendingAssignments.remove(course[1]);
+            } else if (r.fieldEquals(b, TEACHER)) {
+                teachers.put(r.field(b + 1), r.toArray(b));
+            } else if (r.fieldEquals(b, ASSIGN)) {
+                assign(r.field(b + 1), r.field(b + 2));
+            } else if (r.fieldEquals(b, DELETE_STUDENT)) {
+                String id = r.field(b + 1);
+                students.remove(id);
+                enrollments.remove(id);
+                if (partial) deletedStudents.add(id);
+            }
+        }
+
+        private void assign(String courseId, String teacherId) {
+            String[] course = courses.get(courseId);
+            if (course != null) {
+                String[] updated = Arrays.copyOf(course, Math.max(course.length, 5));
+                updated[4] = teacherId;
+                courses.put(courseId, updated);
+            } else if (partial) {
+                pendingAssignments.put(courseId, teacherId);
+            }
+        }
+
+        /** Appends the state of the records that followed this one. */
+        void merge(LiveState later) {
+            records += later.records;
+            corrupt += later.corrupt;
+            for (String id : later.deletedStudents) {
+                students.remove(id);
+                enrollments.remove(id);
+            }
+            later.pendingAssignments.forEach(this::assign);
+            students.putAll(later.students);
+            teachers.putAll(later.teachers);
+            courses.putAll(later.courses);
+            for (Map.Entry<String, Set<String>> e : later.enrollments.entrySet()) {
+                Set<String> existing = enrollments.get(e.getKey());
+                if (existing == null) {
+                    enrollments.put(e.getKey(), e.getValue());
+                } else {
+                    existing.addAll(e.getValue());
+                }
+            }
+        }
+
+        long size() {
+            long n = students.size() + teachers.size() + courses.size();
+            for (Set<String> e : enrollments.values()) n += e.size();
+            return n;
+        }
+
+        List<String[]> records() {
+            List<String[]> out = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, size()));
+            out.addAll(students.values());
+            out.addAll(teachers.values());
+            out.addAll(courses.values());
+            for (Map.Entry<String, Set<String>> e : enrollments.entrySet()) {
+                for (String courseId : e.getValue()) {
+                    out.add(enrollmentRecord(e.getKey(), courseId));
+                }
+            }
+            return out;
+        }
+    }
+
+    /** Replays the log and returns its live set. */
+    public LiveState replay() throws IOException {
+        long upTo;
+        synchronized (this) {
+            awaitCompaction();
+            upTo = activeSegment;
+        }
+        LiveState state = replaySegments(upTo);
+        synchronized (this) {
+            rebuildCounters(state);
+        }
+        return state;
+    }
+
+    private LiveState replaySegments(long upTo) throws IOException {
+        LiveState state = new LiveState();
+        for (long segment : segmentsFromLastCompaction(upTo)) {
+            Path file = segmentPath(segment);
+            long size = Files.size(file);
+            if (size >= parallelReplayBytes && size <= Integer.MAX_VALUE
+                    && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                replayParallel(file, (int) size, state);
+            } else {
+                try (InputStream in = Files.newInputStream(file)) {
+                    CsvReader reader = new CsvReader(in);
+                    CRC32C crc = new CRC32C();
+                    while (reader.next()) {
+                        state.apply(reader, crc);
+                    }
+                }
+            }
+        }
+        if (state.corrupt > 0) {
+            System.err.println("[DB Warning] Skipped " + state.corrupt + " log records that failed their checksum.");
+        }
+        return state;
+    }
+
+    /**
+     * Splits a segment into chunks at record boundaries, parses the chunks on the
+     * common fork-join pool and merges their states in file order. Quotes are
+     * tracked exactly as {@link CsvReader} does, opening a quoted field only at
+     * the start of a field, so a stray quote inside an unquoted field of an
+     * older record cannot throw the split into the middle of a quoted one.
+     */
+    private void replayParallel(Path file, int size, LiveState state) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int target = Math.max(1 << 20, size / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            List<ForkJoinTask<LiveState>> chunks = new ArrayList<>();
+            boolean quoted = false;
+            boolean fieldStart = true;
+            int start = 0;
+            for (int i = 0; i < size; i++) {
+                byte b = mapped.get(i);
+                if (quoted) {
+                    if (b == '"') {
+                        if (i + 1 < size && mapped.get(i + 1) == '"') {
+                            i++; // doubled quote
+                        } else {
+                            quoted = false;
+                        }
+                    }
+                } else if (b == '"' && fieldStart) {
+                    quoted = true;
+                    fieldStart = false;
+                } else if (b == ',') {
+                    fieldStart = true;
+                } else if (b == '\n') {
+                    fieldStart = true;
+                    if (i + 1 - start >= target) {
+                        chunks.add(ForkJoinPool.commonPool().submit(parseChunk(mapped, start, i + 1)));
+                        start = i + 1;
+                    }
+                } else {
+                    fieldStart = false;
+                }
+            }
+            if (start < size) {
+                chunks.add(ForkJoinPool.commonPool().submit(parseChunk(mapped, start, size)));
+            }
+            for (ForkJoinTask<LiveState> chunk : chunks) {
+                state.merge(chunk.join());
+            }
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static Callable<LiveState> parseChunk(MappedByteBuffer mapped, int from, int to) {
+        return () -> {
+            byte[] bytes = new byte[to - from];
+            ByteBuffer slice = mapped.duplicate();
+            slice.position(from);
+            slice.get(bytes);
+            LiveState state = new LiveState(true);
+            CsvReader reader = new CsvReader(bytes, 0, bytes.length);
+            CRC32C crc = new CRC32C();
+            while (reader.next()) {
+                state.apply(reader, crc);
+            }
+            return state;
+        };
+    }
+
+    private void rebuildCounters(LiveState state) {
+        studentKeys.clear();
+        studentKeys.addAll(state.students.keySet());
+        teacherKeys.clear();
+        teacherKeys.addAll(state.teachers.keySet());
+        courseKeys.clear();
+        courseKeys.addAll(state.courses.keySet());
+        enrollmentKeys.clear();
+        for (Map.Entry<String, Set<String>> e : state.enrollments.entrySet()) {
+            enrollmentKeys.put(e.getKey(), new HashSet<>(e.getValue()));
+        }
+        totalRecords = state.records;
+        deadRecords = Math.max(0, state.records - state.size());
+    }
+
+    // --- Compaction ---
+
+    public synchronized long getTotalRecords() { return totalRecords; }
+    public synchronized long getDeadRecords() { return deadRecords; }
+
+    /** Appends and fsyncs so far; with group commit the second stays well below the first. */
+    public long getAppendCount() { return journal == null ? 0 : journal.getAppendCount(); }
+    public long getSyncCount() { return journal == null ? 0 : journal.getSyncCount(); }
+
+    private void maybeCompact() {
+        if (totalRecords < compactMinRecords || deadRecords < totalRecords * compactRatio) return;
+        if (!compacting.compareAndSet(false, true)) return;
+        try {
+            // Seal the current segment; new appends go to a fresh one while we compact
+            roll();
+        } catch (IOException e) {
+            compacting.set(false);
+            System.err.println("[DB Error] Log compaction could not start: " + e.getMessage());
+            return;
+        }
+        long sealed = activeSegment - 1;
+        long deadAtSeal = deadRecords;
+        long totalAtSeal = totalRecords;
+        compactor.execute(() -> compact(sealed, deadAtSeal, totalAtSeal));
+    }
+
+    private void compact(long sealed, long deadAtSeal, long totalAtSeal) {
+        try {
+            LiveState state = replaySegments(sealed);
+            List<String[]> live = state.records();
+            Path tmp = dir.resolve(SEGMENT_PREFIX + sealed + ".compact.tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                out.write((COMPACTED_MARKER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < live.size(); i += 1024) {
+                    out.write(frame(live.subList(i, Math.min(i + 1024, live.size()))));
+                }
+            }
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+            Files.move(tmp, segmentPath(sealed), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                removeSupersededSegments();
+                totalRecords -= totalAtSeal - live.size();
+                deadRecords -= deadAtSeal;
+            }
+            System.out.println("[DB] Log compacted: " + totalAtSeal + " records -> " + live.size() + " live.");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[DB Error] Log compaction failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting.set(false);
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitCompaction() {
+        while (compacting.get()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            awaitCompaction();
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        compactor.shutdown();
+    }
+
+    // --- Segment files ---
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private boolean isCompacted(long segment) throws IOException {
+        try (Stream<String> lines = Files.lines(segmentPath(segment), StandardCharsets.UTF_8)) {
+            return lines.findFirst().map(COMPACTED_MARKER::equals).orElse(false);
+        }
+    }
+
+    /** Segments to replay: the newest compacted one up to {@code upTo}, and everything after it. */
+    private List<Long> segmentsFromLastCompaction(long upTo) throws IOException {
+        List<Long> all = listSegments();
+        List<Long> result = new ArrayList<>();
+        for (int i = all.size() - 1; i >= 0; i--) {
+            long segment = all.get(i);
+            if (segment > upTo) continue;
+            result.add(0, segment);
+            if (isCompacted(segment)) break;
+        }
+        return result;
+    }
+
+    private void removeSupersededSegments() throws IOException {
+        List<Long> keep = segmentsFromLastCompaction(Long.MAX_VALUE);
+        if (keep.isEmpty()) return;
+        long base = keep.get(0);
+        for (long segment : listSegments()) {
+            if (segment < base) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+    }
+
+    // --- Fields ---
+
+    static String field(String[] record, int i) {
+        return record.length > i ? record[i] : "";
+    }
+
+    /** Converts a department field, or returns null when the value is not a known department. */
+    static Department department(String value) {
+        if (value == null) return null;
+        try {
+            return Department.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package utilities;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Brings the SQLite schema up to {@link #LATEST} by running ordered migrations.
+ * The current version is kept in {@code PRAGMA user_version}, which lives in the
+ * database header, so a database that is already current is recognised without
+ * running any DDL. Every applied migration is also recorded in SCHEMA_VERSION.
+ */
+class SchemaMigrator {
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final List<String> statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = List.of(statements);
+        }
+    }
+
+    // Append new migrations at the end; never edit one that has shipped
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create base tables",
+                    // IF NOT EXISTS: databases created before versioning already have these
+                    "CREATE TABLE IF NOT EXISTS STUDENTS (" +
+                            "  id TEXT PRIMARY KEY," +
+                            "  name TEXT NOT NULL," +
+                            "  major TEXT" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS TEACHERS (" +
+                            "  id TEXT PRIMARY KEY," +
+                            "  name TEXT NOT NULL," +
+                            "  department TEXT," +
+                            "  subject TEXT" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS COURSES (" +
+                            "  id TEXT PRIMARY KEY," +
+                            "  name TEXT NOT NULL," +
+                            "  department TEXT," +
+                            "  teacher_id TEXT," +
+                            "  FOREIGN KEY(teacher_id) REFERENCES TEACHERS(id)" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS ENROLLMENTS (" +
+                            "  student_id TEXT NOT NULL," +
+                            "  course_id TEXT NOT NULL," +
+                            "  PRIMARY KEY (student_id, course_id)," +
+                            "  FOREIGN KEY(student_id) REFERENCES STUDENTS(id)," +
+                            "  FOREIGN KEY(course_id) REFERENCES COURSES(id)" +
+                            ")"),
+            new Migration(2, "Add lookup indexes",
+                    // The primary key covers student -> courses; this covers course -> students
+                    "CREATE INDEX IF NOT EXISTS IDX_ENROLLMENTS_COURSE ON ENROLLMENTS(course_id, student_id)",
+                    "CREATE INDEX IF NOT EXISTS IDX_COURSES_TEACHER ON COURSES(teacher_id)",
+                    "CREATE INDEX IF NOT EXISTS IDX_COURSES_DEPARTMENT ON COURSES(department)",
+                    "CREATE INDEX IF NOT EXISTS IDX_TEACHERS_DEPARTMENT ON TEACHERS(department)",
+                    "CREATE INDEX IF NOT EXISTS IDX_STUDENTS_MAJOR ON STUDENTS(major)"),
+            new Migration(3, "Add case-insensitive lookup indexes",
+                    // IDs, majors and teacher IDs are matched case-insensitively, so on-demand
+                    // reads filter with COLLATE NOCASE; these replace the BINARY versions
+                    "CREATE INDEX IF NOT EXISTS IDX_STUDENTS_ID_NOCASE ON STUDENTS(id COLLATE NOCASE)",
+                    "CREATE INDEX IF NOT EXISTS IDX_TEACHERS_ID_NOCASE ON TEACHERS(id COLLATE NOCASE)",
+                    "CREATE INDEX IF NOT EXISTS IDX_COURSES_ID_NOCASE ON COURSES(id COLLATE NOCASE)",
+                    "DROP INDEX IF EXISTS IDX_STUDENTS_MAJOR",
+                    "CREATE INDEX IF NOT EXISTS IDX_STUDENTS_MAJOR_NOCASE ON STUDENTS(major COLLATE NOCASE, id)",
+                    "DROP INDEX IF EXISTS IDX_COURSES_TEACHER",
+                    "CREATE INDEX IF NOT EXISTS IDX_COURSES_TEACHER_NOCASE ON COURSES(teacher_id COLLATE NOCASE)")
+    );
+
+    static final int LATEST = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
+    /** Applies every pending migration, each in its own transaction. Returns how many ran. */
+    int migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+        if (current >= LATEST) {
+            return 0;
+        }
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (" +
+                    "  version INTEGER PRIMARY KEY," +
+                    "  description TEXT NOT NULL," +
+                    "  applied_at TEXT NOT NULL" +
+                    ")");
+            conn.commit();
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= current) continue;
+                try {
+                    for (String sql : m.statements) {
+                        stmt.execute(sql);
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT OR REPLACE INTO SCHEMA_VERSION(version, description, applied_at) VALUES(?,?,?)")) {
+                        ps.setInt(1, m.version);
+                        ps.setString(2, m.description);
+                        ps.setString(3, Instant.now().toString());
+                        ps.executeUpdate();
+                    }
+                    // PRAGMA takes no bind parameters; the version is our own int
+                    stmt.execute("PRAGMA user_version = " + m.version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Schema migration " + m.version + " (" + m.description + ") failed: "
+                            + e.getMessage(), e);
+                }
+                System.out.println("[DB] Applied schema migration " + m.version + ": " + m.description);
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package utilities;
+
+import courses.Department;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Non-unique index from an attribute value to the entities that have it, kept
+ * in sync by {@link IndexedList} listeners. Each entity remembers the key it was
+ * filed under, so it can be removed even after the attribute has changed.
+ */
+class SecondaryIndex<K, T> implements IndexedList.Listener<T> {
+
+    private final Function<T, K> keyOf;
+    private final Map<K, Set<T>> buckets;
+    private final Map<T, K> filedUnder = new IdentityHashMap<>();
+
+    private SecondaryIndex(Function<T, K> keyOf, Map<K, Set<T>> buckets) {
+        this.keyOf = keyOf;
+        this.buckets = buckets;
+    }
+
+    static <T> SecondaryIndex<Department, T> byDepartment(Function<T, Department> keyOf) {
+        return new SecondaryIndex<>(keyOf, new EnumMap<>(Department.class));
+    }
+
+    /** Text keys are matched case-insensitively, like primary IDs. */
+    static <T> SecondaryIndex<String, T> byText(Function<T, String> keyOf) {
+        return new SecondaryIndex<>(keyOf.andThen(IndexedList::canonical), new HashMap<>());
+    }
+
+    @Override
+    public synchronized void added(T item) {
+        K key = keyOf.apply(item);
+        if (key == null || filedUnder.containsKey(item)) return;
+        buckets.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(item);
+        filedUnder.put(item, key);
+    }
+
+    @Override
+    public synchronized void removed(T item) {
+        K key = filedUnder.remove(item);
+        if (key == null) return;
+        Set<T> bucket = buckets.get(key);
+        bucket.remove(item);
+        if (bucket.isEmpty()) buckets.remove(key);
+    }
+
+    @Override
+    public synchronized void cleared() {
+        buckets.clear();
+        filedUnder.clear();
+    }
+
+    /**
+     * Applies {@code change} to an entity's indexed attribute and refiles it.
+     * Entities that are not in the index are changed but not added.
+     */
+    synchronized void reindex(T item, Runnable change) {
+        boolean indexed = filedUnder.containsKey(item);
+        removed(item);
+        change.run();
+        if (indexed) added(item);
+    }
+
+    /** Entities filed under {@code key}, in insertion order; a copy, safe to iterate. */
+    synchronized List<T> get(Object key) {
+        Set<T> bucket = buckets.get(key instanceof String ? IndexedList.canonical((String) key) : key);
+        return bucket == null ? Collections.emptyList() : new ArrayList<>(bucket);
+    }
+
+    /** Number of entities per key, in key order for departments. */
+    synchronized Map<K, Integer> counts() {
+        Map<K, Integer> counts = new LinkedHashMap<>();
+        buckets.forEach((key, bucket) -> counts.put(key, bucket.size()));
+        return counts;
+    }
+}
@@ -0,0 +1,598 @@
+package utilities;
+
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import people.Student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A DatabaseService that spreads courses, and the enrollments in them, over
+ * several shards, by department or by a hash of the course ID. Each shard is a
+ * DatabaseService of its own with its own SQLite file (or record log) and
+ * connection pool, so writes to different shards no longer wait on one
+ * database lock. Students and teachers stay in the home store this class
+ * extends, which is why {@link UniversityService} can use it like any other
+ * DatabaseService.
+ *
+ * <p>A write goes to the shard that owns its course. A bulk write is split by
+ * shard and the parts are written in parallel. Reads that span shards fan out
+ * in parallel and merge the results. {@link #inTransaction} spans every store
+ * and rolls all of them back if its work throws. The stores commit one after
+ * another, though, so a crash between two commits can leave it half applied.
+ *
+ * <p>The first time an unsharded SQL database is opened this way, its courses
+ * and enrollments are moved into the shards. From then on the layout is
+ * fixed. Shard files are named after their department, or their slot and
+ * shard count, so a different layout starts empty instead of reading from the
+ * wrong files.
+ */
+public class ShardedDatabaseService extends DatabaseService {
+
+    public enum Partitioning { DEPARTMENT, HASH }
+
+    public static class Config {
+        public Partitioning partitioning = Partitioning.DEPARTMENT;
+        /** Number of course shards when partitioning by hash. */
+        public int hashShards = 4;
+
+        /** Parses {@code department}, {@code hash} or {@code hash:N}, as given to {@code -Dums.shards}. */
+        public static Config parse(String spec) {
+            Config config = new Config();
+            String[] parts = spec.trim().split(":", 2);
+            if (parts[0].equalsIgnoreCase("hash")) {
+                config.partitioning = Partitioning.HASH;
+                if (parts.length > 1) config.hashShards = Integer.parseInt(parts[1].trim());
+            } else if (!parts[0].equalsIgnoreCase("department") || parts.length > 1) {
+                throw new IllegalArgumentException("Shard layout must be 'department' or 'hash:N', not '" + spec + "'");
+            }
+            return config;
+        }
+    }
+
+    private static final int MOVE_CHUNK = 10_000;
+
+    // Same names as DatabaseService's, so the metrics cover sharded and plain stores alike
+    private static final Metrics.Operation LOAD = Metrics.operation("db.loadData");
+    private static final Metrics.Operation EXPORT_TABLES = Metrics.operation("db.exportTables");
+
+    private final Partitioning partitioning;
+    private final DatabaseService[] shards;
+    private final String[] shardNames;
+    private final ExecutorService fanOut;
+    // Department partitioning only: folded course ID -> shard, since enrollment writes carry just the ID
+    private final Map<String, Integer> courseShards = new ConcurrentHashMap<>();
+    // Set while this thread is inside inTransaction(), which holds a connection on every store
+    private final ThreadLocal<Boolean> inTransaction = ThreadLocal.withInitial(() -> false);
+
+    /** Shards next to ./ums.db and under ./data, as {@link DatabaseService#DatabaseService()} uses. */
+    public ShardedDatabaseService(Config config) {
+        this(defaultDbFile(), defaultDataDir(), PersistenceMode.SQL, config);
+    }
+
+    /**
+     * @param dbFile home database; shard files go next to it, e.g. {@code ums.physics.db}
+     * @param dataDir home FILE-mode directory; shards get {@code shard-<name>} subdirectories
+     */
+    public ShardedDatabaseService(Path dbFile, Path dataDir, PersistenceMode preferredMode, Config config) {
+        super(dbFile, dataDir, preferredMode);
+        if (config.partitioning == Partitioning.HASH && config.hashShards < 1) {
+            throw new IllegalArgumentException("Hash partitioning needs at least one shard");
+        }
+        this.partitioning = config.partitioning;
+        int count = partitioning == Partitioning.DEPARTMENT ? Department.values().length : config.hashShards;
+        String stem = dbFile.getFileName().toString().replaceFirst("\\.db$", "");
+        shards = new DatabaseService[count];
+        shardNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            shardNames[i] = partitioning == Partitioning.DEPARTMENT
+                    ? Department.values()[i].name().toLowerCase(Locale.ROOT)
+                    : "hash-" + i + "-of-" + count;
+            shards[i] = new DatabaseService(dbFile.resolveSibling(stem + "." + shardNames[i] + ".db"),
+                    dataDir.resolve("shard-" + shardNames[i]), preferredMode);
+        }
+        fanOut = Executors.newFixedThreadPool(count + 1, r -> {
+            Thread t = new Thread(r, "ums-shard");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // --- Routing ---
+
+    private static String fold(String courseId) {
+        return courseId.toLowerCase(Locale.ROOT);
+    }
+
+    private int shardOf(Course c) {
+        return partitioning == Partitioning.DEPARTMENT ? c.getDepartment().ordinal() : hashSlot(c.getCourseId());
+    }
+
+    // String.hashCode is fixed by the language spec, so slots survive restarts
+    private int hashSlot(String courseId) {
+        int h = fold(courseId).hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    /** The shard holding the course, or null when no shard knows it. */
+    private Integer findShard(String courseId) {
+        return partitioning == Partitioning.HASH ? Integer.valueOf(hashSlot(courseId)) : courseShards.get(fold(courseId));
+    }
+
+    private int shardOfCourse(String courseId) {
+        Integer shard = findShard(courseId);
+        if (shard == null) {
+            throw new RuntimeException("[DB Error] Course " + courseId + " is not in any shard");
+        }
+        return shard;
+    }
+
+    private void register(String courseId, int shard) {
+        if (partitioning == Partitioning.DEPARTMENT) courseShards.put(fold(courseId), shard);
+    }
+
+    /**
+     * Runs {@code call} for every shard index and returns the results in shard
+     * order. Shards run in parallel, except inside {@link #inTransaction}: the
+     * connections it holds belong to this thread.
+     */
+    private <R> List<R> eachShard(IntFunction<R> call) {
+        List<R> results = new ArrayList<>(shards.length);
+        if (inTransaction.get() || shards.length == 1) {
+            for (int i = 0; i < shards.length; i++) results.add(call.apply(i));
+            return results;
+        }
+        List<Future<R>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            futures.add(fanOut.submit(() -> call.apply(shard)));
+        }
+        for (Future<R> f : futures) {
+            try {
+                results.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("[DB Error] Interrupted while waiting for a shard", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException("[DB Error] Shard operation failed: " + cause.getMessage(), cause);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Splits a bulk write by shard and writes the parts in parallel. Failures
+     * come back keyed by position in {@code rows}. Outside a transaction, a
+     * shard that fails as a whole fails just its own rows, since the other
+     * parts are already committed.
+     */
+    private <T> Map<Integer, String> writeSplit(List<T> rows, ToIntFunction<T> route,
+                                               BiFunction<DatabaseService, List<T>, Map<Integer, String>> write) {
+        List<List<T>> parts = new ArrayList<>(shards.length);
+        List<List<Integer>> positions = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            int shard = route.applyAsInt(rows.get(i));
+            parts.get(shard).add(rows.get(i));
+            positions.get(shard).add(i);
+        }
+        boolean atomic = inTransaction.get();
+        List<Map<Integer, String>> results = eachShard(s -> {
+            List<T> part = parts.get(s);
+            if (part.isEmpty()) return Collections.<Integer, String>emptyMap();
+            if (atomic) return write.apply(shards[s], part);
+            try {
+                return write.apply(shards[s], part);
+            } catch (RuntimeException e) {
+                Map<Integer, String> all = new HashMap<>();
+                for (int i = 0; i < part.size(); i++) all.put(i, e.getMessage());
+                return all;
+            }
+        });
+        Map<Integer, String> failures = new TreeMap<>();
+        for (int s = 0; s < shards.length; s++) {
+            for (Map.Entry<Integer, String> f : results.get(s).entrySet()) {
+                failures.put(positions.get(s).get(f.getKey()), f.getValue());
+            }
+        }
+        return failures;
+    }
+
+    // --- Lifecycle ---
+
+    @Override
+    public void initDatabase() {
+        super.initDatabase();
+        for (DatabaseService shard : shards) {
+            shard.initDatabase();
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].getPersistenceMode() != getPersistenceMode()) {
+                throw new RuntimeException("[DB Error] Shard " + shardNames[i] + " opened in "
+                        + shards[i].getPersistenceMode() + " mode, the home store in " + getPersistenceMode());
+            }
+        }
+        if (getPersistenceMode() == PersistenceMode.SQL) {
+            moveUnshardedCourses();
+            if (partitioning == Partitioning.DEPARTMENT) indexCourses();
+        }
+        System.out.println("[DB] Courses partitioned by " + partitioning.name().toLowerCase(Locale.ROOT)
+                + " over " + shards.length + " shards.");
+    }
+
+    // Department partitioning: learns where every stored course lives
+    private void indexCourses() {
+        courseShards.clear();
+        List<List<String>> ids = eachShard(s -> {
+            List<String> all = new ArrayList<>();
+            List<String> page;
+            do {
+                page = shards[s].findCourseIds(null, null, all.isEmpty() ? null : all.get(all.size() - 1), MOVE_CHUNK);
+                all.addAll(page);
+            } while (page.size() == MOVE_CHUNK);
+            return all;
+        });
+        for (int s = 0; s < shards.length; s++) {
+            for (String id : ids.get(s)) register(id, s);
+        }
+    }
+
+    // Courses and enrollments written before sharding was turned on move into their shards once
+    private void moveUnshardedCourses() {
+        if (super.countCoursesByDepartment().isEmpty()) return;
+        Map<String, Course> courses = new HashMap<>();
+        try {
+            streamTable(DataExporter.Table.COURSES, rows(row -> {
+                Department dept = RecordLog.department(row[2]);
+                if (dept == null) return;
+                Course c = new Course(row[0], row[1], dept);
+                c.assignTeacher(row[3]);
+                courses.put(fold(row[0]), c);
+            }));
+            streamTable(DataExporter.Table.ENROLLMENTS, rows(row -> {
+                Course c = courses.get(fold(row[1]));
+                if (c != null) c.addStudent(row[0]);
+            }));
+        } catch (SQLException e) {
+            throw new RuntimeException("[DB Error] Failed to read unsharded courses: " + e.getMessage(), e);
+        }
+        long enrollments = moveIntoShards(courses.values());
+        deleteCoursesAndEnrollments();
+        System.out.println("[DB] Moved " + courses.size() + " courses and " + enrollments
+                + " enrollments from the home database into their shards.");
+    }
+
+    /**
+     * Writes courses, with their rosters, into the shards they belong to. A
+     * course already there from an interrupted earlier move is rejected as a
+     * duplicate, which is harmless. Returns the number of enrollments written.
+     */
+    private long moveIntoShards(Collection<Course> courses) {
+        List<Course> list = new ArrayList<>(courses);
+        for (Course c : list) register(c.getCourseId(), shardOf(c));
+        insertCourses(list);
+        long moved = 0;
+        List<Enrollment> chunk = new ArrayList<>(MOVE_CHUNK);
+        for (Course c : list) {
+            for (String studentId : c.getEnrolledStudentIds()) {
+                chunk.add(new Enrollment(studentId, c.getCourseId()));
+                if (chunk.size() == MOVE_CHUNK) {
+                    moved += chunk.size() - insertEnrollments(chunk).size();
+                    chunk.clear();
+                }
+            }
+        }
+        moved += chunk.size() - insertEnrollments(chunk).size();
+        return moved;
+    }
+
+    /** A sink that only wants the rows. */
+    private static DataExporter.TableSink rows(Consumer<String[]> handler) {
+        return new DataExporter.TableSink() {
+            @Override
+            public void begin(DataExporter.Table table) { }
+
+            @Override
+            public void row(String[] values) {
+                handler.accept(values);
+            }
+
+            @Override
+            public void end(DataExporter.Table table) { }
+        };
+    }
+
+    @Override
+    public void loadData(DataModel model) {
+        LOAD.run(() -> {
+            System.out.println("[DB] Loading data from " + (shards.length + 1) + " stores...");
+            if (getPersistenceMode() == PersistenceMode.NONE) {
+                System.out.println("[DB Warning] Persistence disabled; skipping loadData.");
+                return;
+            }
+            lastLoadTimings.clear();
+            long start = System.nanoTime();
+            try {
+                // 1. The home store and every shard at once, each on its own loader threads
+                Future<Tables> homeRead = fanOut.submit(this::readTables);
+                List<Future<Tables>> shardReads = new ArrayList<>(shards.length);
+                for (DatabaseService shard : shards) {
+                    shardReads.add(fanOut.submit(shard::readTables));
+                }
+                Tables home = join(homeRead);
+                List<Tables> parts = new ArrayList<>(shards.length);
+                for (Future<Tables> f : shardReads) {
+                    parts.add(join(f));
+                }
+                lastLoadTimings.put("shards", elapsedMillis(start));
+
+                // 2. One course list; each shard linked the course side of its enrollments,
+                //    the student side is linked here against the home store's students
+                long phase = System.nanoTime();
+                int total = home.courses.size();
+                for (Tables t : parts) total += t.courses.size();
+                IndexedList<Course> courses = new IndexedList<>(Course::getCourseId, total);
+                for (int s = 0; s < shards.length; s++) {
+                    for (Course c : parts.get(s).courses) {
+                        courses.add(c);
+                        register(c.getCourseId(), s);
+                        for (String studentId : c.getEnrolledStudentIds()) {
+                            Student student = home.students.lookup(studentId);
+                            if (student != null) student.enroll(c.getCourseId());
+                        }
+                    }
+                }
+                // FILE mode cannot delete from the home log, so courses from before sharding
+                // stay there; the shard copy wins, and any not copied yet are copied now
+                List<Course> unsharded = new ArrayList<>();
+                for (Course c : home.courses) {
+                    if (courses.lookup(c.getCourseId()) == null) unsharded.add(c);
+                }
+                if (!unsharded.isEmpty()) {
+                    long enrollments = moveIntoShards(unsharded);
+                    courses.addAll(unsharded);
+                    System.out.println("[DB] Copied " + unsharded.size() + " courses and " + enrollments
+                            + " enrollments from the home store into their shards.");
+                }
+                lastLoadTimings.put("link", elapsedMillis(phase));
+
+                phase = System.nanoTime();
+                model.absorb(home.students, home.teachers, courses);
+                lastLoadTimings.put("model", elapsedMillis(phase));
+                System.out.println("[DB] Data loaded successfully.");
+                lastLoadTimings.put("total", elapsedMillis(start));
+                System.out.println("[DB] Load timings (ms): " + getLastLoadTimings());
+            } catch (SQLException e) {
+                System.err.println("[DB Error] Could not load data: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("[DB Error] Failed to load file-based data: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Spans the home store and every shard; see the class comment for what a crash can leave. */
+    @Override
+    public void inTransaction(Runnable work) {
+        if (inTransaction.get()) {
+            work.run();
+            return;
+        }
+        Runnable chain = () -> {
+            inTransaction.set(true);
+            try {
+                work.run();
+            } finally {
+                inTransaction.set(false);
+            }
+        };
+        for (int i = shards.length - 1; i >= 0; i--) {
+            DatabaseService shard = shards[i];
+            Runnable inner = chain;
+            chain = () -> shard.inTransaction(inner);
+        }
+        super.inTransaction(chain);
+    }
+
+    @Override
+    public String getSourceFingerprint() {
+        String home = super.getSourceFingerprint();
+        if (home == null) return null;
+        StringBuilder sb = new StringBuilder(home);
+        for (DatabaseService shard : shards) {
+            String part = shard.getSourceFingerprint();
+            if (part == null) return null;
+            sb.append('|').append(part);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdownNow();
+        for (DatabaseService shard : shards) {
+            shard.close();
+        }
+        super.close();
+    }
+
+    @Override
+    public void clearDatabase() {
+        super.clearDatabase();
+        eachShard(s -> {
+            shards[s].clearDatabase();
+            return null;
+        });
+        courseShards.clear();
+    }
+
+    // --- Reads ---
+
+    @Override
+    public Student fetchStudent(String id) {
+        Student s = super.fetchStudent(id);
+        if (s == null) return null;
+        for (List<String> courseIds : eachShard(i -> shards[i].findEnrolledCourseIds(s.getId()))) {
+            for (String courseId : courseIds) s.enroll(courseId);
+        }
+        return s;
+    }
+
+    @Override
+    public Course fetchCourse(String id) {
+        Integer shard = findShard(id);
+        return shard == null ? null : shards[shard].fetchCourse(id);
+    }
+
+    @Override
+    public List<String> findCourseIds(Department dept, String teacherId, String afterId, int limit) {
+        if (partitioning == Partitioning.DEPARTMENT && dept != null) {
+            return shards[dept.ordinal()].findCourseIds(dept, teacherId, afterId, limit);
+        }
+        // Each shard's first `limit` in ID order, merged
+        List<String> ids = new ArrayList<>();
+        for (List<String> part : eachShard(s -> shards[s].findCourseIds(dept, teacherId, afterId, limit))) {
+            ids.addAll(part);
+        }
+        Collections.sort(ids);
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    @Override
+    public List<String> findCourseIdsByName(String query, int limit) {
+        List<String> ids = new ArrayList<>();
+        for (List<String> part : eachShard(s -> shards[s].findCourseIdsByName(query, limit))) {
+            ids.addAll(part);
+        }
+        Collections.sort(ids);
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    @Override
+    public Map<Department, Integer> countCoursesByDepartment() {
+        Map<Department, Integer> counts = new EnumMap<>(Department.class);
+        for (Map<Department, Integer> part : eachShard(s -> shards[s].countCoursesByDepartment())) {
+            part.forEach((dept, n) -> counts.merge(dept, n, Integer::sum));
+        }
+        return counts;
+    }
+
+    @Override
+    void addCourseStatistics(ModelStatistics.Change stats) {
+        // One shard at a time: they all add to the same statistics
+        for (DatabaseService shard : shards) {
+            shard.addCourseStatistics(stats);
+        }
+    }
+
+    /** Students and teachers from the home store, then courses and enrollments shard by shard, each in key order. */
+    @Override
+    void exportTables(DataExporter.TableSink sink) throws IOException {
+        try {
+            EXPORT_TABLES.run(() -> {
+                requireSql();
+                inTransaction(() -> {
+                    try {
+                        for (DataExporter.Table table : DataExporter.Table.values()) {
+                            sink.begin(table);
+                            if (table == DataExporter.Table.STUDENTS || table == DataExporter.Table.TEACHERS) {
+                                streamTable(table, sink);
+                            } else {
+                                for (DatabaseService shard : shards) shard.streamTable(table, sink);
+                            }
+                            sink.end(table);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (SQLException e) {
+                        throw new RuntimeException("[DB Error] Export failed: " + e.getMessage(), e);
+                    }
+                });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // --- Writes ---
+
+    @Override
+    public void insertCourse(Course c) {
+        int shard = shardOf(c);
+        shards[shard].insertCourse(c);
+        register(c.getCourseId(), shard);
+    }
+
+    @Override
+    public Map<Integer, String> insertCourses(List<Course> rows) {
+        Map<Integer, String> failures = writeSplit(rows, this::shardOf, DatabaseService::insertCourses);
+        for (int i = 0; i < rows.size(); i++) {
+            if (!failures.containsKey(i)) register(rows.get(i).getCourseId(), shardOf(rows.get(i)));
+        }
+        return failures;
+    }
+
+    // A course's enrollments all live in its shard, so the seat check there sees every one of them
+
+    @Override
+    public boolean insertEnrollment(String studentId, String courseId, int capacity) {
+        return shards[shardOfCourse(courseId)].insertEnrollment(studentId, courseId, capacity);
+    }
+
+    @Override
+    public Map<Integer, String> insertEnrollments(List<Enrollment> rows, int capacity) {
+        return writeSplit(rows, e -> shardOfCourse(e.getCourseId()),
+                (shard, part) -> shard.insertEnrollments(part, capacity));
+    }
+
+    @Override
+    public void updateTeacherAssignment(String courseId, String teacherId) {
+        shards[shardOfCourse(courseId)].updateTeacherAssignment(courseId, teacherId);
+    }
+
+    @Override
+    public Map<Integer, String> updateTeacherAssignments(List<String[]> rows) {
+        return writeSplit(rows, a -> shardOfCourse(a[0]), DatabaseService::updateTeacherAssignments);
+    }
+
+    /** Removes the student's enrollments from every shard, then the student. */
+    @Override
+    public void deleteStudent(String id) {
+        eachShard(s -> {
+            shards[s].deleteStudent(id);
+            return null;
+        });
+        super.deleteStudent(id);
+    }
+}
@@ -0,0 +1,110 @@
+package utilities;
+
+import people.Student;
+import people.Teacher;
+import courses.Course;
+import courses.Department;
+import courses.Enrollment;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The students, teachers and courses that {@link UniversityService} works on.
+ * {@link DataModel} holds everything in memory; {@link LazyDataModel} reads
+ * entities from storage as they are used.
+ */
+public interface UniversityModel {
+
+    // The resident entities; with a model that reads through, not all of them
+    List<Student> getStudents();
+    List<Teacher> getTeachers();
+    List<Course> getCourses();
+
+    void setStudents(List<Student> students);
+    void setTeachers(List<Teacher> teachers);
+    void setCourses(List<Course> courses);
+
+    /**
+     * True when entities are read from storage on demand rather than held, so
+     * storage has to be queryable and written through on every change.
+     */
+    default boolean readsThrough() {
+        return false;
+    }
+
+    /**
+     * The current {@link ModelVersion}, for readers that need a consistent view
+     * while writes go on; empty if this model does not publish versions.
+     */
+    Optional<ModelVersion> currentVersion();
+
+    /** Enrollment aggregates over the whole model. */
+    ModelStatistics statistics();
+
+    Optional<Student> findStudent(String id);
+    Optional<Teacher> findTeacher(String id);
+    Optional<Course> findCourse(String id);
+
+    // --- Held Lookups ---
+    // A change that modifies an entity looks it up with a hold and releases it
+    // once the change is written, so a model that swaps entities out keeps the
+    // held ones in place. None of these serialize anything by default: concurrent
+    // enrollments are kept apart by each course's seat counter.
+
+    default Optional<Student> holdStudent(String id) {
+        return findStudent(id);
+    }
+
+    default Optional<Course> holdCourse(String id) {
+        return findCourse(id);
+    }
+
+    /** As {@link #holdCourse}; a model may also serialize changes made under it per course. */
+    default Optional<Course> lockCourse(String id) {
+        return holdCourse(id);
+    }
+
+    default void releaseStudent(Student student) { }
+
+    default void releaseCourse(Course course) { }
+
+    // --- Paging ---
+    // A cursor comes from the previous page (null for the first) and is
+    // otherwise opaque; each model decides what it holds.
+
+    /** Students, only those with {@code major} unless it is null. */
+    Page<Student> pageStudents(String major, String cursor, int pageSize);
+
+    Page<Teacher> pageTeachers(Department dept, String cursor, int pageSize);
+
+    /** Courses, filtered by department and/or teacher where those are not null. */
+    Page<Course> pageCourses(Department dept, String teacherId, String cursor, int pageSize);
+
+    // --- Queries ---
+
+    List<Course> findCoursesByDepartment(Department dept);
+    List<Course> findCoursesByTeacher(String teacherId);
+    List<Teacher> findTeachersByDepartment(Department dept);
+    List<Student> findStudentsByMajor(String major);
+
+    List<Student> searchStudents(String query, int limit);
+    List<Teacher> searchTeachers(String query, int limit);
+    List<Course> searchCourses(String query, int limit);
+
+    Map<Department, Integer> countCoursesByDepartment();
+    Map<Department, Integer> countTeachersByDepartment();
+    long countStudents();
+
+    // --- Changes ---
+    // Attribute changes go through the model so its indexes follow. Enrollments
+    // are applied to the Student and Course objects directly and reported here
+    // once they are final.
+
+    void assignTeacher(Course course, String teacherId);
+    void updateMajor(Student student, String major);
+
+    void enrollmentsAdded(Collection<Enrollment> enrollments);
+    void enrollmentsRemoved(Collection<Enrollment> enrollments);
+}
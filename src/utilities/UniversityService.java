@@ -3,17 +3,72 @@ package utilities;
 import people.*;
 import courses.*;
 import interfaces.Printable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 public class UniversityService {
-    private static final int MAX_COURSE_CAPACITY = 30;
+    public static final int MAX_COURSE_CAPACITY = 30;
+    static final String COURSE_FULL = DatabaseService.COURSE_FULL;
+    private static final int DEFAULT_PAGE_SIZE = 50;
     
-    private DataModel model;
+    private UniversityModel model;
     private DatabaseService dbService;
+    private int importChunkSize = 1000;
+    private WriteBehindQueue writeBehind;
+    private Thread writeBehindHook;
+    private Path snapshotPath;
 
-    public UniversityService(DataModel model, DatabaseService dbService) {
+    // Latency and error counters per public operation, see Metrics
+    private static final Metrics.Operation SAVE_SNAPSHOT = Metrics.operation("service.saveSnapshot");
+    private static final Metrics.Operation LOAD = Metrics.operation("service.loadData");
+    private static final Metrics.Operation CLEAR = Metrics.operation("service.clearAllData");
+    private static final Metrics.Operation ADD_STUDENT = Metrics.operation("service.addStudent");
+    private static final Metrics.Operation REMOVE_STUDENT = Metrics.operation("service.removeStudent");
+    private static final Metrics.Operation LIST_STUDENTS = Metrics.operation("service.listStudents");
+    private static final Metrics.Operation ADD_TEACHER = Metrics.operation("service.addTeacher");
+    private static final Metrics.Operation LIST_TEACHERS = Metrics.operation("service.listTeachers");
+    private static final Metrics.Operation ADD_COURSE = Metrics.operation("service.addCourse");
+    private static final Metrics.Operation LIST_COURSES = Metrics.operation("service.listCourses");
+    private static final Metrics.Operation EXPORT = Metrics.operation("service.export");
+    private static final Metrics.Operation EXPORT_DATASET = Metrics.operation("service.exportDataset");
+    private static final Metrics.Operation QUERY = Metrics.operation("service.indexQuery");
+    private static final Metrics.Operation SEARCH = Metrics.operation("service.search");
+    private static final Metrics.Operation ENROLL_BATCH = Metrics.operation("service.enrollBatch");
+    private static final Metrics.Operation ENROLL = Metrics.operation("service.enrollStudent");
+    private static final Metrics.Operation ASSIGN_TEACHER = Metrics.operation("service.assignTeacher");
+    private static final Metrics.Operation IMPORT_STUDENTS = Metrics.operation("service.importStudents");
+    private static final Metrics.Operation IMPORT_TEACHERS = Metrics.operation("service.importTeachers");
+    private static final Metrics.Operation IMPORT_COURSES = Metrics.operation("service.importCourses");
+    private static final Metrics.Operation IMPORT_ENROLLMENTS = Metrics.operation("service.importEnrollments");
+    private static final Metrics.Operation IMPORT_ASSIGNMENTS = Metrics.operation("service.importAssignments");
+    private static final Metrics.Operation UPDATE_MAJOR = Metrics.operation("service.updateStudentMajor");
+
+    public UniversityService(UniversityModel model, DatabaseService dbService) {
         if (model == null || dbService == null) {
             throw new IllegalArgumentException("Model and DatabaseService cannot be null");
         }
@@ -26,24 +81,194 @@ public class UniversityService {
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize database: " + e.getMessage(), e);
         }
+        // Evicted entities are read back from storage, so it has to be queryable and current
+        if (model.readsThrough() && dbService.getPersistenceMode() != DatabaseService.PersistenceMode.SQL) {
+            throw new IllegalStateException("A model that reads through needs SQL persistence, not " + dbService.getPersistenceMode());
+        }
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        Metrics.gauge("model.students", () -> model.getStudents().size());
+        Metrics.gauge("model.teachers", () -> model.getTeachers().size());
+        Metrics.gauge("model.courses", () -> model.getCourses().size());
+        Metrics.gauge("persistence.mode", dbService::getPersistenceMode);
+        Metrics.gauge("model.version", () -> model.currentVersion().map(ModelVersion::getVersion).orElse(null));
+        Metrics.gauge("writeBehind.pending", () -> writeBehind == null ? null : writeBehind.getPendingCount());
+        Metrics.gauge("writeBehind.failed", () -> writeBehind == null ? null : writeBehind.getFailedCount());
+        Metrics.gauge("db.pool.statementHits", () -> {
+            ConnectionPool pool = dbService.getConnectionPool();
+            return pool == null ? null : pool.getStatementCacheHits();
+        });
+        Metrics.gauge("db.pool.statementMisses", () -> {
+            ConnectionPool pool = dbService.getConnectionPool();
+            return pool == null ? null : pool.getStatementCacheMisses();
+        });
+        Metrics.gauge("log.appends", () -> {
+            RecordLog log = dbService.getRecordLog();
+            return log == null ? null : log.getAppendCount();
+        });
+        Metrics.gauge("log.syncs", () -> {
+            RecordLog log = dbService.getRecordLog();
+            return log == null ? null : log.getSyncCount();
+        });
+        if (model instanceof LazyDataModel) {
+            LazyDataModel lazy = (LazyDataModel) model;
+            Metrics.gauge("cache.hits", lazy::getCacheHits);
+            Metrics.gauge("cache.misses", lazy::getCacheMisses);
+            Metrics.gauge("cache.hitRate", lazy::getCacheHitRate);
+            Metrics.gauge("cache.evictions", lazy::getCacheEvictions);
+            Metrics.gauge("cache.weight", lazy::getCacheWeight);
+        }
+    }
+
+    // --- Write-behind Persistence ---
+
+    /**
+     * Switches to write-behind mode: the model is updated immediately and the
+     * database writes are queued for a background writer. A shutdown hook flushes
+     * the queue if the JVM exits without {@link #shutdown()}.
+     */
+    public void enableWriteBehind(WriteBehindQueue.Config config) {
+        if (writeBehind != null) {
+            throw new IllegalStateException("Write-behind mode is already enabled");
+        }
+        if (model.readsThrough()) {
+            throw new IllegalStateException("Write-behind cannot be used with a model that reads through: evicted entities are re-read from the database");
+        }
+        writeBehind = new WriteBehindQueue(dbService, config);
+        writeBehindHook = new Thread(writeBehind::close, "ums-write-behind-flush");
+        Runtime.getRuntime().addShutdownHook(writeBehindHook);
+        System.out.println("[System] Write-behind persistence enabled (" + config.durability + ").");
+    }
+
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehind;
     }
 
-    // This method is now called by Main to load data at startup
+    /** Blocks until all queued writes are in the database. No-op without write-behind. */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    /** Flushes pending writes, releases database resources and writes the snapshot, if enabled. */
+    public void shutdown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            try {
+                Runtime.getRuntime().removeShutdownHook(writeBehindHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down; the hook finds the queue closed
+            }
+        }
+        dbService.close();
+        // Fingerprint only after closing, once the database files have settled
+        saveSnapshot();
+    }
+
+    /**
+     * Writes a change, then applies it to the model. With periodic write-behind
+     * the write is only queued when this returns; if it fails later, {@code undo}
+     * reverts the whole change on the writer thread (or at once, should it have
+     * failed already), so the model never keeps a change the database refused.
+     */
+    private void persist(String description, Runnable write, Runnable apply, Runnable undo) {
+        CompletableFuture<Void> written = submit(description, write);
+        apply.run();
+        written.whenComplete((ok, failure) -> {
+            if (failure == null) return;
+            try {
+                undo.run();
+            } catch (RuntimeException e) {
+                System.err.println("[Error] Could not undo " + description + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /** Runs the write, or queues it with write-behind; the future completes once it is in the database. */
+    private CompletableFuture<Void> submit(String description, Runnable write) {
+        if (writeBehind != null) {
+            return writeBehind.submit(description, write);
+        }
+        write.run();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // --- Snapshots ---
+
+    /** Enables the binary model snapshot at {@code path}; null disables it. */
+    public void setSnapshotPath(Path path) {
+        this.snapshotPath = path;
+    }
+
+    /** Writes a snapshot of the model now. Returns false if snapshots are disabled or the write failed. */
+    public boolean saveSnapshot() {
+        return SAVE_SNAPSHOT.call(() -> {
+            // A lazy model holds only part of the data; the database is its snapshot
+            if (snapshotPath == null || model.currentVersion().isEmpty()) {
+                return false;
+            }
+            flush();
+            String fingerprint = dbService.getSourceFingerprint();
+            if (fingerprint == null) {
+                return false;
+            }
+            // Taken after the fingerprint: a change that slips in between makes
+            // the snapshot look stale at the next start, never current but wrong
+            ModelVersion version = model.currentVersion().get();
+            try {
+                long start = System.nanoTime();
+                ModelSnapshot.write(version, snapshotPath, fingerprint);
+                System.out.println("[System] Snapshot saved to " + snapshotPath + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+                return true;
+            } catch (Exception e) {
+                System.err.println("[Error] Failed to save snapshot: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    // This method is now called by Main to load data at startup.
+    // A current snapshot is used when available; otherwise the data comes from storage.
     public void loadDataFromDatabase() {
-        dbService.loadData(model);
+        LOAD.run(() -> {
+            // Only the in-memory model is loaded up front
+            if (!(model instanceof DataModel)) {
+                System.out.println("[DB] Lazy model: entities are read on first use, "
+                        + model.countStudents() + " students in storage.");
+                return;
+            }
+            DataModel memory = (DataModel) model;
+            if (snapshotPath != null) {
+                String fingerprint = dbService.getSourceFingerprint();
+                long start = System.nanoTime();
+                if (fingerprint != null && ModelSnapshot.load(memory, snapshotPath, fingerprint)) {
+                    System.out.println("[DB] Data loaded from snapshot " + snapshotPath + " in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms.");
+                    return;
+                }
+            }
+            dbService.loadData(memory);
+        });
     }
 
     public void clearAllData() {
-        try {
-            dbService.clearDatabase();
-            model.getStudents().clear();
-            model.getTeachers().clear();
-            model.getCourses().clear();
-            System.out.println("[System] Database cleared successfully.");
-        } catch (Exception e) {
-            System.err.println("[Error] Failed to clear database: " + e.getMessage());
-            throw new RuntimeException("Failed to clear database", e);
-        }
+        CLEAR.run(() -> {
+            try {
+                flush();
+                dbService.clearDatabase();
+                model.getStudents().clear();
+                model.getTeachers().clear();
+                model.getCourses().clear();
+                System.out.println("[System] Database cleared successfully.");
+            } catch (Exception e) {
+                System.err.println("[Error] Failed to clear database: " + e.getMessage());
+                throw new RuntimeException("Failed to clear database", e);
+            }
+        });
     }
 
     // --- Student Management ---
@@ -60,22 +285,24 @@ public class UniversityService {
     }
 
     public boolean addStudent(String id, String name, String major) {
-        try {
-            validateStudent(id, name, major);
-            if (model.findStudent(id).isPresent()) {
-                System.err.println("Error adding student: Student ID " + id + " already exists.");
+        return ADD_STUDENT.call(() -> {
+            try {
+                validateStudent(id, name, major);
+                if (model.findStudent(id).isPresent()) {
+                    System.err.println("Error adding student: Student ID " + id + " already exists.");
+                    return false;
+                }
+                Student s = new Student(id, name, major);
+                // Persist (or queue, in write-behind mode) first, then update the in-memory model
+                persist("insertStudent " + id, () -> dbService.insertStudent(s),
+                        () -> model.getStudents().add(s), () -> model.getStudents().remove(s));
+                System.out.println("Student added: " + name);
+                return true;
+            } catch (Exception e) {
+                System.err.println("Error adding student: " + e.getMessage());
                 return false;
             }
-            Student s = new Student(id, name, major);
-            // Persist first, then update in-memory model to avoid inconsistencies
-            dbService.insertStudent(s);
-            model.getStudents().add(s);
-            System.out.println("Student added: " + name);
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error adding student: " + e.getMessage());
-            return false;
-        }
+        });
     }
     
     // Overloaded method
@@ -84,161 +311,974 @@ public class UniversityService {
     }
 
     public void removeStudent(String id) {
-        try {
-            Optional<Student> student = model.findStudent(id);
-            if (student.isEmpty()) {
-                throw new IllegalArgumentException("Student not found");
-            }
-            // Delete from DB first to ensure persistence; DatabaseService throws on failure
-            dbService.deleteStudent(id);
-            model.getStudents().remove(student.get());
-            System.out.println("Student removed: " + id);
-        } catch (Exception e) {
-            System.err.println("Error removing student: " + e.getMessage());
+        REMOVE_STUDENT.run(() -> {
+            try {
+                Optional<Student> student = model.findStudent(id);
+                if (student.isEmpty()) {
+                    throw new IllegalArgumentException("Student not found");
+                }
+                // Delete from DB first to ensure persistence; DatabaseService throws on failure
+                Student s = student.get();
+                persist("deleteStudent " + id, () -> dbService.deleteStudent(id), () -> {
+                    model.getStudents().remove(s);
+                    // Free the student's seats so later enrollments see the right counts
+                    for (String courseId : new ArrayList<>(s.getEnrolledCourseIds())) {
+                        model.findCourse(courseId).ifPresent(c -> c.removeStudent(s.getId()));
+                    }
+                }, () -> restoreStudent(s));
+                System.out.println("Student removed: " + id);
+            } catch (Exception e) {
+                System.err.println("Error removing student: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Puts back a student whose removal could not be saved, retaking the seats
+     * that are still free; a course that filled up meanwhile is dropped.
+     */
+    private void restoreStudent(Student student) {
+        List<Enrollment> restored = new ArrayList<>();
+        for (String courseId : new ArrayList<>(student.getEnrolledCourseIds())) {
+            Optional<Course> course = model.findCourse(courseId);
+            if (course.isEmpty() || !course.get().tryReserveSeat(MAX_COURSE_CAPACITY)) {
+                student.unenroll(courseId);
+            } else if (course.get().fillReservedSeat(student.getId())) {
+                restored.add(new Enrollment(student.getId(), course.get().getCourseId()));
+            } else {
+                course.get().releaseSeat(); // still on the roster
+            }
         }
+        model.getStudents().add(student);
+        model.enrollmentsAdded(restored);
     }
 
+    /** Prints the first page of students; use {@link #listStudents(String, String, int)} to page further. */
     public void listStudents() {
-        System.out.println("\n--- All Students ---");
-        printList(model.getStudents());
-        System.out.println("--------------------");
+        listStudents(null, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Prints one page of students, optionally only those with the given major.
+     * Returns the cursor for the next page, or null after the last one.
+     */
+    public String listStudents(String major, String cursor, int pageSize) {
+        return LIST_STUDENTS.call(() -> {
+            Page<Student> page = findStudents(major, cursor, pageSize);
+            renderPage("--- All Students ---", "--------------------", page);
+            return page.getNextCursor();
+        });
+    }
+
+    public Page<Student> findStudents(String major, String cursor, int pageSize) {
+        return model.pageStudents(isBlank(major) ? null : major.trim(), cursor, checkPageSize(pageSize));
     }
 
     // --- Teacher Management ---
     public boolean addTeacher(String id, String name, Department dept, String subject) {
-        if (model.findTeacher(id).isPresent()) {
-            System.err.println("Error: Teacher ID " + id + " already exists.");
-            return false;
-        }
-        Teacher t = new Teacher(id, name, dept, subject);
-        try {
-            dbService.insertTeacher(t);
-            model.getTeachers().add(t);
-            System.out.println("Teacher added: " + name);
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error adding teacher: " + e.getMessage());
-            return false;
-        }
+        return ADD_TEACHER.call(() -> {
+            if (model.findTeacher(id).isPresent()) {
+                System.err.println("Error: Teacher ID " + id + " already exists.");
+                return false;
+            }
+            Teacher t = new Teacher(id, name, dept, subject);
+            try {
+                persist("insertTeacher " + id, () -> dbService.insertTeacher(t),
+                        () -> model.getTeachers().add(t), () -> model.getTeachers().remove(t));
+                System.out.println("Teacher added: " + name);
+                return true;
+            } catch (Exception e) {
+                System.err.println("Error adding teacher: " + e.getMessage());
+                return false;
+            }
+        });
     }
 
     public void listTeachers() {
-        System.out.println("\n--- All Teachers ---");
-        printList(model.getTeachers());
-        System.out.println("--------------------");
+        listTeachers(null, null, DEFAULT_PAGE_SIZE);
+    }
+
+    public String listTeachers(Department dept, String cursor, int pageSize) {
+        return LIST_TEACHERS.call(() -> {
+            Page<Teacher> page = findTeachers(dept, cursor, pageSize);
+            renderPage("--- All Teachers ---", "--------------------", page);
+            return page.getNextCursor();
+        });
+    }
+
+    public Page<Teacher> findTeachers(Department dept, String cursor, int pageSize) {
+        return model.pageTeachers(dept, cursor, checkPageSize(pageSize));
     }
 
     // --- Course Management ---
     public boolean addCourse(String id, String name, Department dept) {
-        if (model.findCourse(id).isPresent()) {
-            System.err.println("Error: Course ID " + id + " already exists.");
-            return false;
-        }
-        Course c = new Course(id, name, dept);
-        try {
-            dbService.insertCourse(c);
-            model.getCourses().add(c);
-            System.out.println("Course added: " + name);
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error adding course: " + e.getMessage());
-            return false;
-        }
+        return ADD_COURSE.call(() -> {
+            if (model.findCourse(id).isPresent()) {
+                System.err.println("Error: Course ID " + id + " already exists.");
+                return false;
+            }
+            Course c = new Course(id, name, dept);
+            try {
+                persist("insertCourse " + id, () -> dbService.insertCourse(c),
+                        () -> model.getCourses().add(c), () -> model.getCourses().remove(c));
+                System.out.println("Course added: " + name);
+                return true;
+            } catch (Exception e) {
+                System.err.println("Error adding course: " + e.getMessage());
+                return false;
+            }
+        });
     }
 
     public void listCourses() {
-        System.out.println("\n--- All Courses ---");
-        printList(model.getCourses());
-        System.out.println("-------------------");
+        listCourses(null, null, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /** Prints one page of courses, optionally filtered by department and/or teacher ID. */
+    public String listCourses(Department dept, String teacherId, String cursor, int pageSize) {
+        return LIST_COURSES.call(() -> {
+            Page<Course> page = findCourses(dept, teacherId, cursor, pageSize);
+            renderPage("--- All Courses ---", "-------------------", page);
+            return page.getNextCursor();
+        });
+    }
+
+    public Page<Course> findCourses(Department dept, String teacherId, String cursor, int pageSize) {
+        return model.pageCourses(dept, isBlank(teacherId) ? null : teacherId.trim(), cursor, checkPageSize(pageSize));
+    }
+
+    // --- Index Queries ---
+    // Answered from the model's secondary indexes rather than by scanning.
+
+    public List<Course> getCoursesByDepartment(Department dept) {
+        return QUERY.call(() -> model.findCoursesByDepartment(dept));
+    }
+
+    public List<Course> getCoursesTaughtBy(String teacherId) {
+        return QUERY.call(() -> model.findCoursesByTeacher(normalizeId(teacherId)));
+    }
+
+    public List<Teacher> getTeachersByDepartment(Department dept) {
+        return QUERY.call(() -> model.findTeachersByDepartment(dept));
+    }
+
+    public List<Student> getStudentsByMajor(String major) {
+        return QUERY.call(() -> model.findStudentsByMajor(major == null ? null : major.trim()));
+    }
+
+    /** Courses and teachers per department, for department dashboards. */
+    public void printDepartmentSummary() {
+        QUERY.run(() -> {
+            Map<Department, Integer> courses = model.countCoursesByDepartment();
+            Map<Department, Integer> teachers = model.countTeachersByDepartment();
+            System.out.println("\n--- Departments ---");
+            for (Department d : Department.values()) {
+                System.out.println("  " + d.name() + ": " + courses.getOrDefault(d, 0) + " course(s), "
+                        + teachers.getOrDefault(d, 0) + " teacher(s)");
+            }
+            System.out.println("-------------------");
+        });
+    }
+
+    /**
+     * Enrollment aggregates, maintained as the model changes; see {@link ModelStatistics}.
+     * The lazy model has the database compute them instead.
+     */
+    public ModelStatistics getStatistics() {
+        return QUERY.call(model::statistics);
+    }
+
+    /**
+     * Prints the enrollment statistics. Answers instantly at any size from the
+     * in-memory model; the lazy model asks the database, one pass over the courses.
+     */
+    public void printStatistics() {
+        QUERY.run(() -> {
+            ModelStatistics stats;
+            String source;
+            Optional<ModelVersion> version = model.currentVersion();
+            if (version.isPresent()) {
+                stats = version.get().getStatistics();
+                source = "version " + version.get().getVersion();
+            } else {
+                stats = model.statistics();
+                source = "from the database";
+            }
+            System.out.println("\n--- Enrollment Statistics (" + source + ") ---");
+            System.out.printf(Locale.ROOT, "  %,d students, %,d teachers, %,d courses (%,d without a teacher)%n",
+                    stats.getStudentCount(), stats.getTeacherCount(), stats.getCourseCount(), stats.getUnassignedCourseCount());
+            System.out.printf(Locale.ROOT, "  %,d enrollments: %.2f courses per student, %.2f students per course, %.1f%% of seats taken%n",
+                    stats.getEnrollmentCount(), stats.getAverageCoursesPerStudent(), stats.getAverageStudentsPerCourse(),
+                    stats.getFillRatio() * 100);
+            System.out.printf(Locale.ROOT, "  %-26s %8s %9s %9s %6s%n", "Department", "Courses", "Teachers", "Enrolled", "Fill");
+            for (Department d : Department.values()) {
+                System.out.printf(Locale.ROOT, "  %-26s %,8d %,9d %,9d %5.1f%%%n", d.name(), stats.getCourseCount(d),
+                        stats.getTeacherCount(d), stats.getEnrolledSeats(d), stats.getFillRatio(d) * 100);
+            }
+            System.out.println("  Students per course:");
+            int[] sizes = stats.getRosterSizeDistribution();
+            for (int from = 0; from < sizes.length; from = from == 0 ? 1 : from + 5) {
+                int to = from == 0 ? 0 : Math.min(from + 4, sizes.length - 1);
+                int count = 0;
+                for (int n = from; n <= to; n++) count += sizes[n];
+                String range = from == to ? Integer.toString(from) : from + "-" + to;
+                System.out.printf(Locale.ROOT, "    %-7s %,d course(s)%n", range, count);
+            }
+            System.out.println("  Busiest teachers:");
+            stats.getTeachingLoads().entrySet().stream().limit(5).forEach(e ->
+                    System.out.println("    " + e.getKey() + ": " + e.getValue() + " course(s)"));
+            System.out.println("-------------------");
+        });
+    }
+
+    // --- Name Search ---
+    // Answered from the model's name indexes; see DataModel#searchStudents. The
+    // lazy model matches word prefixes in the database instead.
+
+    public List<Student> searchStudents(String query, int limit) {
+        return SEARCH.call(() -> model.searchStudents(query, limit));
+    }
+
+    public List<Teacher> searchTeachers(String query, int limit) {
+        return SEARCH.call(() -> model.searchTeachers(query, limit));
+    }
+
+    public List<Course> searchCourses(String query, int limit) {
+        return SEARCH.call(() -> model.searchCourses(query, limit));
+    }
+
+    /** Prints the best {@code limit} students, teachers and courses whose names match the query. */
+    public void printSearch(String query, int limit) {
+        List<Student> students = searchStudents(query, limit);
+        List<Teacher> teachers = searchTeachers(query, limit);
+        List<Course> courses = searchCourses(query, limit);
+        renderPage("--- Students matching \"" + query + "\" ---", "--------------------", new Page<>(students, null));
+        renderPage("--- Teachers matching \"" + query + "\" ---", "--------------------", new Page<>(teachers, null));
+        renderPage("--- Courses matching \"" + query + "\" ---", "-------------------", new Page<>(courses, null));
     }
 
     // --- Enrollment Management ---
-    public boolean enrollStudent(String studentId, String courseId) {
-        studentId = normalizeId(studentId);
-        courseId = normalizeId(courseId);
+    public boolean enrollStudent(String studentIdInput, String courseIdInput) {
+        return ENROLL.call(() -> {
+            String studentId = normalizeId(studentIdInput);
+            String courseId = normalizeId(courseIdInput);
 
-        Optional<Student> s_opt = model.findStudent(studentId);
-        Optional<Course> c_opt = model.findCourse(courseId);
+            // Both are held until the enrollment is written, and enrollments in the
+            // course are serialized, so a model that swaps entities out keeps this
+            // copy of each in place meanwhile
+            Optional<Student> s_opt = model.holdStudent(studentId);
+            if (s_opt.isEmpty()) {
+                System.err.println("Error during enrollment: Student not found (" + studentId + ")");
+                return false;
+            }
+            Student student = s_opt.get();
+            try {
+                Optional<Course> c_opt = model.lockCourse(courseId);
+                if (c_opt.isEmpty()) {
+                    System.err.println("Error during enrollment: Course not found (" + courseId + ")");
+                    return false;
+                }
+                Course course = c_opt.get();
+                try {
+                    return enroll(student, course);
+                } finally {
+                    model.releaseCourse(course);
+                }
+            } finally {
+                model.releaseStudent(student);
+            }
+        });
+    }
 
-        if (s_opt.isEmpty()) {
-            System.err.println("Error during enrollment: Student not found (" + studentId + ")");
-            return false;
-        }
-        if (c_opt.isEmpty()) {
-            System.err.println("Error during enrollment: Course not found (" + courseId + ")");
+    private boolean enroll(Student student, Course course) {
+        // Use the stored IDs so differently-cased input maps to the same enrollment
+        String sid = student.getId();
+        String cid = course.getCourseId();
+
+        // Safe under concurrent callers: the seat is reserved atomically before
+        // either side changes, and student.enroll() is the duplicate check.
+        if (!course.tryReserveSeat(MAX_COURSE_CAPACITY)) {
+            System.err.println("Error during enrollment: " + COURSE_FULL);
             return false;
         }
 
-        Student student = s_opt.get();
-        Course course = c_opt.get();
-
-        if (course.getEnrolledStudentIds().size() >= MAX_COURSE_CAPACITY) {
-            System.err.println("Error during enrollment: Course has reached maximum capacity");
+        if (!student.enroll(cid)) {
+            course.releaseSeat();
+            System.err.println("Error during enrollment: Student already enrolled in this course");
             return false;
         }
-
-        if (student.isEnrolledIn(courseId)) {
+        if (!course.fillReservedSeat(sid)) {
+            // Already on the roster: that entry is not ours, so leave it alone
+            course.releaseSeat();
+            student.unenroll(cid);
             System.err.println("Error during enrollment: Student already enrolled in this course");
             return false;
         }
 
         // Transaction-like operation
         try {
-            student.enroll(courseId);
-            course.addStudent(studentId);
-            dbService.insertEnrollment(studentId, courseId);
+            // The database checks the seat count again as it writes, in case the
+            // store has enrollments this model does not know of
+            List<Enrollment> enrollment = List.of(new Enrollment(sid, cid));
+            persist("insertEnrollment " + sid + "->" + cid, () -> {
+                if (!dbService.insertEnrollment(sid, cid, MAX_COURSE_CAPACITY)) {
+                    throw new IllegalStateException(COURSE_FULL);
+                }
+            }, () -> model.enrollmentsAdded(enrollment), () -> {
+                undoEnrollment(student, course);
+                model.enrollmentsRemoved(enrollment);
+            });
             System.out.println("Student " + student.getName() + " enrolled in " + course.getCourseName());
             return true;
         } catch (Exception e) {
-            // Rollback memory changes if database operation fails
-            student.unenroll(courseId);
-            course.removeStudent(studentId);
+            // Rollback memory changes if database operation fails; this also frees the seat
+            student.unenroll(cid);
+            course.removeStudent(sid);
             System.err.println("Error during enrollment: " + e.getMessage());
             return false;
         }
     }
 
-    public boolean assignTeacher(String teacherId, String courseId) {
-        teacherId = normalizeId(teacherId);
-        courseId = normalizeId(courseId);
+    // --- Batch Enrollment ---
+    // A batch is validated and seats are reserved for all of it before the model
+    // changes, then it is written as one batched ENROLLMENTS transaction.
 
-        Optional<Teacher> t_opt = model.findTeacher(teacherId);
-        Optional<Course> c_opt = model.findCourse(courseId);
+    /** How a batch enrollment treats items that cannot be applied. */
+    public enum BatchMode {
+        /** Any failing item cancels the whole batch; nothing is enrolled. */
+        ALL_OR_NOTHING,
+        /** Valid items are enrolled; the others are reported with a reason. */
+        BEST_EFFORT
+    }
 
-        if (t_opt.isEmpty()) {
-            System.err.println("Error: Teacher not found (" + teacherId + ")");
-            return false;
+    /** Enrolls one student into several courses, e.g. a whole timetable. */
+    public EnrollmentBatchResult enrollMany(String studentId, List<String> courseIds, BatchMode mode) {
+        return ENROLL_BATCH.call(() -> {
+            List<Enrollment> pairs = new ArrayList<>(courseIds.size());
+            for (String courseId : courseIds) {
+                pairs.add(new Enrollment(studentId, courseId));
+            }
+            return enrollBatch(pairs, mode);
+        });
+    }
+
+    /** Enrolls a cohort of students into one course. */
+    public EnrollmentBatchResult enrollCohort(List<String> studentIds, String courseId, BatchMode mode) {
+        return ENROLL_BATCH.call(() -> {
+            List<Enrollment> pairs = new ArrayList<>(studentIds.size());
+            for (String studentId : studentIds) {
+                pairs.add(new Enrollment(studentId, courseId));
+            }
+            return enrollBatch(pairs, mode);
+        });
+    }
+
+    private EnrollmentBatchResult enrollBatch(List<Enrollment> requested, BatchMode mode) {
+        // Every student and course in the batch is held until it is written. The
+        // courses are locked in ID order, so two batches never wait on each other.
+        Map<String, Optional<Course>> courses = new TreeMap<>();
+        Map<String, Optional<Student>> students = new HashMap<>();
+        try {
+            for (Enrollment e : requested) {
+                String id = IndexedList.canonical(normalizeId(e.getCourseId()));
+                if (id != null) courses.put(id, Optional.empty());
+            }
+            for (Map.Entry<String, Optional<Course>> c : courses.entrySet()) {
+                c.setValue(model.lockCourse(c.getKey()));
+            }
+            for (Enrollment e : requested) {
+                String id = IndexedList.canonical(normalizeId(e.getStudentId()));
+                if (id != null && !students.containsKey(id)) students.put(id, model.holdStudent(id));
+            }
+            return enrollBatch(requested, mode,
+                    id -> students.getOrDefault(IndexedList.canonical(id), Optional.empty()),
+                    id -> courses.getOrDefault(IndexedList.canonical(id), Optional.empty()));
+        } finally {
+            for (Optional<Student> s : students.values()) s.ifPresent(model::releaseStudent);
+            for (Optional<Course> c : courses.values()) c.ifPresent(model::releaseCourse);
         }
-        if (c_opt.isEmpty()) {
-            System.err.println("Error: Course not found (" + courseId + ")");
-            return false;
+    }
+
+    private EnrollmentBatchResult enrollBatch(List<Enrollment> requested, BatchMode mode,
+                                              Function<String, Optional<Student>> findStudent,
+                                              Function<String, Optional<Course>> findCourse) {
+        List<EnrollmentBatchResult.Item> items = new ArrayList<>(requested.size());
+        for (Enrollment e : requested) {
+            items.add(new EnrollmentBatchResult.Item(e));
         }
+        EnrollmentBatchResult result = new EnrollmentBatchResult(items);
+        boolean atomic = mode == BatchMode.ALL_OR_NOTHING;
+        Student[] students = new Student[items.size()];
+        Course[] courses = new Course[items.size()];
 
-        Teacher teacher = t_opt.get();
-        Course course = c_opt.get();
+        // 1. Resolve and validate every item, grouping the valid ones by course
+        Map<Course, List<Integer>> byCourse = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            EnrollmentBatchResult.Item item = items.get(i);
+            Optional<Student> s = findStudent.apply(normalizeId(item.getEnrollment().getStudentId()));
+            Optional<Course> c = findCourse.apply(normalizeId(item.getEnrollment().getCourseId()));
+            if (s.isEmpty()) {
+                result.fail(item, "Student not found");
+            } else if (c.isEmpty()) {
+                result.fail(item, "Course not found");
+            } else if (!seen.add(IndexedList.canonical(s.get().getId()) + "->" + IndexedList.canonical(c.get().getCourseId()))) {
+                result.fail(item, "Duplicate item in batch");
+            } else if (s.get().isEnrolledIn(c.get().getCourseId())) {
+                result.fail(item, "Student already enrolled in this course");
+            } else {
+                students[i] = s.get();
+                courses[i] = c.get();
+                byCourse.computeIfAbsent(c.get(), k -> new ArrayList<>()).add(i);
+            }
+        }
+        if (atomic && !result.isComplete()) {
+            return finishBatch(result, "Batch cancelled: another item failed");
+        }
+
+        // 2. Reserve seats; an all-or-nothing batch takes each course's seats in one step
+        List<Integer> reserved = new ArrayList<>();
+        for (Map.Entry<Course, List<Integer>> group : byCourse.entrySet()) {
+            Course course = group.getKey();
+            List<Integer> indexes = group.getValue();
+            if (atomic) {
+                if (course.tryReserveSeats(indexes.size(), MAX_COURSE_CAPACITY)) {
+                    reserved.addAll(indexes);
+                    continue;
+                }
+                for (int i : indexes) result.fail(items.get(i), COURSE_FULL);
+                continue;
+            }
+            for (int i : indexes) {
+                if (course.tryReserveSeat(MAX_COURSE_CAPACITY)) {
+                    reserved.add(i);
+                } else {
+                    result.fail(items.get(i), COURSE_FULL);
+                }
+            }
+        }
+        if (atomic && !result.isComplete()) {
+            for (int i : reserved) courses[i].releaseSeat();
+            return finishBatch(result, "Batch cancelled: another item failed");
+        }
+
+        // 3. Apply to the model
+        List<Integer> applied = new ArrayList<>(reserved.size());
+        for (int i : reserved) {
+            String cid = courses[i].getCourseId();
+            if (!students[i].enroll(cid)) {
+                // Enrolled concurrently since validation
+                courses[i].releaseSeat();
+                result.fail(items.get(i), "Student already enrolled in this course");
+            } else if (!courses[i].fillReservedSeat(students[i].getId())) {
+                // Already on the roster, so the entry there is not ours to undo
+                courses[i].releaseSeat();
+                students[i].unenroll(cid);
+                result.fail(items.get(i), "Student already enrolled in this course");
+            } else {
+                applied.add(i);
+            }
+        }
+        if (atomic && !result.isComplete()) {
+            for (int i : applied) undoEnrollment(students[i], courses[i]);
+            return finishBatch(result, "Batch cancelled: another item failed");
+        }
+
+        // 4. Persist everything that was applied as one batch
+        List<Enrollment> rows = new ArrayList<>(applied.size());
+        for (int i : applied) {
+            rows.add(new Enrollment(students[i].getId(), courses[i].getCourseId()));
+        }
+        Map<Integer, String> failures;
         try {
-            // Update database first
-            dbService.updateTeacherAssignment(courseId, teacherId);
-            // Update in-memory model only if DB update succeeded
-            course.assignTeacher(teacherId);
-            System.out.println("Teacher " + teacher.getName() + " assigned to " + course.getCourseName());
-            return true;
+            CompletableFuture<Map<Integer, String>> written = persistEnrollments(rows, atomic);
+            if (!written.isDone()) {
+                // Queued by periodic write-behind: publish the batch now and undo
+                // whatever the writer cannot save once it gets to it
+                model.enrollmentsAdded(rows);
+                written.whenComplete((refused, failure) -> undoUnsaved(rows, applied, students, courses,
+                        failure == null ? refused : allRows(rows, unwrap(failure).getMessage())));
+                return finishBatch(result, null);
+            }
+            failures = written.join();
         } catch (Exception e) {
-            System.err.println("Error assigning teacher: " + e.getMessage());
-            return false;
+            for (int i : applied) undoEnrollment(students[i], courses[i]);
+            return finishBatch(result, "Could not save enrollments: " + unwrap(e).getMessage());
         }
+        for (Map.Entry<Integer, String> f : failures.entrySet()) {
+            int i = applied.get(f.getKey());
+            undoEnrollment(students[i], courses[i]);
+            result.fail(items.get(i), f.getValue());
+        }
+        List<Enrollment> enrolled = new ArrayList<>(rows.size());
+        for (int k = 0; k < rows.size(); k++) {
+            if (!failures.containsKey(k)) enrolled.add(rows.get(k));
+        }
+        model.enrollmentsAdded(enrolled);
+        return finishBatch(result, null);
+    }
+
+    /**
+     * Writes the rows in one batch. All-or-nothing batches share one transaction
+     * and fail as a whole; otherwise the rows that could not be written are
+     * returned, keyed by position. The future is complete on return unless
+     * periodic write-behind only queued the write.
+     */
+    private CompletableFuture<Map<Integer, String>> persistEnrollments(List<Enrollment> rows, boolean atomic) {
+        if (rows.isEmpty()) return CompletableFuture.completedFuture(Collections.emptyMap());
+        AtomicReference<Map<Integer, String>> failures = new AtomicReference<>(Collections.emptyMap());
+        return submit("insertEnrollments x" + rows.size(), () -> {
+            // As in enrollStudent(), the database checks the seat counts again as it writes
+            if (!atomic) {
+                failures.set(dbService.insertEnrollments(rows, MAX_COURSE_CAPACITY));
+                return;
+            }
+            dbService.inTransaction(() -> {
+                Map<Integer, String> rejected = dbService.insertEnrollments(rows, MAX_COURSE_CAPACITY);
+                if (!rejected.isEmpty()) {
+                    throw new IllegalStateException(rejected.values().iterator().next());
+                }
+            });
+        }).thenApply(v -> failures.get());
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    private static Map<Integer, String> allRows(List<Enrollment> rows, String reason) {
+        Map<Integer, String> all = new LinkedHashMap<>();
+        for (int k = 0; k < rows.size(); k++) all.put(k, reason);
+        return all;
+    }
+
+    // Undoes the rows of a queued batch that the writer could not save, after the batch was published
+    private void undoUnsaved(List<Enrollment> rows, List<Integer> applied, Student[] students, Course[] courses,
+                             Map<Integer, String> unsaved) {
+        if (unsaved.isEmpty()) return;
+        List<Enrollment> removed = new ArrayList<>(unsaved.size());
+        for (int k : unsaved.keySet()) {
+            int i = applied.get(k);
+            undoEnrollment(students[i], courses[i]);
+            removed.add(rows.get(k));
+        }
+        model.enrollmentsRemoved(removed);
+        System.err.println("[Enroll] " + removed.size() + " of " + rows.size()
+                + " queued enrollment(s) could not be saved and were undone: " + unsaved.values().iterator().next());
+    }
+
+    private static void undoEnrollment(Student student, Course course) {
+        student.unenroll(course.getCourseId());
+        course.removeStudent(student.getId()); // also frees the seat
+    }
+
+    private static EnrollmentBatchResult finishBatch(EnrollmentBatchResult result, String abortReason) {
+        if (abortReason != null) {
+            result.failAll(abortReason);
+        }
+        System.out.println("[Enroll] " + result);
+        return result;
+    }
+
+    public boolean assignTeacher(String teacherIdInput, String courseIdInput) {
+        return ASSIGN_TEACHER.call(() -> {
+            String teacherId = normalizeId(teacherIdInput);
+            String courseId = normalizeId(courseIdInput);
+
+            Optional<Teacher> t_opt = model.findTeacher(teacherId);
+            if (t_opt.isEmpty()) {
+                System.err.println("Error: Teacher not found (" + teacherId + ")");
+                return false;
+            }
+            // Held until the change is in memory too, as enrollStudent() holds its course
+            Optional<Course> c_opt = model.holdCourse(courseId);
+            if (c_opt.isEmpty()) {
+                System.err.println("Error: Course not found (" + courseId + ")");
+                return false;
+            }
+
+            Teacher teacher = t_opt.get();
+            Course course = c_opt.get();
+            try {
+                // Update database first, and the in-memory model only if that succeeded
+                String cid = courseId, tid = teacherId, previous = course.getTeacherId();
+                persist("updateTeacherAssignment " + cid, () -> dbService.updateTeacherAssignment(cid, tid),
+                        () -> model.assignTeacher(course, tid), () -> {
+                            // Unless another assignment has replaced this one since
+                            if (tid.equals(course.getTeacherId())) model.assignTeacher(course, previous);
+                        });
+                System.out.println("Teacher " + teacher.getName() + " assigned to " + course.getCourseName());
+                return true;
+            } catch (Exception e) {
+                System.err.println("Error assigning teacher: " + e.getMessage());
+                return false;
+            } finally {
+                model.releaseCourse(course);
+            }
+        });
     }
     
 
-    private void printList(List<? extends Printable> list) {
-        if (list.isEmpty()) {
-            System.out.println("  (No entries found in cache)");
+    // --- Bulk Import ---
+    // Rows are validated against the model, written in chunk-sized transactions and
+    // only then added to the model. Bad rows are reported, never fatal to the load.
+
+    /** Number of rows written per transaction by the import methods. */
+    public void setImportChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.importChunkSize = chunkSize;
+    }
+
+    public ImportReport importStudents(Iterable<Student> rows) {
+        return IMPORT_STUDENTS.call(() -> {
+            return importRows("students", rows, Student::getId,
+                    (s, pending) -> {
+                        try {
+                            validateStudent(s.getId(), s.getName(), s.getMajor());
+                        } catch (IllegalArgumentException e) {
+                            return e.getMessage();
+                        }
+                        if (model.findStudent(s.getId()).isPresent()) return "Student ID already exists";
+                        return null;
+                    },
+                    dbService::insertStudents,
+                    s -> model.getStudents().add(s));
+        });
+    }
+
+    public ImportReport importStudents(Stream<Student> rows) {
+        return importStudents(rows::iterator);
+    }
+
+    public ImportReport importTeachers(Iterable<Teacher> rows) {
+        return IMPORT_TEACHERS.call(() -> {
+            return importRows("teachers", rows, Teacher::getId,
+                    (t, pending) -> {
+                        if (isBlank(t.getId())) return "Teacher ID cannot be empty";
+                        if (isBlank(t.getName())) return "Teacher name cannot be empty";
+                        if (t.getDepartment() == null) return "Department cannot be empty";
+                        if (model.findTeacher(t.getId()).isPresent()) return "Teacher ID already exists";
+                        return null;
+                    },
+                    dbService::insertTeachers,
+                    t -> model.getTeachers().add(t));
+        });
+    }
+
+    public ImportReport importTeachers(Stream<Teacher> rows) {
+        return importTeachers(rows::iterator);
+    }
+
+    public ImportReport importCourses(Iterable<Course> rows) {
+        return IMPORT_COURSES.call(() -> {
+            return importRows("courses", rows, Course::getCourseId,
+                    (c, pending) -> {
+                        if (isBlank(c.getCourseId())) return "Course ID cannot be empty";
+                        if (isBlank(c.getCourseName())) return "Course name cannot be empty";
+                        if (c.getDepartment() == null) return "Department cannot be empty";
+                        if (model.findCourse(c.getCourseId()).isPresent()) return "Course ID already exists";
+                        return null;
+                    },
+                    dbService::insertCourses,
+                    c -> model.getCourses().add(c));
+        });
+    }
+
+    public ImportReport importCourses(Stream<Course> rows) {
+        return importCourses(rows::iterator);
+    }
+
+    public ImportReport importEnrollments(Iterable<Enrollment> rows) {
+        return IMPORT_ENROLLMENTS.call(() -> {
+            // Each accepted row takes its seat and enters both sides up front, as
+            // enrollStudent() does, so live enrollments running alongside the import
+            // can never push a course over capacity; a row that fails to persist is undone.
+            // Both sides stay held until the row is written or undone.
+            return importRows("enrollments", rows, e -> normalizeId(e.getStudentId()) + "->" + normalizeId(e.getCourseId()),
+                    (e, pending) -> {
+                        Optional<Student> s = model.holdStudent(normalizeId(e.getStudentId()));
+                        if (s.isEmpty()) return "Student not found";
+                        Optional<Course> c = model.holdCourse(normalizeId(e.getCourseId()));
+                        if (c.isEmpty()) {
+                            model.releaseStudent(s.get());
+                            return "Course not found";
+                        }
+                        String reason = reserveEnrollment(s.get(), c.get());
+                        if (reason != null) {
+                            model.releaseCourse(c.get());
+                            model.releaseStudent(s.get());
+                        }
+                        return reason;
+                    },
+                    chunk -> {
+                        // Persist canonical IDs so the rows match what the model holds
+                        List<Enrollment> canonical = new ArrayList<>(chunk.size());
+                        for (Enrollment e : chunk) {
+                            canonical.add(new Enrollment(model.findStudent(normalizeId(e.getStudentId())).get().getId(),
+                                    model.findCourse(normalizeId(e.getCourseId())).get().getCourseId()));
+                        }
+                        return dbService.insertEnrollments(canonical, MAX_COURSE_CAPACITY);
+                    },
+                    e -> {
+                        Student student = model.findStudent(normalizeId(e.getStudentId())).get();
+                        Course course = model.findCourse(normalizeId(e.getCourseId())).get();
+                        model.enrollmentsAdded(List.of(new Enrollment(student.getId(), course.getCourseId())));
+                        model.releaseCourse(course);
+                        model.releaseStudent(student);
+                    },
+                    e -> {
+                        Student student = model.findStudent(normalizeId(e.getStudentId())).get();
+                        Course course = model.findCourse(normalizeId(e.getCourseId())).get();
+                        undoEnrollment(student, course);
+                        model.releaseCourse(course);
+                        model.releaseStudent(student);
+                    });
+        });
+    }
+
+    /** Takes a seat and enters the enrollment on both sides; returns why not, or null. */
+    private static String reserveEnrollment(Student student, Course course) {
+        if (student.isEnrolledIn(course.getCourseId())) return "Student already enrolled in this course";
+        if (!course.tryReserveSeat(MAX_COURSE_CAPACITY)) return COURSE_FULL;
+        if (!student.enroll(course.getCourseId())) {
+            course.releaseSeat();
+            return "Student already enrolled in this course";
+        }
+        if (!course.fillReservedSeat(student.getId())) {
+            course.releaseSeat();
+            student.unenroll(course.getCourseId());
+            return "Student already enrolled in this course";
+        }
+        return null;
+    }
+
+    public ImportReport importEnrollments(Stream<Enrollment> rows) {
+        return importEnrollments(rows::iterator);
+    }
+
+    /**
+     * Bulk {@link #assignTeacher}: each row is {teacherId, courseId}. A course
+     * assigned more than once ends up with the last teacher given for it.
+     */
+    public ImportReport importAssignments(Iterable<String[]> rows) {
+        return IMPORT_ASSIGNMENTS.call(() -> {
+            return importRows("teacher assignments", rows, a -> normalizeId(a[0]) + "->" + normalizeId(a[1]),
+                    (a, pending) -> {
+                        if (model.findTeacher(normalizeId(a[0])).isEmpty()) return "Teacher not found";
+                        if (model.findCourse(normalizeId(a[1])).isEmpty()) return "Course not found";
+                        return null;
+                    },
+                    chunk -> {
+                        List<String[]> canonical = new ArrayList<>(chunk.size());
+                        for (String[] a : chunk) {
+                            canonical.add(new String[] {model.findCourse(normalizeId(a[1])).get().getCourseId(),
+                                    model.findTeacher(normalizeId(a[0])).get().getId()});
+                        }
+                        return dbService.updateTeacherAssignments(canonical);
+                    },
+                    a -> model.assignTeacher(model.findCourse(normalizeId(a[1])).get(),
+                            model.findTeacher(normalizeId(a[0])).get().getId()));
+        });
+    }
+
+    /** Checks one row; returns a reject reason, or null if the row may be imported. */
+    private interface RowValidator<T> {
+        String check(T row, Set<String> pendingKeys);
+    }
+
+    private <T> ImportReport importRows(String entity, Iterable<T> rows, Function<T, String> keyOf,
+                                        RowValidator<T> validator,
+                                        Function<List<T>, Map<Integer, String>> writer,
+                                        Consumer<T> apply) {
+        return importRows(entity, rows, keyOf, validator, writer, apply, row -> { });
+    }
+
+    /**
+     * As above; {@code release} undoes whatever the validator reserved for a row
+     * that passed validation but then failed to persist.
+     */
+    private <T> ImportReport importRows(String entity, Iterable<T> rows, Function<T, String> keyOf,
+                                        RowValidator<T> validator,
+                                        Function<List<T>, Map<Integer, String>> writer,
+                                        Consumer<T> apply, Consumer<T> release) {
+        // Bulk writes go straight to the database, so queued writes must land first
+        flush();
+        ImportReport report = new ImportReport(entity);
+        List<T> chunk = new ArrayList<>(importChunkSize);
+        List<Long> chunkRows = new ArrayList<>(importChunkSize);
+        Set<String> pendingKeys = new HashSet<>();
+        long rowNo = 0;
+        for (T row : rows) {
+            long current = rowNo++;
+            if (row == null) {
+                report.reject(current, null, "Row is empty");
+                continue;
+            }
+            String key = keyOf.apply(row);
+            String folded = key == null ? null : key.toLowerCase(Locale.ROOT);
+            // Duplicates are caught before validation so they never reserve anything
+            String reason = folded != null && pendingKeys.contains(folded)
+                    ? "Duplicate row in import"
+                    : validator.check(row, pendingKeys);
+            if (reason == null && folded != null) {
+                pendingKeys.add(folded);
+            }
+            if (reason != null) {
+                report.reject(current, key, reason);
+                continue;
+            }
+            chunk.add(row);
+            chunkRows.add(current);
+            if (chunk.size() >= importChunkSize) {
+                flushChunk(report, chunk, chunkRows, keyOf, writer, apply, release);
+                pendingKeys.clear();
+            }
+        }
+        flushChunk(report, chunk, chunkRows, keyOf, writer, apply, release);
+        System.out.println("[Import] " + report);
+        return report;
+    }
+
+    private <T> void flushChunk(ImportReport report, List<T> chunk, List<Long> chunkRows,
+                                Function<T, String> keyOf,
+                                Function<List<T>, Map<Integer, String>> writer,
+                                Consumer<T> apply, Consumer<T> release) {
+        if (chunk.isEmpty()) return;
+        Map<Integer, String> failures;
+        try {
+            failures = writer.apply(chunk);
+        } catch (Exception e) {
+            // The whole chunk failed to persist; report every row and keep going
+            for (int i = 0; i < chunk.size(); i++) {
+                report.reject(chunkRows.get(i), keyOf.apply(chunk.get(i)), e.getMessage());
+                release.accept(chunk.get(i));
+            }
+            chunk.clear();
+            chunkRows.clear();
             return;
         }
-        for (Printable p : list) {
-            p.printDetails();
-            System.out.println(); 
+        for (int i = 0; i < chunk.size(); i++) {
+            String failure = failures.get(i);
+            if (failure != null) {
+                report.reject(chunkRows.get(i), keyOf.apply(chunk.get(i)), failure);
+                release.accept(chunk.get(i));
+            } else {
+                apply.accept(chunk.get(i));
+            }
+        }
+        report.accept(chunk.size() - failures.size());
+        chunk.clear();
+        chunkRows.clear();
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    // --- Paging and Export ---
+    // Pages and their cursors come from the model; see UniversityModel#pageStudents.
+
+    private static int checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return pageSize;
+    }
+
+    /** Renders a page through one buffered writer, so stdout sees a few large writes instead of one per line. */
+    private void renderPage(String header, String footer, Page<? extends Printable> page) {
+        // Not closed: that would close System.out
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            out.append(Printable.NEWLINE).append(header).append(Printable.NEWLINE);
+            if (page.getItems().isEmpty()) {
+                out.append("  (No entries found in cache)").append(Printable.NEWLINE);
+            }
+            for (Printable p : page.getItems()) {
+                p.appendDetails(out);
+                out.append(Printable.NEWLINE);
+            }
+            if (page.hasMore()) {
+                out.append("  (more entries follow)").append(Printable.NEWLINE);
+            }
+            out.append(footer).append(Printable.NEWLINE);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long exportStudents(Path file, String major) {
+        return EXPORT.call(() -> export(file, cursor -> findStudents(major, cursor, EXPORT_PAGE_SIZE)));
+    }
+
+    public long exportTeachers(Path file, Department dept) {
+        return EXPORT.call(() -> export(file, cursor -> findTeachers(dept, cursor, EXPORT_PAGE_SIZE)));
+    }
+
+    public long exportCourses(Path file, Department dept, String teacherId) {
+        return EXPORT.call(() -> export(file, cursor -> findCourses(dept, teacherId, cursor, EXPORT_PAGE_SIZE)));
+    }
+
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    /**
+     * Streams every matching entity to {@code file} in the listing format, a page
+     * at a time so a lazy model never has to hold them all; returns how many were written.
+     */
+    private <T extends Printable> long export(Path file, Function<String, Page<T>> pages) {
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            String cursor = null;
+            do {
+                Page<T> page = pages.apply(cursor);
+                for (T item : page.getItems()) {
+                    item.appendDetails(out);
+                    out.append(Printable.NEWLINE);
+                    written++;
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        } catch (IOException e) {
+            throw new RuntimeException("Export to " + file + " failed: " + e.getMessage(), e);
         }
+        System.out.println("Exported " + written + " entries to " + file);
+        return written;
+    }
+
+    /**
+     * Writes the whole dataset to {@code directory}, one file per table, and
+     * prints rows per second for each; see {@link DataExporter}. In SQL mode any
+     * queued writes are flushed first and the rows come from the database.
+     */
+    public List<DataExporter.TableResult> exportDataset(Path directory, DataExporter.Format format, boolean gzip) {
+        return EXPORT_DATASET.call(() -> {
+            DataExporter exporter = new DataExporter(directory, format, gzip);
+            long start = System.nanoTime();
+            List<DataExporter.TableResult> results;
+            try {
+                if (dbService.getPersistenceMode() == DatabaseService.PersistenceMode.SQL) {
+                    flush();
+                    results = exporter.export(dbService);
+                } else {
+                    // Only a model that holds everything can run without SQL
+                    results = exporter.export(model.currentVersion().orElseThrow());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Export to " + directory + " failed: " + e.getMessage(), e);
+            }
+            long rows = 0;
+            for (DataExporter.TableResult r : results) {
+                System.out.println("[Export] " + r);
+                rows += r.getRows();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "[Export] %,d rows to %s in %.2f s (%,.0f rows/s)%n",
+                    rows, directory, seconds, seconds == 0 ? 0 : rows / seconds);
+            return results;
+        });
     }
 
     // Normalize user-provided IDs: trim, and strip anything after a space or '['
@@ -259,7 +1299,7 @@ public class UniversityService {
     }
     // --- Utilities ---
     public void loadDemoData() {
-        if (!model.getStudents().isEmpty()) {
+        if (model.countStudents() > 0) {
             System.out.println("[System] Data already exists. Demo not loaded.");
             return;
         }
@@ -285,24 +1325,25 @@ public class UniversityService {
     }
     
     public void updateStudentMajor(String studentId, String newMajor) {
-        try {
-            Optional<Student> student = model.findStudent(studentId);
-            if (student.isEmpty()) {
-                throw new IllegalArgumentException("Student not found");
-            }
-            Student s = student.get();
-            String oldMajor = s.getMajor();
-            s.setMajor(newMajor);
+        UPDATE_MAJOR.run(() -> {
             try {
-                dbService.updateStudent(s);
+                Optional<Student> student = model.findStudent(studentId);
+                if (student.isEmpty()) {
+                    throw new IllegalArgumentException("Student not found");
+                }
+                Student s = student.get();
+                String oldMajor = s.getMajor();
+                // Written from a copy, so the write does not depend on when it runs
+                Student updated = new Student(s.getId(), s.getName(), newMajor);
+                persist("updateStudent " + s.getId(), () -> dbService.updateStudent(updated),
+                        () -> model.updateMajor(s, newMajor), () -> {
+                            if (Objects.equals(newMajor, s.getMajor())) model.updateMajor(s, oldMajor);
+                        });
                 System.out.println("Student major updated successfully");
             } catch (Exception e) {
-                s.setMajor(oldMajor);
-                throw e;
+                System.err.println("Error updating student major: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("Error updating student major: " + e.getMessage());
-        }
+        });
     }
 }
 
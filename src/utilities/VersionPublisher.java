@@ -0,0 +1,265 @@
+package utilities;
+
+import people.Student;
+import people.Teacher;
+import courses.Course;
+import courses.Enrollment;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import utilities.ModelVersion.CourseState;
+import utilities.ModelVersion.StudentState;
+import utilities.ModelVersion.TeacherState;
+
+/**
+ * Keeps {@link DataModel}'s published {@link ModelVersion}, and the
+ * {@link ModelStatistics} it carries, in step with the model. Each change builds
+ * the next version from the current one without holding any lock and swaps it
+ * in with a compare-and-set; a writer that loses the race rebuilds from the
+ * version that won, so concurrent writers only ever repeat their own path copy
+ * and readers only ever read the reference. Additions and removals arrive
+ * through the list listeners, attribute and enrollment changes from DataModel.
+ * During a bulk load the listeners are muted and the version is rebuilt once.
+ */
+class VersionPublisher {
+
+    private final AtomicReference<ModelVersion> current = new AtomicReference<>(ModelVersion.EMPTY);
+    private volatile boolean bulk;
+
+    ModelVersion current() {
+        return current.get();
+    }
+
+    private static String key(String id) {
+        return IndexedList.canonical(id);
+    }
+
+    // A change returns the version it was given when there is nothing to publish.
+    // It may run more than once, so it must only read its argument.
+    private void update(UnaryOperator<ModelVersion> change) {
+        while (true) {
+            ModelVersion v = current.get();
+            ModelVersion next = change.apply(v);
+            if (next == v || current.compareAndSet(v, next)) return;
+        }
+    }
+
+    private static ModelVersion next(ModelVersion v, PersistentMap<String, StudentState> students,
+                                     PersistentMap<String, TeacherState> teachers,
+                                     PersistentMap<String, CourseState> courses, ModelStatistics.Change statistics) {
+        return v.next(students, teachers, courses, statistics.build());
+    }
+
+    // --- List Listeners ---
+    // A listener can race with the rebuild at the end of a bulk load, which may
+    // already hold its entity, so an addition replaces an existing entry rather
+    // than counting it twice.
+
+    final IndexedList.Listener<Student> students = new IndexedList.Listener<>() {
+        @Override
+        public void added(Student s) {
+            if (bulk) return;
+            StudentState state = StudentState.of(s);
+            update(v -> {
+                boolean present = v.studentMap().get(key(s.getId())) != null;
+                return next(v, v.studentMap().put(key(s.getId()), state), v.teacherMap(), v.courseMap(),
+                        v.getStatistics().change().student(present ? 0 : 1));
+            });
+        }
+
+        @Override
+        public void removed(Student s) {
+            if (bulk) return;
+            update(v -> {
+                StudentState state = v.studentMap().get(key(s.getId()));
+                if (state == null) return v;
+                // The student leaves their courses' rosters in the same version
+                ModelStatistics.Change stats = v.getStatistics().change().student(-1);
+                PersistentMap<String, CourseState> courses = v.courseMap();
+                for (String courseId : state.getEnrolledCourseIds()) {
+                    CourseState c = courses.get(key(courseId));
+                    if (c == null) continue;
+                    CourseState updated = c.withStudent(state.getId(), false);
+                    if (updated.getEnrolledStudentIds() == c.getEnrolledStudentIds()) continue;
+                    courses = courses.put(key(courseId), updated);
+                    stats.roster(c.getDepartment(), c.getEnrolledStudentIds().size(), -1);
+                }
+                return next(v, v.studentMap().remove(key(s.getId())), v.teacherMap(), courses, stats);
+            });
+        }
+
+        @Override
+        public void cleared() {
+            if (bulk) return;
+            update(v -> {
+                PersistentMap.Builder<String, CourseState> courses = new PersistentMap.Builder<>();
+                for (CourseState c : v.getCourses()) {
+                    courses.put(key(c.getCourseId()), new CourseState(c.getCourseId(), c.getCourseName(),
+                            c.getDepartment(), c.getTeacherId(), List.of()));
+                }
+                return next(v, PersistentMap.empty(), v.teacherMap(), courses.build(),
+                        v.getStatistics().change().studentsCleared());
+            });
+        }
+    };
+
+    final IndexedList.Listener<Teacher> teachers = new IndexedList.Listener<>() {
+        @Override
+        public void added(Teacher t) {
+            if (bulk) return;
+            TeacherState state = new TeacherState(t);
+            update(v -> {
+                ModelStatistics.Change stats = v.getStatistics().change();
+                TeacherState old = v.teacherMap().get(key(t.getId()));
+                if (old != null) stats.teacher(old.getDepartment(), -1);
+                return next(v, v.studentMap(), v.teacherMap().put(key(t.getId()), state), v.courseMap(),
+                        stats.teacher(state.getDepartment(), 1));
+            });
+        }
+
+        @Override
+        public void removed(Teacher t) {
+            if (bulk) return;
+            update(v -> {
+                TeacherState state = v.teacherMap().get(key(t.getId()));
+                if (state == null) return v;
+                return next(v, v.studentMap(), v.teacherMap().remove(key(t.getId())), v.courseMap(),
+                        v.getStatistics().change().teacher(state.getDepartment(), -1));
+            });
+        }
+
+        @Override
+        public void cleared() {
+            if (bulk) return;
+            update(v -> next(v, v.studentMap(), PersistentMap.empty(), v.courseMap(),
+                    v.getStatistics().change().teachersCleared()));
+        }
+    };
+
+    final IndexedList.Listener<Course> courses = new IndexedList.Listener<>() {
+        @Override
+        public void added(Course c) {
+            if (bulk) return;
+            CourseState state = CourseState.of(c);
+            update(v -> {
+                ModelStatistics.Change stats = v.getStatistics().change();
+                CourseState old = v.courseMap().get(key(c.getCourseId()));
+                if (old != null) {
+                    stats.course(old.getDepartment(), old.getTeacherId(), old.getEnrolledStudentIds().size(), -1);
+                }
+                return next(v, v.studentMap(), v.teacherMap(), v.courseMap().put(key(c.getCourseId()), state),
+                        stats.course(state.getDepartment(), state.getTeacherId(),
+                                state.getEnrolledStudentIds().size(), 1));
+            });
+        }
+
+        @Override
+        public void removed(Course c) {
+            if (bulk) return;
+            update(v -> {
+                CourseState state = v.courseMap().get(key(c.getCourseId()));
+                if (state == null) return v;
+                PersistentMap<String, StudentState> students = v.studentMap();
+                for (String studentId : state.getEnrolledStudentIds()) {
+                    StudentState s = students.get(key(studentId));
+                    if (s != null) students = students.put(key(studentId), s.withCourse(state.getCourseId(), false));
+                }
+                return next(v, students, v.teacherMap(), v.courseMap().remove(key(c.getCourseId())),
+                        v.getStatistics().change().course(state.getDepartment(), state.getTeacherId(),
+                                state.getEnrolledStudentIds().size(), -1));
+            });
+        }
+
+        @Override
+        public void cleared() {
+            if (bulk) return;
+            update(v -> {
+                PersistentMap.Builder<String, StudentState> students = new PersistentMap.Builder<>();
+                for (StudentState s : v.getStudents()) {
+                    students.put(key(s.getId()), new StudentState(s.getId(), s.getName(), s.getMajor(), List.of()));
+                }
+                return next(v, students.build(), v.teacherMap(), PersistentMap.empty(),
+                        v.getStatistics().change().coursesCleared());
+            });
+        }
+    };
+
+    // --- Attribute and Enrollment Changes ---
+
+    void majorChanged(Student s) {
+        String major = s.getMajor();
+        update(v -> {
+            StudentState state = v.studentMap().get(key(s.getId()));
+            if (state == null) return v;
+            return next(v, v.studentMap().put(key(s.getId()), state.withMajor(major)), v.teacherMap(), v.courseMap(),
+                    v.getStatistics().change());
+        });
+    }
+
+    void teacherChanged(Course c) {
+        String teacherId = c.getTeacherId();
+        update(v -> {
+            CourseState state = v.courseMap().get(key(c.getCourseId()));
+            if (state == null) return v;
+            return next(v, v.studentMap(), v.teacherMap(), v.courseMap().put(key(c.getCourseId()), state.withTeacher(teacherId)),
+                    v.getStatistics().change().teacherChanged(state.getTeacherId(), teacherId));
+        });
+    }
+
+    /** Adds or removes every enrollment on both sides, as one version. */
+    void enrollments(Collection<Enrollment> enrollments, boolean enrolled) {
+        if (bulk || enrollments.isEmpty()) return;
+        update(v -> {
+            ModelStatistics.Change stats = v.getStatistics().change();
+            PersistentMap<String, StudentState> students = v.studentMap();
+            PersistentMap<String, CourseState> courses = v.courseMap();
+            boolean changed = false;
+            for (Enrollment e : enrollments) {
+                StudentState s = students.get(key(e.getStudentId()));
+                CourseState c = courses.get(key(e.getCourseId()));
+                if (s == null || c == null) continue;
+                CourseState updated = c.withStudent(s.getId(), enrolled);
+                if (updated.getEnrolledStudentIds() == c.getEnrolledStudentIds()) continue;
+                students = students.put(key(s.getId()), s.withCourse(c.getCourseId(), enrolled));
+                courses = courses.put(key(c.getCourseId()), updated);
+                stats.roster(c.getDepartment(), c.getEnrolledStudentIds().size(), enrolled ? 1 : -1);
+                changed = true;
+            }
+            return changed ? next(v, students, v.teacherMap(), courses, stats) : v;
+        });
+    }
+
+    // --- Bulk Loads ---
+
+    void beginBulk() {
+        bulk = true;
+    }
+
+    /** Ends a bulk load by building the next version from the model's full contents. */
+    void endBulk(List<Student> students, List<Teacher> teachers, List<Course> courses) {
+        ModelStatistics.Change stats = new ModelStatistics.Change(null);
+        PersistentMap.Builder<String, StudentState> s = new PersistentMap.Builder<>();
+        for (Student student : students) {
+            s.put(key(student.getId()), StudentState.of(student));
+            stats.student(1);
+        }
+        PersistentMap.Builder<String, TeacherState> t = new PersistentMap.Builder<>();
+        for (Teacher teacher : teachers) {
+            t.put(key(teacher.getId()), new TeacherState(teacher));
+            stats.teacher(teacher.getDepartment(), 1);
+        }
+        PersistentMap.Builder<String, CourseState> c = new PersistentMap.Builder<>();
+        for (Course course : courses) {
+            CourseState state = CourseState.of(course);
+            c.put(key(course.getCourseId()), state);
+            stats.course(state.getDepartment(), state.getTeacherId(), state.getEnrolledStudentIds().size(), 1);
+        }
+        PersistentMap<String, StudentState> studentMap = s.build();
+        PersistentMap<String, TeacherState> teacherMap = t.build();
+        PersistentMap<String, CourseState> courseMap = c.build();
+        ModelStatistics statistics = stats.build();
+        update(v -> v.next(studentMap, teacherMap, courseMap, statistics));
+        bulk = false;
+    }
+}
@@ -0,0 +1,221 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of pending DatabaseService writes, drained by one background
+ * thread that applies them in grouped transactions.
+ *
+ * <p>With {@link Durability#FLUSH_ON_ACK} a caller returns only once its write is
+ * committed (concurrent callers still share a transaction). With
+ * {@link Durability#PERIODIC} callers return immediately and the writer commits
+ * every {@code flushIntervalMillis} or whenever a group fills up; a caller that
+ * changed the model ahead of the write undoes that change through the future
+ * {@link #submit} returns if the write fails.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    public enum Durability { FLUSH_ON_ACK, PERIODIC }
+
+    /** Queue settings; defaults can be overridden with {@code -Dums.writeBehind.*} system properties. */
+    public static class Config {
+        public Durability durability = Durability.PERIODIC;
+        public int capacity = Integer.getInteger("ums.writeBehind.capacity", 10_000);
+        public int maxBatch = Integer.getInteger("ums.writeBehind.maxBatch", 500);
+        public long flushIntervalMillis = Long.getLong("ums.writeBehind.flushIntervalMs", 50L);
+        // How long a caller may block on a full queue before the write is refused
+        public long offerTimeoutMillis = Long.getLong("ums.writeBehind.offerTimeoutMs", 5_000L);
+    }
+
+    private static class Op {
+        final String description;
+        final Runnable write; // null for flush markers
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Op(String description, Runnable write) {
+            this.description = description;
+            this.write = write;
+        }
+    }
+
+    private final DatabaseService dbService;
+    private final Config config;
+    private final BlockingQueue<Op> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+
+    public WriteBehindQueue(DatabaseService dbService, Config config) {
+        if (config.capacity < 1 || config.maxBatch < 1) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be at least 1");
+        }
+        this.dbService = dbService;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(config.capacity);
+        this.writer = new Thread(this::drainLoop, "ums-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a write. Blocks while the queue is full and throws once
+     * {@code offerTimeoutMillis} passes. In FLUSH_ON_ACK mode this also waits for
+     * the commit and rethrows the write's failure. The returned future completes
+     * once the write is in the database, or exceptionally if it failed; in
+     * PERIODIC mode that is the only place a failure shows up.
+     */
+    public CompletableFuture<Void> submit(String description, Runnable write) {
+        Op op = enqueue(new Op(description, write));
+        submitted.incrementAndGet();
+        if (config.durability == Durability.FLUSH_ON_ACK) {
+            await(op);
+        }
+        return op.done;
+    }
+
+    /** Blocks until every write queued before this call has been applied. */
+    public void flush() {
+        if (Thread.currentThread() == writer || !writer.isAlive()) return;
+        Op marker = enqueue(new Op("flush", null));
+        try {
+            marker.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // markers never fail
+        }
+    }
+
+    public int getPendingCount() { return queue.size(); }
+    public long getSubmittedCount() { return submitted.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getGroupCount() { return groups.get(); }
+    public Durability getDurability() { return config.durability; }
+
+    /** Flushes outstanding writes and stops the background writer. */
+    @Override
+    public void close() {
+        if (!running) return;
+        flush();
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Op enqueue(Op op) {
+        if (!running) {
+            throw new IllegalStateException("[DB Error] Write-behind queue is closed");
+        }
+        try {
+            if (!queue.offer(op, config.offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("[DB Error] Write-behind queue is full (" + config.capacity + " pending writes)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("[DB Error] Interrupted while queueing write", e);
+        }
+        return op;
+    }
+
+    private void await(Op op) {
+        try {
+            op.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("[DB Error] Interrupted while waiting for write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void drainLoop() {
+        List<Op> group = new ArrayList<>(config.maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Op first = queue.take();
+                group.add(first);
+                if (config.durability == Durability.PERIODIC && first.write != null) {
+                    // Let writes accumulate for one interval so they share a commit
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.flushIntervalMillis);
+                    while (group.size() < config.maxBatch) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0) break;
+                        Op next = queue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        group.add(next);
+                        if (next.write == null) break; // someone is waiting on a flush
+                    }
+                } else {
+                    queue.drainTo(group, config.maxBatch - 1);
+                }
+            } catch (InterruptedException e) {
+                if (running) continue;
+                queue.drainTo(group);
+            }
+            apply(group);
+            group.clear();
+        }
+    }
+
+    private void apply(List<Op> group) {
+        List<Op> writes = new ArrayList<>(group.size());
+        for (Op op : group) {
+            if (op.write != null) writes.add(op);
+        }
+        if (!writes.isEmpty()) {
+            groups.incrementAndGet();
+            if (!dbService.isTransactional()) {
+                // A failed group would keep whatever ran before the failure, and
+                // replaying it would write that twice, so apply one by one
+                for (Op op : writes) applyOne(op);
+            } else {
+                try {
+                    dbService.inTransaction(() -> {
+                        for (Op op : writes) op.write.run();
+                    });
+                    for (Op op : writes) op.done.complete(null);
+                    written.addAndGet(writes.size());
+                } catch (RuntimeException groupError) {
+                    // The group was rolled back; apply one by one so only the bad writes fail
+                    for (Op op : writes) applyOne(op);
+                }
+            }
+        }
+        // Markers complete after the writes queued ahead of them
+        for (Op op : group) {
+            if (op.write == null) op.done.complete(null);
+        }
+    }
+
+    private void applyOne(Op op) {
+        try {
+            op.write.run();
+            op.done.complete(null);
+            written.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            if (config.durability == Durability.PERIODIC) {
+                System.err.println("[DB Error] Write-behind failed for " + op.description + ": " + e.getMessage());
+            }
+            op.done.completeExceptionally(e);
+        }
+    }
+}